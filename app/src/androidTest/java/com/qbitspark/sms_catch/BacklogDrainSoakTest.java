@@ -0,0 +1,312 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.TestDriver;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drains a seeded outbox through SyncWorker against a local MockWebServer,
+ * once against a healthy backend and once against a slow, flaky one. Reports
+ * drain time, request count, duplicate deliveries and peak heap.
+ *
+ * Sizes and faults come from instrumentation arguments, e.g.
+ *   -e drainMessages 50000 -e soakMessages 5000 -e soakLatencyMillis 300
+ *   -e soak5xxPercent 5 -e soak429Percent 5 -e soakResetPercent 2
+ *
+ * Each SyncWorker run is followed by a wait for its uploads and acks, as
+ * between two scheduled syncs, so a run never re-reads rows still in flight.
+ * The next run is the follow-up sync the worker scheduled itself, if any;
+ * otherwise a new one is started, as the periodic sync would.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BacklogDrainSoakTest {
+    private static final String TAG = "BacklogDrainSoak";
+    private static final int MAX_MESSAGES_PER_RUN = 2000;  // SyncWorker's cap
+
+    private Context context;
+    private Bundle arguments;
+    private MessageDatabase database;
+    private MockWebServer server;
+
+    /**
+     * Backend behaviour, each percentage drawn independently per request
+     */
+    private static class Faults {
+        long latencyMillis;
+        int serverErrorPercent;
+        int throttlePercent;
+        int resetPercent;
+    }
+
+    private static class DrainResult {
+        long millis;
+        int runs;
+        int followUps;      // Runs SyncWorker scheduled itself after stopping at its cap
+        int requests;
+        int delivered;
+        int duplicates;
+        int resets;
+        long peakHeapBytes;
+    }
+
+    /**
+     * Counts every request and which seeded message each delivered body carried
+     */
+    private static class FaultyBackend extends Dispatcher {
+        final Faults faults;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger resets = new AtomicInteger();
+        final Map<Integer, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+
+        FaultyBackend(Faults faults) {
+            this.faults = faults;
+        }
+
+        @NonNull
+        @Override
+        public MockResponse dispatch(@NonNull RecordedRequest request) {
+            requests.incrementAndGet();
+            int roll = ThreadLocalRandom.current().nextInt(100);
+            MockResponse response = new MockResponse().setHeadersDelay(faults.latencyMillis, TimeUnit.MILLISECONDS);
+
+            if (roll < faults.resetPercent) {
+                // Read and processed, then the connection dies: the client retries a delivered message
+                countDelivery(request);
+                resets.incrementAndGet();
+                return response.setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+            roll -= faults.resetPercent;
+            if (roll < faults.serverErrorPercent) {
+                return response.setResponseCode(503);
+            }
+            roll -= faults.serverErrorPercent;
+            if (roll < faults.throttlePercent) {
+                return response.setResponseCode(429).setHeader("Retry-After", "1");
+            }
+            countDelivery(request);
+            return response.setResponseCode(200);
+        }
+
+        private void countDelivery(RecordedRequest request) {
+            try {
+                int seq = new JSONObject(request.getBody().readUtf8()).getInt("seq");
+                deliveries.computeIfAbsent(seq, k -> new AtomicInteger()).incrementAndGet();
+            } catch (Exception e) {
+                Log.e(TAG, "Unexpected request body", e);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        arguments = InstrumentationRegistry.getArguments();
+        WorkManagerTestInitHelper.initializeTestWorkManager(context, new Configuration.Builder()
+                .setExecutor(new SynchronousExecutor())
+                .setMinimumLoggingLevel(Log.INFO)
+                .build());
+
+        database = MessageDatabase.getInstance(context);
+        database.clearAllTables();
+        server = new MockWebServer();
+        server.start();
+        ApiClient.setEndpoint(server.url("/messages").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ApiClient.setEndpoint(null);
+        server.shutdown();
+        database.clearAllTables();
+    }
+
+    @Test
+    public void drainsLargeBacklogAgainstHealthyBackend() throws Exception {
+        int messages = intArgument("drainMessages", 50000);
+        Faults faults = new Faults();
+        faults.latencyMillis = intArgument("drainLatencyMillis", 20);
+
+        DrainResult result = drain("drain", messages, faults);
+
+        assertEquals("Every message delivered", messages, result.delivered);
+        assertEquals("No message sent twice by a healthy backend", 0, result.duplicates);
+        assertEquals(0, outboxDepth());
+        assertEquals("Every run after the first was a follow-up", result.runs - 1, result.followUps);
+    }
+
+    @Test
+    public void soakAgainstSlowFlakyBackendLosesNothing() throws Exception {
+        int messages = intArgument("soakMessages", 5000);
+        Faults faults = new Faults();
+        faults.latencyMillis = intArgument("soakLatencyMillis", 300);
+        faults.serverErrorPercent = intArgument("soak5xxPercent", 5);
+        faults.throttlePercent = intArgument("soak429Percent", 5);
+        faults.resetPercent = intArgument("soakResetPercent", 2);
+
+        DrainResult result = drain("soak", messages, faults);
+
+        assertEquals("Every message delivered", messages, result.delivered);
+        assertEquals(0, outboxDepth());
+        // Only a reset after the server took a message can make the client send it again
+        assertTrue("More duplicates (" + result.duplicates + ") than connection resets (" + result.resets + ")",
+                result.duplicates <= result.resets);
+    }
+
+    private DrainResult drain(String name, int messages, Faults faults) throws Exception {
+        FaultyBackend backend = new FaultyBackend(faults);
+        server.setDispatcher(backend);
+        seed(messages);
+
+        final AtomicLong peakHeap = new AtomicLong();
+        final AtomicBoolean sampling = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            Runtime runtime = Runtime.getRuntime();
+            while (sampling.get()) {
+                peakHeap.set(Math.max(peakHeap.get(), runtime.totalMemory() - runtime.freeMemory()));
+                SystemClock.sleep(100);
+            }
+        }, "HeapSampler");
+        sampler.start();
+
+        DrainResult result = new DrainResult();
+        int maxRuns = messages / MAX_MESSAGES_PER_RUN * 4 + 20;
+        long start = SystemClock.elapsedRealtime();
+        WorkManager workManager = WorkManager.getInstance(context);
+        TestDriver driver = WorkManagerTestInitHelper.getTestDriver(context);
+        while (outboxDepth() > 0 && result.runs < maxRuns) {
+            WorkInfo followUp = enqueuedFollowUp(workManager);
+            if (followUp != null) {
+                // Runs synchronously once its delay and network constraint are met
+                driver.setAllConstraintsMet(followUp.getId());
+                driver.setInitialDelayMet(followUp.getId());
+                result.followUps++;
+            } else {
+                OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncWorker.class).build();
+                workManager.enqueue(request).getResult().get();
+                assertNotNull(workManager.getWorkInfoById(request.getId()).get());
+            }
+            result.runs++;
+            awaitUploadsAndAcks();
+        }
+        result.millis = SystemClock.elapsedRealtime() - start;
+        sampling.set(false);
+        sampler.join();
+
+        result.peakHeapBytes = peakHeap.get();
+        result.requests = backend.requests.get();
+        result.resets = backend.resets.get();
+        result.delivered = backend.deliveries.size();
+        for (AtomicInteger count : backend.deliveries.values()) {
+            result.duplicates += count.get() - 1;
+        }
+
+        String summary = String.format(Locale.US,
+                "%s: %d messages, latency %dms 5xx %d%% 429 %d%% reset %d%% -> drained in %.1fs over %d runs "
+                        + "(%d follow-ups), %d requests, %d delivered, %d duplicates, peak heap %.1fMB",
+                name, messages, faults.latencyMillis, faults.serverErrorPercent, faults.throttlePercent,
+                faults.resetPercent, result.millis / 1000.0, result.runs, result.followUps, result.requests,
+                result.delivered,
+                result.duplicates, result.peakHeapBytes / 1048576.0);
+        Log.i(TAG, summary);
+        Bundle status = new Bundle();
+        status.putString(name, summary);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+        return result;
+    }
+
+    private static WorkInfo enqueuedFollowUp(WorkManager workManager) throws Exception {
+        List<WorkInfo> infos = workManager.getWorkInfosForUniqueWork(WorkManagerHelper.FOLLOW_UP_SYNC_TAG).get();
+        for (WorkInfo info : infos) {
+            if (info.getState() == WorkInfo.State.ENQUEUED) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private void seed(final int messages) {
+        final long now = System.currentTimeMillis();
+        database.runInTransaction(() -> {
+            for (int i = 0; i < messages; i++) {
+                MessageData message = new MessageData();
+                message.setLegacySender("DRAIN");
+                message.setLegacyReceiver("BENCH_SIM");
+                message.setMessageBody("Backlog message " + i);
+                message.setTimestamp(now - messages + i);
+                message.setPriority(PriorityClassifier.LANE_NORMAL);
+                message.setEnqueuedAt(now);
+                message.setDedupKey("drain-" + i);
+                message.setPayload(("{\"seq\":" + i + ",\"message\":\"Backlog message " + i + "\"}")
+                        .getBytes(StandardCharsets.UTF_8));
+                database.messageDao().insert(message);
+            }
+        });
+    }
+
+    /**
+     * Wait until OkHttp has no call queued or running and every ack is written
+     */
+    private void awaitUploadsAndAcks() {
+        okhttp3.Dispatcher dispatcher = ApiClient.getHttpClient().dispatcher();
+        AckWriter ackWriter = AckWriter.getInstance(context);
+        long deadline = SystemClock.elapsedRealtime() + 10 * 60_000;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            if (dispatcher.queuedCallsCount() == 0 && dispatcher.runningCallsCount() == 0
+                    && ackWriter.getPendingCount() == 0) {
+                return;
+            }
+            SystemClock.sleep(50);
+        }
+        fail("Uploads or acks still pending after 10 minutes");
+    }
+
+    private int outboxDepth() {
+        int depth = 0;
+        for (LaneDepth lane : OutboxStore.getDefault(context).getLaneDepths()) {
+            depth += lane.depth;
+        }
+        return depth;
+    }
+
+    private int intArgument(String name, int defaultValue) {
+        String value = arguments.getString(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
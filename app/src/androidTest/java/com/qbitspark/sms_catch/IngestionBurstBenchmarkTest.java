@@ -0,0 +1,280 @@
+package com.qbitspark.sms_catch;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.telephony.SmsMessage;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Bursts of synthetic SMS_RECEIVED broadcasts through the real capture path:
+ * SmsReceiver.onReceive on the main thread, SmsListenerService, the ingestion
+ * pipeline and the outbox insert. Reports throughput, per-stage percentiles
+ * from PipelineMetrics and bytes allocated per message, and fails if a run is
+ * worse than assets/ingestion_burst_baseline.json.
+ *
+ * Rate and size come from instrumentation arguments, e.g.
+ *   -e burstMessages 5000 -e burstRate 200 -e burstMultipartPercent 20
+ * A rate of 0 sends broadcasts back to back.
+ *
+ * Uploads go to a local MockWebServer that accepts everything, and the
+ * outbox is cleared afterwards, so a run leaves nothing behind for the
+ * real backend.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IngestionBurstBenchmarkTest {
+    private static final String TAG = "IngestionBurstBenchmark";
+    private static final String SMS_RECEIVED = "android.provider.Telephony.SMS_RECEIVED";
+    private static final String SENDER = "+255700100200";
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private MessageDatabase database;
+    private MockWebServer server;
+    private int messageCount;
+    private int ratePerSecond;
+    private int multipartPercent;
+
+    @Before
+    public void setUp() throws Exception {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        messageCount = Integer.parseInt(arguments.getString("burstMessages", "1000"));
+        ratePerSecond = Integer.parseInt(arguments.getString("burstRate", "0"));
+        multipartPercent = Integer.parseInt(arguments.getString("burstMultipartPercent", "20"));
+
+        database = MessageDatabase.getInstance(context);
+        database.clearAllTables();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        server.start();
+        ApiClient.setEndpoint(server.url("/messages").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ApiClient.setEndpoint(null);
+        server.shutdown();
+        database.clearAllTables();
+    }
+
+    @Test
+    public void burstReachesOutboxWithinBaseline() throws Exception {
+        // SmsReceiver only hands messages to the service on Android 8+
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O);
+        List<List<byte[]>> broadcasts = buildBroadcasts();
+        JSONObject baseline = readBaseline();
+
+        for (LogLinearHistogram stage : new LogLinearHistogram[]{PipelineMetrics.RECEIVER,
+                PipelineMetrics.SIM_RESOLUTION, PipelineMetrics.SERIALIZE, PipelineMetrics.PERSIST}) {
+            stage.reset();
+        }
+        long persistedBefore = PipelineMetrics.MESSAGES_PERSISTED.get();
+        long duplicateBefore = PipelineMetrics.MESSAGES_DUPLICATE.get();
+        long droppedBefore = PipelineMetrics.MESSAGES_DROPPED.get();
+        long bytesBefore = runtimeStat("art.gc.bytes-allocated");
+        long gcBefore = runtimeStat("art.gc.gc-count");
+
+        final SmsReceiver receiver = new SmsReceiver();
+        long intervalNanos = ratePerSecond > 0 ? 1_000_000_000L / ratePerSecond : 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < broadcasts.size(); i++) {
+            if (intervalNanos > 0) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    SystemClock.sleep(wait / 1_000_000);
+                }
+            }
+            final Intent intent = intent(broadcasts.get(i));
+            instrumentation.runOnMainSync(() -> receiver.onReceive(context, intent));
+        }
+
+        // Every message ends up persisted, a duplicate or dropped; anything else was lost
+        long deadline = SystemClock.elapsedRealtime() + 60_000 + messageCount * 20L;
+        long accounted = 0;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            accounted = (PipelineMetrics.MESSAGES_PERSISTED.get() - persistedBefore)
+                    + (PipelineMetrics.MESSAGES_DUPLICATE.get() - duplicateBefore)
+                    + (PipelineMetrics.MESSAGES_DROPPED.get() - droppedBefore);
+            if (accounted >= messageCount) {
+                break;
+            }
+            SystemClock.sleep(20);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long persisted = PipelineMetrics.MESSAGES_PERSISTED.get() - persistedBefore;
+        double throughput = persisted / seconds;
+        double bytesPerMessage = (double) (runtimeStat("art.gc.bytes-allocated") - bytesBefore) / messageCount;
+        long gcCount = runtimeStat("art.gc.gc-count") - gcBefore;
+
+        Bundle results = new Bundle();
+        results.putString("messages", String.valueOf(messageCount));
+        results.putString("persisted", String.valueOf(persisted));
+        results.putString("messagesPerSecond", String.format(Locale.US, "%.1f", throughput));
+        results.putString("allocatedBytesPerMessage", String.format(Locale.US, "%.0f", bytesPerMessage));
+        results.putString("gcCount", String.valueOf(gcCount));
+        Log.i(TAG, String.format(Locale.US, "%d messages (%d broadcasts, rate %s): %d persisted in %.2fs, "
+                        + "%.1f msg/s, %.0f bytes allocated per message, %d GCs",
+                messageCount, broadcasts.size(), ratePerSecond > 0 ? ratePerSecond + "/s" : "max",
+                persisted, seconds, throughput, bytesPerMessage, gcCount));
+        report(results, "receiver", PipelineMetrics.RECEIVER);
+        report(results, "simResolution", PipelineMetrics.SIM_RESOLUTION);
+        report(results, "serialize", PipelineMetrics.SERIALIZE);
+        report(results, "persist", PipelineMetrics.PERSIST);
+        instrumentation.sendStatus(0, results);
+
+        assertEquals("Messages lost between receiver and outbox", messageCount, accounted);
+        assertEquals("Synthetic messages are distinct", 0,
+                PipelineMetrics.MESSAGES_DUPLICATE.get() - duplicateBefore);
+
+        double tolerance = baseline.getDouble("tolerance");
+        assertTrue(String.format(Locale.US, "Throughput %.1f msg/s below baseline", throughput),
+                throughput >= baseline.getDouble("minMessagesPerSecond") * (1 - tolerance));
+        assertWithin("receiver p99", PipelineMetrics.RECEIVER.getPercentile(0.99) / 1000.0,
+                baseline.getDouble("maxReceiverP99Millis"), tolerance);
+        assertWithin("persist p99", PipelineMetrics.PERSIST.getPercentile(0.99) / 1000.0,
+                baseline.getDouble("maxPersistP99Millis"), tolerance);
+        assertWithin("allocated bytes per message", bytesPerMessage,
+                baseline.getDouble("maxAllocatedBytesPerMessage"), tolerance);
+    }
+
+    @Test
+    public void syntheticPdusParseAsTheyWereBuilt() {
+        String text = longText(0, 2);
+        List<byte[]> pdus = SyntheticPdus.build(SENDER, text, System.currentTimeMillis(), 7);
+        assertTrue(pdus.size() > 1);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < pdus.size(); i++) {
+            SmsMessage message = SmsMessage.createFromPdu(pdus.get(i), "3gpp");
+            assertEquals(SENDER, message.getOriginatingAddress());
+            body.append(message.getMessageBody());
+
+            ConcatHeaderParser.ConcatInfo info = ConcatHeaderParser.parse(pdus.get(i));
+            assertNotNull(info);
+            assertEquals(7, info.reference);
+            assertEquals(pdus.size(), info.totalParts);
+            assertEquals(i + 1, info.sequence);
+        }
+        assertEquals(text, body.toString());
+        assertNull(ConcatHeaderParser.parse(SyntheticPdus.build(SENDER, "short", 0, 0).get(0)));
+    }
+
+    /**
+     * One broadcast per single-part message; multipart messages send each
+     * part in its own broadcast, so they go through MultipartReassembler
+     */
+    private List<List<byte[]>> buildBroadcasts() {
+        Random random = new Random(44);
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        long timestamp = System.currentTimeMillis() - messageCount * 1000L;
+        List<List<byte[]>> broadcasts = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            boolean multipart = random.nextInt(100) < multipartPercent;
+            String text = multipart ? longText(i, 2 + random.nextInt(2))
+                    : "Bench " + run + " #" + i + " Umepokea Tsh " + (1000 + random.nextInt(90000));
+            // Distinct SCTS per message, a second apart
+            List<byte[]> pdus = SyntheticPdus.build(SENDER, text, timestamp + i * 1000L, i & 0xff);
+            for (byte[] pdu : pdus) {
+                List<byte[]> broadcast = new ArrayList<>(1);
+                broadcast.add(pdu);
+                broadcasts.add(broadcast);
+            }
+        }
+        return broadcasts;
+    }
+
+    private static String longText(int index, int parts) {
+        StringBuilder text = new StringBuilder("Bench multipart #" + index + ":");
+        while (text.length() < parts * 67 - 10) {
+            text.append(" Salio lako jipya ni Tsh 125,000.");
+        }
+        return text.substring(0, parts * 67 - 10);
+    }
+
+    private static Intent intent(List<byte[]> pdus) {
+        Intent intent = new Intent(SMS_RECEIVED);
+        intent.putExtra("pdus", pdus.toArray(new Object[0]));
+        intent.putExtra("format", "3gpp");
+        return intent;
+    }
+
+    private void report(Bundle results, String name, LogLinearHistogram stage) {
+        double p50 = stage.getPercentile(0.50) / 1000.0;
+        double p95 = stage.getPercentile(0.95) / 1000.0;
+        double p99 = stage.getPercentile(0.99) / 1000.0;
+        results.putString(name + "P99Millis", String.format(Locale.US, "%.2f", p99));
+        Log.i(TAG, String.format(Locale.US, "  %-14s n=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                name, stage.getCount(), p50, p95, p99, stage.getMax() / 1000.0));
+    }
+
+    private static void assertWithin(String name, double measured, double limit, double tolerance) {
+        assertTrue(String.format(Locale.US, "%s %.2f is over baseline %.2f", name, measured, limit),
+                measured <= limit * (1 + tolerance));
+    }
+
+    // Cumulative ART counters for this process, 0 where the runtime does not report them
+    private static long runtimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private JSONObject readBaseline() throws Exception {
+        try (InputStream in = instrumentation.getContext().getAssets().open("ingestion_burst_baseline.json")) {
+            return new JSONObject(readAll(in));
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
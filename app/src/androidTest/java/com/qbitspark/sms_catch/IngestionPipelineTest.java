@@ -0,0 +1,170 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteFullException;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prepare and persist against an in-memory outbox whose inserts can be made
+ * to fail, checking that a failed insert never turns a later copy of the
+ * message into a duplicate, and that a duplicate never touches the stored
+ * message's payload
+ */
+@RunWith(AndroidJUnit4.class)
+public class IngestionPipelineTest {
+    private Context context;
+    private MessageDatabase database;
+    private FlakyOutboxStore store;
+
+    /**
+     * Room-backed store whose next append can be made to throw, as on a full disk
+     */
+    private static class FlakyOutboxStore implements OutboxStore {
+        final RoomOutboxStore delegate;
+        boolean failNextAppend;
+
+        FlakyOutboxStore(RoomOutboxStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long append(MessageData messageData) {
+            if (failNextAppend) {
+                failNextAppend = false;
+                throw new SQLiteFullException("database or disk is full");
+            }
+            return delegate.append(messageData);
+        }
+
+        @Override
+        public boolean contains(String dedupKey) {
+            return delegate.contains(dedupKey);
+        }
+
+        @Override
+        public List<MessageData> readPending(int lane, long afterId, int limit) {
+            return delegate.readPending(lane, afterId, limit);
+        }
+
+        @Override
+        public List<LaneDepth> getLaneDepths() {
+            return delegate.getLaneDepths();
+        }
+
+        @Override
+        public void recordAttempts(long[] ids, long attemptAt, long attemptElapsed) {
+            delegate.recordAttempts(ids, attemptAt, attemptElapsed);
+        }
+
+        @Override
+        public void ack(long[] ids, long ackedAt) {
+            delegate.ack(ids, ackedAt);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, MessageDatabase.class).build();
+        store = new FlakyOutboxStore(new RoomOutboxStore(database, new MessageDictionary(database.dictionaryDao())));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void copyAfterFailedInsertIsStored() {
+        long timestamp = System.currentTimeMillis();
+        MessageData first = message(timestamp);
+        assertTrue(IngestionPipeline.prepare(context, first));
+        store.failNextAppend = true;
+        try {
+            IngestionPipeline.persist(context, store, first);
+            fail("Insert should have failed");
+        } catch (SQLiteFullException expected) {
+            // The service thread dies here; the message is not stored
+        }
+        assertFalse(store.contains(first.getDedupKey()));
+
+        // Redelivered or imported from the inbox inside the dedup cache window
+        MessageData copy = message(timestamp);
+        assertTrue("Copy dropped as a duplicate of a message that was never stored",
+                IngestionPipeline.prepare(context, copy));
+        assertTrue(IngestionPipeline.persist(context, store, copy));
+        assertTrue(store.contains(copy.getDedupKey()));
+    }
+
+    @Test
+    public void copyAfterStoredMessageIsDropped() {
+        long timestamp = System.currentTimeMillis() + 1;
+        MessageData first = message(timestamp);
+        assertTrue(IngestionPipeline.prepare(context, first));
+        assertTrue(IngestionPipeline.persist(context, store, first));
+
+        assertFalse(IngestionPipeline.prepare(context, message(timestamp)));
+    }
+
+    @Test
+    public void duplicateLeavesStoredSideFileAlone() throws IOException {
+        long timestamp = System.currentTimeMillis() + 2;
+        MessageData first = largeMessage(timestamp);
+        assertTrue(IngestionPipeline.prepare(context, first));
+        assertNotNull("Large payload goes to a side file", first.getPayloadFile());
+        assertTrue(IngestionPipeline.persist(context, store, first));
+        File stored = payloadFile(first);
+        byte[] storedBytes = Files.readAllBytes(stored.toPath());
+
+        // A copy from after the dedup cache window, serialized again with a different body
+        MessageData copy = largeMessage(timestamp);
+        copy.setDedupKey(first.getDedupKey());
+        PayloadStore.attach(context, copy, ("{\"copy\":\"" + copy.getMessageBody() + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        assertFalse(IngestionPipeline.persist(context, store, copy));
+
+        assertNotEquals(first.getPayloadFile(), copy.getPayloadFile());
+        assertFalse("Copy's own side file is discarded", payloadFile(copy).exists());
+        assertArrayEquals("Stored row's payload unchanged", storedBytes, Files.readAllBytes(stored.toPath()));
+        PayloadStore.discard(context, first);
+    }
+
+    private File payloadFile(MessageData messageData) {
+        return new File(new File(context.getFilesDir(), "payloads"), messageData.getPayloadFile());
+    }
+
+    private static MessageData largeMessage(long timestamp) {
+        MessageData message = message(timestamp);
+        StringBuilder body = new StringBuilder(message.getMessageBody());
+        while (body.length() < 20 * 1024) {
+            body.append(" Habari za leo, mkutano wa tawi utafanyika kesho.");
+        }
+        message.setMessageBody(body.toString());
+        return message;
+    }
+
+    private static MessageData message(long timestamp) {
+        MessageData message = new MessageData();
+        message.setSender("0754123456");
+        message.setReceiver("0754000000_Vodacom_SLOT0_123456");
+        message.setMessageBody("Habari, mkutano wa tawi utafanyika kesho " + timestamp);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+}
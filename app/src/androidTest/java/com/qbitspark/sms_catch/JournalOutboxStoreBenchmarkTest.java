@@ -0,0 +1,78 @@
+package com.qbitspark.sms_catch;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class JournalOutboxStoreBenchmarkTest extends OutboxStoreBenchmark {
+
+    private File directory;
+
+    @Override
+    protected String getName() {
+        return "journal";
+    }
+
+    @Override
+    protected OutboxStore open() throws Exception {
+        directory = new File(context.getCacheDir(), "outbox-benchmark");
+        deleteDirectory();
+        return new JournalOutboxStore(directory);
+    }
+
+    @Override
+    protected OutboxStore reopenAfterCrash(OutboxStore store) throws Exception {
+        // Abandoned without close(), every append was already forced
+        return new JournalOutboxStore(directory);
+    }
+
+    @Override
+    protected void closeAndDelete(OutboxStore store) throws Exception {
+        ((JournalOutboxStore) store).close();
+        deleteDirectory();
+    }
+
+    @Test
+    public void tornLastRecordIsDroppedAndOverwritten() throws Exception {
+        JournalOutboxStore journal = (JournalOutboxStore) store;
+        for (int i = 0; i < 10; i++) {
+            journal.append(message(i));
+        }
+
+        // Half-written last record: flip its final byte
+        try (RandomAccessFile file = new RandomAccessFile(journal.getActiveSegmentFile(), "rw")) {
+            file.seek(journal.getWritePosition() - 1);
+            int last = file.read();
+            file.seek(journal.getWritePosition() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        JournalOutboxStore recovered = new JournalOutboxStore(directory);
+        store = recovered;
+        assertEquals(9, recovered.getPendingCount());
+        long id = recovered.append(message(10));
+
+        JournalOutboxStore reopened = new JournalOutboxStore(directory);
+        recovered.close();
+        store = reopened;
+        assertEquals(10, reopened.getPendingCount());
+        assertEquals(id, reopened.readPending(message(10).getPriority(), id - 1, 1).get(0).getId());
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,78 @@
+package com.qbitspark.sms_catch;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Posts deliberately slow messages to the real main looper and checks the
+ * watchdog reports them, blamed on the slow method
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainThreadWatchdogTest {
+    private StallDetector detector;
+    private Handler mainHandler;
+
+    @Before
+    public void setUp() {
+        detector = MainThreadWatchdog.install().getDetector();
+        detector.reset();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    @Test
+    public void slowHandlerIsReportedWithItsStack() throws Exception {
+        long stallsBefore = PipelineMetrics.MAIN_THREAD_STALLS.get();
+        postAndWait(() -> blockMainThread(MainThreadWatchdog.STALL_THRESHOLD_MILLIS * 3));
+
+        assertEquals(1, detector.getStallCount());
+        assertEquals(stallsBefore + 1, PipelineMetrics.MAIN_THREAD_STALLS.get());
+        StallDetector.StallReport report = detector.getReports().get(0);
+        assertTrue(report.key, report.key.startsWith("MainThreadWatchdogTest.blockMainThread("));
+        assertTrue(report.target, report.target.startsWith("Handler (android.os.Handler)"));
+        assertTrue(report.lastMillis >= MainThreadWatchdog.STALL_THRESHOLD_MILLIS * 3);
+        assertNotNull("Stack sampled while the main thread was blocked", report.stack);
+        assertTrue(report.topFrame, report.topFrame.contains("sleep"));
+        assertTrue(AppLog.getRing().toJson(AppLog.getRingLevel(), 5).contains("blockMainThread"));
+    }
+
+    @Test
+    public void fastMessagesAreNotReported() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            postAndWait(() -> blockMainThread(1));
+        }
+        assertEquals(0, detector.getStallCount());
+    }
+
+    @Test
+    public void repeatedStallsAggregate() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            postAndWait(() -> blockMainThread(MainThreadWatchdog.STALL_THRESHOLD_MILLIS + 100));
+        }
+        assertEquals(1, detector.getReports().size());
+        assertEquals(3, detector.getReports().get(0).count);
+    }
+
+    private static void blockMainThread(long millis) {
+        SystemClock.sleep(millis);
+    }
+
+    // Waits for the message after the slow one, so the first has been reported
+    private void postAndWait(Runnable work) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mainHandler.post(work);
+        mainHandler.post(done::countDown);
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,129 @@
+package com.qbitspark.sms_catch;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Opens a database written by the last released schema (v2) through every
+ * migration. Room validates the migrated schema against the entities on open,
+ * so any mismatch in OutboxMigrations fails here.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageDatabaseMigrationTest {
+    private static final String TEST_DB = "migration-test";
+    private static final int ROWS = 1200;   // More than two backfill chunks
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void version2OutboxSurvivesUpgradeAndBackfill() {
+        createVersion2Database();
+
+        MessageDatabase database = Room.databaseBuilder(context, MessageDatabase.class, TEST_DB)
+                .addMigrations(OutboxMigrations.ALL)
+                .build();
+        try {
+            List<MessageData> migrated = database.messageDao().getUnsyncedMessages();
+            assertEquals(ROWS + 1, migrated.size());
+            assertEquals(1, migrated.get(0).getPriority());
+            assertEquals(0, migrated.get(0).getEnqueuedAt());
+            assertNull(migrated.get(0).getDedupKey());
+            assertNull(migrated.get(0).getPayload());
+
+            // The last row duplicates the first one and is deleted
+            int updated = OutboxBackfill.run(database);
+            assertEquals(ROWS, updated);
+            assertTrue("Rows left to backfill",
+                    database.messageDao().getRowsNeedingBackfill(0, 10).isEmpty());
+
+            List<MessageData> backfilled = database.messageDao().getUnsyncedMessages();
+            assertEquals(ROWS, backfilled.size());
+            for (MessageData row : backfilled) {
+                assertNotNull(row.getDedupKey());
+            }
+            MessageData first = backfilled.get(0);
+            assertEquals(first.getTimestamp(), first.getEnqueuedAt());
+            assertEquals(PriorityClassifier.LANE_PRIORITY, first.getPriority());
+
+            // Sender and receiver strings moved to the dictionaries
+            assertNull(first.getLegacySender());
+            assertNotEquals(0, first.getSenderId());
+            new MessageDictionary(database.dictionaryDao()).resolve(backfilled);
+            assertEquals("M-PESA", first.getSender());
+            assertEquals("0754000000_Vodacom_SLOT0_123456", first.getReceiver());
+
+            // Nothing left to do on the next start
+            assertEquals(0, OutboxBackfill.run(database));
+
+            // Rows from before the search index existed are indexed
+            assertEquals(ROWS, OutboxBackfill.indexForSearch(database));
+            assertEquals(1, database.searchDao()
+                    .search(MessageSearch.toFtsQuery("M-PESA"), Long.MAX_VALUE, 10).size());
+            assertEquals(0, OutboxBackfill.indexForSearch(database));
+        } finally {
+            database.close();
+        }
+    }
+
+    private void createVersion2Database() {
+        File path = context.getDatabasePath(TEST_DB);
+        path.getParentFile().mkdirs();
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(path, null);
+        try {
+            // Schema Room generated for MessageData at version 2
+            db.execSQL("CREATE TABLE IF NOT EXISTS `messages` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`sender` TEXT, `receiver` TEXT, `messageBody` TEXT, `timestamp` INTEGER NOT NULL, "
+                    + "`syncStatus` INTEGER NOT NULL)");
+
+            db.beginTransaction();
+            for (int i = 0; i < ROWS; i++) {
+                db.insert("messages", null, row(i));
+            }
+            // The same SMS stored twice, as happened before dedup keys existed
+            db.insert("messages", null, row(0));
+            db.setTransactionSuccessful();
+            db.endTransaction();
+
+            db.setVersion(2);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static ContentValues row(int i) {
+        ContentValues values = new ContentValues();
+        values.put("sender", i == 0 ? "M-PESA" : "2557" + (10000000 + i));
+        values.put("receiver", "0754000000_Vodacom_SLOT0_123456");
+        values.put("messageBody", "Message number " + i);
+        values.put("timestamp", 1700000000000L + i * 1000L);
+        values.put("syncStatus", 0);
+        return values;
+    }
+}
@@ -0,0 +1,100 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures per-row storage with inline sender/receiver strings against
+ * dictionary IDs, and the dictionary cache hit rate on a realistic mix
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageDictionaryTest {
+    private static final String TAG = "MessageDictionaryTest";
+    private static final int ROWS = 20000;
+    private static final int SENDERS = 40;
+    private static final String[] RECEIVERS = {
+            "0754000000_Vodacom_SLOT0_123456",
+            "0655000000_Tigo_SLOT1_654321"
+    };
+
+    @Test
+    public void dictionaryShrinksRowsAndMostlyHitsCache() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        MessageDatabase inline = Room.inMemoryDatabaseBuilder(context, MessageDatabase.class).build();
+        MessageDatabase interned = Room.inMemoryDatabaseBuilder(context, MessageDatabase.class).build();
+        try {
+            MessageDictionary dictionary = new MessageDictionary(interned.dictionaryDao());
+
+            inline.runInTransaction(() -> {
+                for (int i = 0; i < ROWS; i++) {
+                    MessageData message = message(i);
+                    message.setLegacySender(message.getSender());
+                    message.setLegacyReceiver(message.getReceiver());
+                    inline.messageDao().insert(message);
+                }
+            });
+            interned.runInTransaction(() -> {
+                for (int i = 0; i < ROWS; i++) {
+                    MessageData message = message(i);
+                    dictionary.intern(message);
+                    interned.messageDao().insert(message);
+                }
+            });
+
+            double inlineBytesPerRow = (double) usedBytes(inline) / ROWS;
+            double internedBytesPerRow = (double) usedBytes(interned) / ROWS;
+            Log.i(TAG, String.format(Locale.US, "bytes/row inline %.1f, interned %.1f; %s",
+                    inlineBytesPerRow, internedBytesPerRow, dictionary.getStatsSummary()));
+
+            assertTrue(internedBytesPerRow < inlineBytesPerRow);
+
+            // Reads resolve the same strings back
+            List<MessageData> bySender = interned.messageDao()
+                    .getMessagesBySender(dictionary.getSenderId("SENDER7"), 10);
+            dictionary.resolve(bySender);
+            assertFalse(bySender.isEmpty());
+            assertEquals("SENDER7", bySender.get(0).getSender());
+            assertEquals(0, dictionary.getSenderId("NEVER-SEEN"));
+
+            assertTrue("Hit rate " + dictionary.getHitRate(), dictionary.getHitRate() > 0.99);
+        } finally {
+            inline.close();
+            interned.close();
+        }
+    }
+
+    private static MessageData message(int i) {
+        MessageData message = new MessageData();
+        message.setSender("SENDER" + (i % SENDERS));
+        message.setReceiver(RECEIVERS[i % RECEIVERS.length]);
+        message.setMessageBody("Umepokea Tsh " + (1000 + i) + " kutoka 0754" + (100000 + i));
+        message.setTimestamp(1700000000000L + i * 1000L);
+        message.setDedupKey(Integer.toString(i));
+        return message;
+    }
+
+    private static long usedBytes(MessageDatabase database) {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        return queryLong(db, "PRAGMA page_count") * queryLong(db, "PRAGMA page_size");
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Search latency on a 100k-message corpus, for terms from a single match up
+ * to half the table, first page and deep pages
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageSearchBenchmarkTest {
+    private static final String TAG = "MessageSearchBenchmark";
+    private static final int ROWS = 100000;
+    private static final int RUNS = 20;
+    private static final long MAX_MEDIAN_MILLIS = 100;   // Loose bound, the log has the real numbers
+
+    private static final String[] SENDERS = {"M-PESA", "TIGOPESA", "AirtelMoney", "HaloPesa", "NMB", "CRDB"};
+    private static final String[] NAMES = {"JUMA HAMISI", "ASHA MWAKA", "PETER MREMA", "NEEMA JOSEPH",
+            "BARAKA SAID", "REHEMA ALLY", "JOHN MUSHI", "FATMA OMARY"};
+
+    private MessageDatabase database;
+    private String rareTransactionId;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, MessageDatabase.class).build();
+        final MessageDictionary dictionary = new MessageDictionary(database.dictionaryDao());
+        final Random random = new Random(42);
+
+        database.runInTransaction(() -> {
+            for (int i = 0; i < ROWS; i++) {
+                MessageData message = message(random, i);
+                if (i == ROWS / 3) {
+                    rareTransactionId = transactionId(message);
+                }
+                dictionary.intern(message);
+                long id = database.messageDao().insert(message);
+                database.searchDao().insert(new MessageFts(id, message.getSender(), message.getMessageBody()));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void searchLatency() {
+        String[] queries = {
+                rareTransactionId,      // 1 match
+                "ASHA MWAKA",           // ~1/16
+                "M-PESA",               // sender column, ~1/6
+                "15,000",               // phrase, ~1/500
+                "Umepokea"              // ~1/2 of all rows
+        };
+        for (String query : queries) {
+            long firstPage = medianMicros(query, Long.MAX_VALUE);
+            // Keyset pages cost the same wherever they start
+            long deepPage = medianMicros(query, ROWS / 10);
+            Log.i(TAG, String.format(Locale.US, "'%s': first page %.2fms, deep page %.2fms",
+                    query, firstPage / 1000.0, deepPage / 1000.0));
+            assertTrue(query + " first page " + firstPage + "us", firstPage < MAX_MEDIAN_MILLIS * 1000);
+            assertTrue(query + " deep page " + deepPage + "us", deepPage < MAX_MEDIAN_MILLIS * 1000);
+        }
+    }
+
+    @Test
+    public void keysetPagesCoverEveryMatchOnce() {
+        String query = MessageSearch.toFtsQuery("ASHA MWAKA");
+        Set<Long> seen = new HashSet<>();
+        long beforeId = Long.MAX_VALUE;
+        while (true) {
+            List<MessageData> page = database.searchDao().search(query, beforeId, MessageSearch.PAGE_SIZE);
+            for (MessageData message : page) {
+                assertTrue(message.getId() < beforeId);
+                assertTrue(seen.add(message.getId()));
+                assertTrue(message.getMessageBody().contains("ASHA MWAKA"));
+                beforeId = message.getId();
+            }
+            if (page.size() < MessageSearch.PAGE_SIZE) {
+                break;
+            }
+        }
+        assertEquals(countContaining("ASHA MWAKA"), seen.size());
+    }
+
+    private long medianMicros(String input, long beforeId) {
+        String query = MessageSearch.toFtsQuery(input);
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            List<MessageData> page = database.searchDao().search(query, beforeId, MessageSearch.PAGE_SIZE);
+            samples[i] = (System.nanoTime() - start) / 1000;
+            if (beforeId == Long.MAX_VALUE) {
+                assertFalse(input, page.isEmpty());
+            }
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    private int countContaining(String text) {
+        int count = 0;
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            if (message(random, i).getMessageBody().contains(text)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static MessageData message(Random random, int i) {
+        String name = NAMES[random.nextInt(NAMES.length)];
+        String txn = Long.toString(0x10000000000L + random.nextInt(Integer.MAX_VALUE), 36).toUpperCase(Locale.US);
+        int amount = 1000 + random.nextInt(500) * 100;
+        String body = (i % 2 == 0)
+                ? txn + " Imethibitishwa. Umepokea Tsh " + String.format(Locale.US, "%,d", amount)
+                + ".00 kutoka " + name + " 0754" + (100000 + random.nextInt(900000))
+                : txn + " Confirmed. Tsh " + String.format(Locale.US, "%,d", amount)
+                + ".00 sent to " + name + " on " + (1 + i % 28) + "/6/24";
+
+        MessageData message = new MessageData();
+        message.setSender(SENDERS[random.nextInt(SENDERS.length)]);
+        message.setReceiver("0754000000_Vodacom_SLOT0_123456");
+        message.setMessageBody(body);
+        message.setTimestamp(1700000000000L + i * 1000L);
+        message.setDedupKey(Integer.toString(i));
+        return message;
+    }
+
+    private static String transactionId(MessageData message) {
+        return message.getMessageBody().substring(0, message.getMessageBody().indexOf(' '));
+    }
+}
@@ -0,0 +1,174 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks shared by every OutboxStore backend: append latency, drain
+ * throughput and recovery after the process dies with messages pending.
+ * Subclasses open the backend on disk, numbers are logged under TAG.
+ */
+public abstract class OutboxStoreBenchmark {
+    private static final String TAG = "OutboxStoreBenchmark";
+    private static final int MESSAGES = 2000;
+    private static final int DRAIN_PAGE = 50;
+
+    protected Context context;
+    protected OutboxStore store;
+
+    protected abstract String getName();
+
+    protected abstract OutboxStore open() throws Exception;
+
+    /**
+     * Drop the store as a killed process would and open its files again
+     */
+    protected abstract OutboxStore reopenAfterCrash(OutboxStore store) throws Exception;
+
+    protected abstract void closeAndDelete(OutboxStore store) throws Exception;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        closeAndDelete(store);
+    }
+
+    @Test
+    public void appendLatency() {
+        long[] samples = new long[MESSAGES];
+        long lastId = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageData message = message(i);
+            long start = System.nanoTime();
+            long id = store.append(message);
+            samples[i] = System.nanoTime() - start;
+            assertTrue(id > lastId);
+            lastId = id;
+        }
+        Arrays.sort(samples);
+        Log.i(TAG, String.format(Locale.US, "%s append: p50 %.2fms p99 %.2fms max %.2fms",
+                getName(), samples[MESSAGES / 2] / 1e6, samples[MESSAGES * 99 / 100] / 1e6,
+                samples[MESSAGES - 1] / 1e6));
+    }
+
+    @Test
+    public void drainThroughput() {
+        appendAll();
+
+        long start = System.nanoTime();
+        int drained = 0;
+        for (int lane = 0; lane < PriorityClassifier.LANE_COUNT; lane++) {
+            long afterId = 0;
+            while (true) {
+                List<MessageData> page = store.readPending(lane, afterId, DRAIN_PAGE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                long[] ids = new long[page.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(lane, page.get(i).getPriority());
+                    assertNotNull(page.get(i).getSender());
+                    ids[i] = page.get(i).getId();
+                }
+                store.ack(ids, System.currentTimeMillis());
+                drained += ids.length;
+                afterId = ids[ids.length - 1];
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Log.i(TAG, String.format(Locale.US, "%s drain: %d messages in %.0fms, %.0f msg/s",
+                getName(), drained, seconds * 1000, drained / seconds));
+        assertEquals(MESSAGES, drained);
+        assertTrue(store.getLaneDepths().isEmpty());
+    }
+
+    @Test
+    public void recoversPendingMessagesAfterCrash() throws Exception {
+        List<Long> ids = appendAll();
+
+        // Ack every other message, so acks above the oldest pending one must survive too
+        long[] acked = new long[MESSAGES / 2];
+        for (int i = 0; i < acked.length; i++) {
+            acked[i] = ids.get(i * 2 + 1);
+        }
+        store.ack(acked, System.currentTimeMillis());
+
+        long start = System.nanoTime();
+        store = reopenAfterCrash(store);
+        int pending = 0;
+        for (LaneDepth depth : store.getLaneDepths()) {
+            pending += depth.depth;
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        Log.i(TAG, String.format(Locale.US, "%s recovery: %d pending in %.1fms", getName(), pending, millis));
+        assertEquals(MESSAGES - acked.length, pending);
+
+        MessageData first = store.readPending(message(0).getPriority(), 0, 1).get(0);
+        assertEquals((long) ids.get(0), first.getId());
+        assertEquals(message(0).getMessageBody(), first.getMessageBody());
+        assertEquals(message(0).getSender(), first.getSender());
+
+        // Later appends never collide with recovered ids
+        assertTrue(store.append(message(MESSAGES)) > ids.get(MESSAGES - 1));
+    }
+
+    @Test
+    public void attemptsSurviveRestart() throws Exception {
+        long id = store.append(message(0));
+        store.recordAttempts(new long[]{id}, 1700000100000L, 5000);
+        store.recordAttempts(new long[]{id}, 1700000200000L, 6000);
+
+        store = reopenAfterCrash(store);
+        MessageData message = store.readPending(message(0).getPriority(), 0, 1).get(0);
+        assertEquals(2, message.getAttemptCount());
+        assertEquals(1700000100000L, message.getFirstAttemptAt());
+        assertEquals(5000, message.getFirstAttemptElapsed());
+    }
+
+    @Test
+    public void duplicatePendingMessageIsIgnored() {
+        assertTrue(store.append(message(1)) > 0);
+        assertEquals(-1, store.append(message(1)));
+    }
+
+    private List<Long> appendAll() {
+        List<Long> ids = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            ids.add(store.append(message(i)));
+        }
+        return ids;
+    }
+
+    protected static MessageData message(int i) {
+        MessageData message = new MessageData();
+        message.setSender(i % 4 == 0 ? "M-PESA" : "2557" + (10000000 + i % 97));
+        message.setReceiver("0754000000_Vodacom_SLOT0_123456");
+        message.setMessageBody("Umepokea Tsh " + (1000 + i) + " kutoka 0754" + (100000 + i));
+        message.setTimestamp(1700000000000L + i * 1000L);
+        message.setEnqueuedAt(1700000000000L + i * 1000L);
+        message.setPriority(i % PriorityClassifier.LANE_COUNT);
+        message.setDedupKey("key-" + i);
+        message.setPayload(("{\"message\":\"" + message.getMessageBody() + "\"}").getBytes());
+        return message;
+    }
+}
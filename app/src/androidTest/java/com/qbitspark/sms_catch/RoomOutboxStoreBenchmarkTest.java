@@ -0,0 +1,42 @@
+package com.qbitspark.sms_catch;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class RoomOutboxStoreBenchmarkTest extends OutboxStoreBenchmark {
+    private static final String TEST_DB = "outbox-benchmark";
+
+    private MessageDatabase database;
+
+    @Override
+    protected String getName() {
+        return "room";
+    }
+
+    @Override
+    protected OutboxStore open() {
+        context.deleteDatabase(TEST_DB);
+        return openDatabase();
+    }
+
+    @Override
+    protected OutboxStore reopenAfterCrash(OutboxStore store) {
+        // One process cannot abandon an open SQLite file, close it; the WAL is kept as after a crash
+        database.close();
+        return openDatabase();
+    }
+
+    @Override
+    protected void closeAndDelete(OutboxStore store) {
+        database.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    private OutboxStore openDatabase() {
+        database = Room.databaseBuilder(context, MessageDatabase.class, TEST_DB).build();
+        return new RoomOutboxStore(database, new MessageDictionary(database.dictionaryDao()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.qbitspark.sms_catch;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Builds raw 3GPP SMS-DELIVER PDUs (3GPP TS 23.040) as the radio would hand
+ * them to SMS_RECEIVED: no SMSC address, international originating address,
+ * UCS-2 user data, and an 8-bit concatenation header when the text needs
+ * more than one part.
+ */
+class SyntheticPdus {
+    private static final int UCS2_CHARS_SINGLE = 70;
+    private static final int UCS2_CHARS_PER_PART = 67;  // 6 header octets out of 140
+
+    private SyntheticPdus() {
+    }
+
+    /**
+     * One PDU per part; a single PDU if the text fits in one message
+     */
+    static List<byte[]> build(String sender, String text, long timestampMillis, int reference) {
+        List<byte[]> pdus = new ArrayList<>();
+        if (text.length() <= UCS2_CHARS_SINGLE) {
+            pdus.add(pdu(sender, text, timestampMillis, null));
+            return pdus;
+        }
+        int parts = (text.length() + UCS2_CHARS_PER_PART - 1) / UCS2_CHARS_PER_PART;
+        for (int i = 0; i < parts; i++) {
+            String part = text.substring(i * UCS2_CHARS_PER_PART,
+                    Math.min(text.length(), (i + 1) * UCS2_CHARS_PER_PART));
+            byte[] header = {0x05, 0x00, 0x03, (byte) reference, (byte) parts, (byte) (i + 1)};
+            pdus.add(pdu(sender, part, timestampMillis, header));
+        }
+        return pdus;
+    }
+
+    private static byte[] pdu(String sender, String text, long timestampMillis, byte[] header) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(176);
+        out.write(0x00);                                    // No SMSC address
+        out.write(header != null ? 0x44 : 0x04);            // SMS-DELIVER, no more messages, UDHI
+        String digits = sender.startsWith("+") ? sender.substring(1) : sender;
+        out.write(digits.length());
+        out.write(0x91);                                    // International, ISDN
+        writeSemiOctets(out, digits);
+        out.write(0x00);                                    // TP-PID
+        out.write(0x08);                                    // TP-DCS: UCS-2
+        writeTimestamp(out, timestampMillis);
+
+        byte[] body = text.getBytes(StandardCharsets.UTF_16BE);
+        int headerLength = header != null ? header.length : 0;
+        out.write(headerLength + body.length);              // TP-UDL in octets for UCS-2
+        if (header != null) {
+            out.write(header, 0, header.length);
+        }
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+
+    // Digits swapped within each octet, padded with F
+    private static void writeSemiOctets(ByteArrayOutputStream out, String digits) {
+        for (int i = 0; i < digits.length(); i += 2) {
+            int low = digits.charAt(i) - '0';
+            int high = i + 1 < digits.length() ? digits.charAt(i + 1) - '0' : 0x0f;
+            out.write((high << 4) | low);
+        }
+    }
+
+    // TP-SCTS in UTC, two decimal digits per field in swapped semi-octets
+    private static void writeTimestamp(ByteArrayOutputStream out, long timestampMillis) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(timestampMillis);
+        int[] fields = {
+                calendar.get(Calendar.YEAR) % 100,
+                calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH),
+                calendar.get(Calendar.HOUR_OF_DAY),
+                calendar.get(Calendar.MINUTE),
+                calendar.get(Calendar.SECOND),
+                0
+        };
+        for (int field : fields) {
+            out.write(((field % 10) << 4) | (field / 10));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer that coalesces upload acknowledgements. Acked IDs are queued
+ * from OkHttp callbacks and marked in one UPDATE ... WHERE id IN (...)
+ * transaction once MAX_BATCH acks are waiting or FLUSH_DELAY_MILLIS has
+ * passed since the first one, instead of one thread and one fsync per ack.
+ * Acked rows stay in the table until MessageRetention removes them.
+ *
+ * An ack lost to a process death only means the message is sent again.
+ */
+public class AckWriter {
+    private static final String TAG = "AckWriter";
+    private static final int MAX_BATCH = 500;               // Below SQLite's 999 bound-variable limit
+    private static final long FLUSH_DELAY_MILLIS = 1000;
+
+    private static AckWriter instance;
+
+    private final Context context;
+    private final LinkedBlockingQueue<Ack> queue = new LinkedBlockingQueue<>();
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+
+    // Written by the writer thread only, read under the lock for stats
+    private long ackedCount;
+    private long batchCount;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    private static class Ack {
+        final long id;
+        final String payloadFile;
+        final long queuedAtNanos;
+
+        Ack(long id, String payloadFile, long queuedAtNanos) {
+            this.id = id;
+            this.payloadFile = payloadFile;
+            this.queuedAtNanos = queuedAtNanos;
+        }
+    }
+
+    private AckWriter(Context context) {
+        this.context = context;
+        Thread writer = new Thread(this::writeLoop, "AckWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized AckWriter getInstance(Context context) {
+        if (instance == null) {
+            instance = new AckWriter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a message the server has accepted. Safe from any thread.
+     */
+    public void ack(MessageData messageData) {
+        DeliveryTimes.recordDelivered(messageData, System.currentTimeMillis(), SystemClock.elapsedRealtime());
+        pendingIds.add(messageData.getId());
+        queue.offer(new Ack(messageData.getId(), messageData.getPayloadFile(), System.nanoTime()));
+    }
+
+    /**
+     * True while an ack for this message is queued but not yet written
+     */
+    public boolean isPending(long id) {
+        return pendingIds.contains(id);
+    }
+
+    /**
+     * Acks accepted by ack() and not yet written, including a batch being applied
+     */
+    public int getPendingCount() {
+        return pendingIds.size();
+    }
+
+    public synchronized String getStatsSummary() {
+        double avgMillis = ackedCount > 0 ? totalLatencyNanos / 1e6 / ackedCount : 0;
+        return String.format(Locale.US, "acked=%d batches=%d pending=%d latency avg=%.1fms max=%.1fms",
+                ackedCount, batchCount, pendingIds.size(), avgMillis, maxLatencyNanos / 1e6);
+    }
+
+    private void writeLoop() {
+        List<Ack> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_DELAY_MILLIS);
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Ack next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, MAX_BATCH - batch.size());
+                }
+                apply(batch);
+            } catch (InterruptedException e) {
+                AppLog.w(TAG, "Ack writer interrupted, %d acks not applied", batch.size());
+                return;
+            } catch (RuntimeException e) {
+                // Leave the rows for the next sync rather than killing the writer
+                AppLog.e(TAG, "Failed to apply %d acks", batch.size(), e);
+            }
+            // Written or given up, either way the rows are visible to SyncWorker as they are
+            for (Ack ack : batch) {
+                pendingIds.remove(ack.id);
+            }
+            batch.clear();
+        }
+    }
+
+    private void apply(List<Ack> batch) {
+        long[] ids = new long[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = batch.get(i).id;
+        }
+
+        OutboxStore.getDefault(context).ack(ids, System.currentTimeMillis());
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            batchCount++;
+            for (Ack ack : batch) {
+                long latency = now - ack.queuedAtNanos;
+                PipelineMetrics.ACK.record(latency / 1000);
+                ackedCount++;
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            }
+        }
+
+        PipelineMetrics.ACKS_WRITTEN.add(batch.size());
+
+        // Side files only after their rows no longer point at them
+        for (Ack ack : batch) {
+            PayloadStore.discardFile(context, ack.payloadFile);
+        }
+        AppLog.d(TAG, "Applied %d acks in one transaction, %d pending", batch.size(), getPendingCount());
+    }
+}
@@ -5,16 +5,16 @@ import static android.content.Context.MODE_PRIVATE;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.util.Log;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -34,79 +34,168 @@ public class ApiClient {
     //private static final String API_ENDPOINT = "https://onepostz.xyz/api/callback/message";
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
     private static final OkHttpClient client = new OkHttpClient();
+    private static volatile String endpoint = API_ENDPOINT;
+
+    static OkHttpClient getHttpClient() {
+        return client;
+    }
+
+    /**
+     * Send uploads somewhere else, null for the default. For tests against a local mock backend.
+     */
+    static void setEndpoint(String url) {
+        endpoint = url != null ? url : API_ENDPOINT;
+    }
+
+    /**
+     * Outcome of one upload attempt, called on an OkHttp thread
+     */
+    public interface UploadListener {
+        void onUploaded();
+
+        void onFailed();
+    }
 
     public static void sendMessage(final Context context, final MessageData messageData) {
-        try {
+        upload(context, messageData, new UploadListener() {
+            @Override
+            public void onUploaded() {
+                // Coalesced with other acks into one update transaction
+                AckWriter.getInstance(context).ack(messageData);
+            }
+
+            @Override
+            public void onFailed() {
+                // Leave in database for sync worker to try later
+            }
+        });
+    }
 
-            // Use receiver number as branch ID (instead of manual branch ID)
-            String branchId = messageData.getReceiver();
+    /**
+     * Post the message and report the result without touching the database.
+     * Works on a message that is not stored yet, see FastPathDelivery.
+     */
+    static void upload(final Context context, final MessageData messageData, final UploadListener listener) {
+        try {
 
-            // Fallback to saved branch ID if receiver is null/empty
-            if (branchId == null || branchId.isEmpty() || branchId.equals("Unknown")) {
-                SharedPreferences sharedPreferences = context.getSharedPreferences("AppPrefs", MODE_PRIVATE);
-                branchId = sharedPreferences.getString("BRANCH_ID", "DEFAULT");
+            // Bytes serialized at ingestion, identical on every retry
+            RequestBody body = PayloadStore.toRequestBody(context, messageData, JSON);
+            if (body == null) {
+                // Rows saved before payloads were stored
+                body = RequestBody.create(buildPayload(context, messageData), JSON);
             }
 
-            JSONObject jsonPayload = getJsonObject(context, messageData, branchId);
+            long attemptAt = System.currentTimeMillis();
+            long attemptElapsed = SystemClock.elapsedRealtime();
+            DeliveryTimes.markAttempt(messageData, attemptAt, attemptElapsed);
 
-            RequestBody body = RequestBody.create(jsonPayload.toString(), JSON);
-            Request request = new Request.Builder()
-                    .url(API_ENDPOINT)
-                    .post(body)
-                    .build();
+            Request.Builder requestBuilder = new Request.Builder()
+                    .url(endpoint)
+                    .post(body);
+            addStageHeaders(requestBuilder, messageData, attemptAt, attemptElapsed);
+            Request request = requestBuilder.build();
 
-            Log.d(TAG, "Sending message: " + jsonPayload.toString());
+            AppLog.d(TAG, "Sending message %d (%d bytes)", messageData.getId(), body.contentLength());
 
             // Make the API call
+            final long startNanos = System.nanoTime();
             client.newCall(request).enqueue(new Callback() {
                 @Override
                 public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                    Log.e(TAG, "Failed to send message: " + e.getMessage());
-                    // Leave in database for sync worker to try later
+                    PipelineMetrics.NETWORK.record(PipelineMetrics.micros(startNanos));
+                    PipelineMetrics.UPLOADS_FAILED.inc();
+                    AppLog.e(TAG, "Failed to send message %d: %s", messageData.getId(), e.getMessage());
+                    listener.onFailed();
                 }
 
                 @Override
                 public void onResponse(@NonNull Call call, @NonNull Response response)  {
+                    PipelineMetrics.NETWORK.record(PipelineMetrics.micros(startNanos));
+                    response.close();
+                    (response.isSuccessful() ? PipelineMetrics.UPLOADS_OK : PipelineMetrics.UPLOADS_FAILED).inc();
                     if (response.isSuccessful()) {
-                        Log.d(TAG, "Message sent successfully: " + messageData.getId());
-
-                        // Delete from database after successful send
-                        new Thread(() -> {
-                            MessageDatabase database = MessageDatabase.getInstance(context);
-                            database.messageDao().deleteMessage(messageData.getId());
-                        }).start();
+                        AppLog.d(TAG, "Message sent successfully: %d", messageData.getId());
+                        listener.onUploaded();
                     } else {
-                        Log.e(TAG, "API error: " + response.code() + " - " + response.message());
-                        // Leave in database for sync worker to try later
+                        AppLog.e(TAG, "API error: %d - %s", response.code(), response.message());
+                        listener.onFailed();
                     }
                 }
 
             });
 
-        } catch (JSONException e) {
-            Log.e(TAG, "JSON error: " + e.getMessage());
+        } catch (JSONException | IOException e) {
+            AppLog.e(TAG, "Failed to prepare message: %s", e.getMessage());
+            PipelineMetrics.UPLOADS_FAILED.inc();
+            listener.onFailed();
         }
     }
 
+    /**
+     * Stage times as headers rather than in the body, which is serialized once
+     * at ingestion and must stay byte-identical across retries. Wall-clock
+     * values are epoch millis; X-Sms-Age-Ms is measured on the monotonic clock
+     * where possible, so it does not depend on the device clock being right.
+     */
+    private static void addStageHeaders(Request.Builder builder, MessageData messageData,
+                                        long attemptAt, long attemptElapsed) {
+        builder.header("X-Sms-Attempt", String.valueOf(messageData.getAttemptCount()));
+        builder.header("X-Sms-Sent-At", String.valueOf(attemptAt));
+        if (messageData.getReceivedAt() > 0) {
+            builder.header("X-Sms-Received-At", String.valueOf(messageData.getReceivedAt()));
+        }
+        if (messageData.getEnqueuedAt() > 0) {
+            builder.header("X-Sms-Persisted-At", String.valueOf(messageData.getEnqueuedAt()));
+        }
+        builder.header("X-Sms-First-Attempt-At", String.valueOf(messageData.getFirstAttemptAt()));
+        long age = DeliveryTimes.between(messageData.getReceivedAt(), messageData.getReceivedElapsed(),
+                attemptAt, attemptElapsed);
+        if (age >= 0) {
+            builder.header("X-Sms-Age-Ms", String.valueOf(age));
+        }
+    }
+
+    /**
+     * Serialize the upload body. Called once per message at ingestion, see PayloadStore.
+     */
+    static byte[] buildPayload(Context context, MessageData messageData) throws JSONException {
+        // Use receiver number as branch ID (instead of manual branch ID)
+        String branchId = messageData.getReceiver();
+
+        // Fallback to saved branch ID if receiver is null/empty
+        if (branchId == null || branchId.isEmpty() || branchId.equals("Unknown")) {
+            SharedPreferences sharedPreferences = context.getSharedPreferences("AppPrefs", MODE_PRIVATE);
+            branchId = sharedPreferences.getString("BRANCH_ID", "DEFAULT");
+        }
+
+        return getUploadPayload(context, messageData, branchId).toJsonBytes();
+    }
+
     @NonNull
-    private static JSONObject getJsonObject(Context context, MessageData messageData, String branchId) throws JSONException {
+    private static UploadPayload getUploadPayload(Context context, MessageData messageData, String branchId) throws JSONException {
         DeviceDetailsCollector deviceDetailsCollector = new DeviceDetailsCollector(context);
 
         // Create JSON payload
-        JSONObject jsonPayload = new JSONObject();
-        jsonPayload.put("branchId", branchId);  // Now using receiver number as branch ID
-        jsonPayload.put("sender", messageData.getSender());
-        jsonPayload.put("receiver", messageData.getReceiver());  // Add receiver to payload
-        jsonPayload.put("message", messageData.getMessageBody());
+        UploadPayload payload = new UploadPayload();
+        payload.branchId = branchId;  // Now using receiver number as branch ID
+        payload.sender = messageData.getSender();
+        payload.receiver = messageData.getReceiver();  // Add receiver to payload
+        payload.message = messageData.getMessageBody();
+
+        // Tags added by on-device filter rules
+        if (messageData.getTags() != null && !messageData.getTags().isEmpty()) {
+            payload.tags = Arrays.asList(messageData.getTags().split(","));
+        }
+
+        // Mobile-money fields extracted on device, sent alongside the raw body
+        payload.parsedJson = messageData.getParsedFields();
 
-        // Current time in ISO 8601 format
+        // Serialization time in ISO 8601 format, fixed once stored
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
         sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-        String currentTimestamp = sdf.format(new Date()); // Gets current time
-
-        jsonPayload.put("timestamp", currentTimestamp);
+        payload.timestamp = sdf.format(new Date()); // Gets current time
 
-        jsonPayload.put("deviceDetails", deviceDetailsCollector.getAllDeviceDetailsJson());
-        return jsonPayload;
+        payload.deviceDetailsJson = deviceDetailsCollector.getAllDeviceDetailsJson().toString();
+        return payload;
     }
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.qbitspark.sms_catch;
+
+import android.util.Log;
+
+/**
+ * Logging facade for the capture and delivery path. Calls below the current
+ * level return after one comparison, before any string is built; messages take
+ * a String.format pattern and up to three arguments (one, with a throwable),
+ * formatted only when the entry reaches logcat or the ring is dumped. Everything at or above the ring
+ * level is kept in a LogRing, dumped with
+ *
+ *   adb shell dumpsys activity service com.qbitspark.sms_catch/.SmsListenerService --log
+ *
+ * Wrap debug-only detail in if (AppLog.DEBUG) so release builds compile it out.
+ */
+public final class AppLog {
+    /**
+     * Compile-time gate for debug builds
+     */
+    public static final boolean DEBUG = BuildConfig.DEBUG;
+
+    private static final int RING_CAPACITY = 1024;
+    private static final LogRing RING = new LogRing(RING_CAPACITY);
+    private static final Object NO_ARG = LogRing.NO_ARG;
+
+    private static volatile int logcatLevel = DEBUG ? Log.DEBUG : Log.INFO;
+    private static volatile int ringLevel = DEBUG ? Log.DEBUG : Log.INFO;
+    // Lower of the two, checked first by every call
+    private static volatile int minLevel = Math.min(logcatLevel, ringLevel);
+
+    private AppLog() {
+    }
+
+    public static LogRing getRing() {
+        return RING;
+    }
+
+    /**
+     * Change what reaches logcat and what is kept in the ring at runtime
+     */
+    public static synchronized void setLevels(int newLogcatLevel, int newRingLevel) {
+        logcatLevel = newLogcatLevel;
+        ringLevel = newRingLevel;
+        minLevel = Math.min(newLogcatLevel, newRingLevel);
+    }
+
+    public static int getLogcatLevel() {
+        return logcatLevel;
+    }
+
+    public static int getRingLevel() {
+        return ringLevel;
+    }
+
+    public static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    public static void d(String tag, String message) {
+        if (Log.DEBUG >= minLevel) {
+            log(Log.DEBUG, tag, message, NO_ARG, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg0) {
+        if (Log.DEBUG >= minLevel) {
+            log(Log.DEBUG, tag, format, arg0, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg0, Object arg1) {
+        if (Log.DEBUG >= minLevel) {
+            log(Log.DEBUG, tag, format, arg0, arg1, NO_ARG, null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        if (Log.DEBUG >= minLevel) {
+            log(Log.DEBUG, tag, format, arg0, arg1, arg2, null);
+        }
+    }
+
+    public static void i(String tag, String message) {
+        if (Log.INFO >= minLevel) {
+            log(Log.INFO, tag, message, NO_ARG, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg0) {
+        if (Log.INFO >= minLevel) {
+            log(Log.INFO, tag, format, arg0, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg0, Object arg1) {
+        if (Log.INFO >= minLevel) {
+            log(Log.INFO, tag, format, arg0, arg1, NO_ARG, null);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        if (Log.INFO >= minLevel) {
+            log(Log.INFO, tag, format, arg0, arg1, arg2, null);
+        }
+    }
+
+    public static void w(String tag, String message) {
+        if (Log.WARN >= minLevel) {
+            log(Log.WARN, tag, message, NO_ARG, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg0) {
+        if (Log.WARN >= minLevel) {
+            log(Log.WARN, tag, format, arg0, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg0, Object arg1) {
+        if (Log.WARN >= minLevel) {
+            log(Log.WARN, tag, format, arg0, arg1, NO_ARG, null);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        if (Log.WARN >= minLevel) {
+            log(Log.WARN, tag, format, arg0, arg1, arg2, null);
+        }
+    }
+
+    public static void w(String tag, String message, Throwable throwable) {
+        if (Log.WARN >= minLevel) {
+            log(Log.WARN, tag, message, NO_ARG, NO_ARG, NO_ARG, throwable);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg0, Throwable throwable) {
+        if (Log.WARN >= minLevel) {
+            log(Log.WARN, tag, format, arg0, NO_ARG, NO_ARG, throwable);
+        }
+    }
+
+    public static void e(String tag, String message) {
+        if (Log.ERROR >= minLevel) {
+            log(Log.ERROR, tag, message, NO_ARG, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg0) {
+        if (Log.ERROR >= minLevel) {
+            log(Log.ERROR, tag, format, arg0, NO_ARG, NO_ARG, null);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg0, Object arg1) {
+        if (Log.ERROR >= minLevel) {
+            log(Log.ERROR, tag, format, arg0, arg1, NO_ARG, null);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        if (Log.ERROR >= minLevel) {
+            log(Log.ERROR, tag, format, arg0, arg1, arg2, null);
+        }
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        if (Log.ERROR >= minLevel) {
+            log(Log.ERROR, tag, message, NO_ARG, NO_ARG, NO_ARG, throwable);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg0, Throwable throwable) {
+        if (Log.ERROR >= minLevel) {
+            log(Log.ERROR, tag, format, arg0, NO_ARG, NO_ARG, throwable);
+        }
+    }
+
+    private static void log(int level, String tag, String format, Object arg0, Object arg1, Object arg2,
+                            Throwable throwable) {
+        if (level >= ringLevel) {
+            RING.add(level, tag, format, arg0, arg1, arg2, throwable);
+        }
+        if (level >= logcatLevel) {
+            String message = LogRing.format(format, arg0, arg1, arg2);
+            if (throwable != null) {
+                message += '\n' + Log.getStackTraceString(throwable);
+            }
+            Log.println(level, tag, message);
+        }
+    }
+}
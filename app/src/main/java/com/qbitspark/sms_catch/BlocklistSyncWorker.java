@@ -0,0 +1,89 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Downloads sender blocklist changes since the version on disk.
+ *
+ * Response: {"version": 42, "full": false, "added": ["PROMO-X"], "removed": ["0754000000"]}
+ * The server sends "full": true with the complete list when the delta is too old.
+ */
+public class BlocklistSyncWorker extends Worker {
+    private static final String TAG = "BlocklistSyncWorker";
+    private static final String BLOCKLIST_ENDPOINT = "http://192.168.1.4:8080/blocklist";
+    //private static final String BLOCKLIST_ENDPOINT = "https://onepostz.xyz/api/callback/blocklist";
+
+    public BlocklistSyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SenderBlocklist blocklist = SenderBlocklist.getInstance(getApplicationContext());
+        long currentVersion = blocklist.getVersion();
+
+        Request request = new Request.Builder()
+                .url(BLOCKLIST_ENDPOINT + "?since=" + currentVersion)
+                .get()
+                .build();
+
+        try (Response response = ApiClient.getHttpClient().newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == 304) {
+                Log.d(TAG, "Blocklist is up to date (version " + currentVersion + ")");
+                return Result.success();
+            }
+            if (!response.isSuccessful() || body == null) {
+                Log.e(TAG, "Blocklist download failed: " + response.code());
+                return Result.retry();
+            }
+
+            JSONObject json = new JSONObject(body.string());
+            long version = json.getLong("version");
+            if (version == currentVersion) {
+                return Result.success();
+            }
+
+            blocklist.applyUpdate(version,
+                    json.optBoolean("full", false),
+                    toList(json.optJSONArray("added")),
+                    toList(json.optJSONArray("removed")));
+            return Result.success();
+
+        } catch (IOException e) {
+            Log.e(TAG, "Blocklist download error: " + e.getMessage());
+            return Result.retry();
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid blocklist response: " + e.getMessage());
+            return Result.failure();
+        }
+    }
+
+    private static List<String> toList(JSONArray array) throws JSONException {
+        List<String> list = new ArrayList<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                list.add(array.getString(i));
+            }
+        }
+        return list;
+    }
+}
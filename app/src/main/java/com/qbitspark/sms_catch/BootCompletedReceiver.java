@@ -31,6 +31,13 @@ public class BootCompletedReceiver extends BroadcastReceiver {
             WorkManagerHelper.triggerImmediateSync(context);
             // Also restart the periodic sync worker
             WorkManagerHelper.scheduleSyncWorker(context);
+            // Keep the spam sender blocklist current
+            WorkManagerHelper.scheduleBlocklistSync(context);
+            // Pick up SMS that arrived before boot completed
+            WorkManagerHelper.triggerInboxCatchUp(context);
+            WorkManagerHelper.scheduleInboxCatchUp(context);
+            // Trim acknowledged history and compact the database while charging
+            WorkManagerHelper.scheduleRetention(context);
         }
     }
 }
@@ -0,0 +1,25 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * One refresh of the operations dashboard in MainActivity
+ */
+public class DashboardState {
+    public final int[] laneDepths = new int[PriorityClassifier.LANE_COUNT];
+    public final long[] laneOldestEnqueuedAt = new long[PriorityClassifier.LANE_COUNT];
+    public double receivedPerMinute;
+    public double deliveredPerMinute;
+    public long deliveryP95Millis = -1;         // -1 until something was delivered
+    public long lastUploadAt;                   // 0 if nothing acked is kept
+    public String killSwitch;
+    public String deliveryPolicy;
+    public String network;
+    public long updatedAt;
+
+    public int getTotalDepth() {
+        int total = 0;
+        for (int depth : laneDepths) {
+            total += depth;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,179 @@
+package com.qbitspark.sms_catch;
+
+import android.app.Application;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.room.InvalidationTracker;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Live outbox and delivery figures for MainActivity, refreshed every
+ * REFRESH_INTERVAL_MILLIS while the screen is visible and not at all
+ * otherwise. Throughput, latency, kill switch and delivery policy come from
+ * memory; the outbox is only queried after Room reports a write to the
+ * messages table, and at most once per MIN_QUERY_INTERVAL_MILLIS, so a busy
+ * outbox does not turn the dashboard into a query per insert.
+ */
+public class DashboardViewModel extends AndroidViewModel {
+    private static final String TAG = "DashboardViewModel";
+    static final long REFRESH_INTERVAL_MILLIS = 2000;
+    static final long MIN_QUERY_INTERVAL_MILLIS = 5000;
+    // Rates are over the last minute of refreshes
+    private static final long RATE_WINDOW_MILLIS = 60_000;
+
+    private final DashboardLiveData state;
+
+    public DashboardViewModel(@NonNull Application application) {
+        super(application);
+        state = new DashboardLiveData(application);
+    }
+
+    public LiveData<DashboardState> getState() {
+        return state;
+    }
+
+    private static final class DashboardLiveData extends LiveData<DashboardState> {
+        private final Context context;
+        private final MessageDatabase database;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final Runnable tick = this::tick;
+        private final InvalidationTracker.Observer outboxObserver = new InvalidationTracker.Observer("messages") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                outboxChanged = true;
+            }
+        };
+        private final int samples = (int) (RATE_WINDOW_MILLIS / REFRESH_INTERVAL_MILLIS) + 1;
+        private final RateWindow received = new RateWindow(RATE_WINDOW_MILLIS, samples);
+        private final RateWindow delivered = new RateWindow(RATE_WINDOW_MILLIS, samples);
+
+        private volatile boolean active;
+        private volatile boolean outboxChanged = true;
+        private boolean loading;                // Main thread only
+        private boolean observing;              // Guarded by this
+
+        // Last outbox query, loader thread only (one loader at a time)
+        private List<LaneDepth> laneDepths = Collections.emptyList();
+        private long lastUploadAt;
+        private long lastQueryAt;
+
+        DashboardLiveData(Context context) {
+            this.context = context;
+            this.database = MessageDatabase.getInstance(context);
+        }
+
+        @Override
+        protected void onActive() {
+            active = true;
+            // Writes made while hidden were not observed
+            outboxChanged = true;
+            handler.post(tick);
+        }
+
+        @Override
+        protected void onInactive() {
+            active = false;
+            handler.removeCallbacks(tick);
+            // Unregistering syncs Room's triggers, keep it off the main thread
+            new Thread(this::updateObserver, "DashboardObserver").start();
+        }
+
+        private void tick() {
+            if (!loading) {
+                loading = true;
+                new Thread(this::load, "DashboardLoader").start();
+            }
+            handler.postDelayed(tick, REFRESH_INTERVAL_MILLIS);
+        }
+
+        private void load() {
+            try {
+                updateObserver();
+                postValue(snapshot());
+            } catch (RuntimeException e) {
+                AppLog.e(TAG, "Dashboard refresh failed", e);
+            } finally {
+                handler.post(() -> loading = false);
+            }
+        }
+
+        private synchronized void updateObserver() {
+            boolean wanted = active;
+            if (wanted != observing) {
+                if (wanted) {
+                    database.getInvalidationTracker().addObserver(outboxObserver);
+                } else {
+                    database.getInvalidationTracker().removeObserver(outboxObserver);
+                }
+                observing = wanted;
+            }
+        }
+
+        private DashboardState snapshot() {
+            long now = System.currentTimeMillis();
+            if (outboxChanged && now - lastQueryAt >= MIN_QUERY_INTERVAL_MILLIS) {
+                // Cleared first, so a write during the query triggers another one
+                outboxChanged = false;
+                lastQueryAt = now;
+                MessageDao dao = database.messageDao();
+                laneDepths = dao.getLaneDepths();
+                Long newestAckedAt = dao.getNewestAckedAt();
+                lastUploadAt = newestAckedAt != null ? newestAckedAt : 0;
+            }
+
+            DashboardState state = new DashboardState();
+            state.updatedAt = now;
+            for (LaneDepth laneDepth : laneDepths) {
+                if (laneDepth.lane >= 0 && laneDepth.lane < PriorityClassifier.LANE_COUNT) {
+                    state.laneDepths[laneDepth.lane] = laneDepth.depth;
+                    state.laneOldestEnqueuedAt[laneDepth.lane] = laneDepth.oldestEnqueuedAt;
+                }
+            }
+            state.lastUploadAt = lastUploadAt;
+
+            received.add(now, PipelineMetrics.MESSAGES_PERSISTED.get());
+            delivered.add(now, PipelineMetrics.DELIVERIES.get());
+            state.receivedPerMinute = received.perMinute();
+            state.deliveredPerMinute = delivered.perMinute();
+            if (PipelineMetrics.DELIVERY.getCount() > 0) {
+                state.deliveryP95Millis = PipelineMetrics.DELIVERY.getPercentile(0.95) / 1000;
+            }
+
+            KillSwitch killSwitch = KillSwitch.getInstance();
+            state.killSwitch = killSwitch.isKnownDisabled() ? "ON - uploads stopped"
+                    : killSwitch.isKnownEnabled() ? "off" : "unknown";
+            state.deliveryPolicy = DeliveryScheduler.getInstance(context).describePolicy();
+            state.network = describeNetwork();
+            return state;
+        }
+
+        private String describeNetwork() {
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            Network network = connectivityManager.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null
+                    ? connectivityManager.getNetworkCapabilities(network) : null;
+            if (capabilities == null
+                    || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+                return "Offline";
+            }
+            String transport = capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI) ? "Wi-Fi"
+                    : capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR) ? "Cellular"
+                    : "Other";
+            boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+            boolean validated = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+            return transport + (metered ? ", metered" : "") + (validated ? "" : ", not validated");
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.qbitspark.sms_catch;
+
+import static android.content.Context.MODE_PRIVATE;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Power-aware delivery scheduler.
+ * While the device is on battery and below the charge threshold, non-urgent
+ * messages are held in the database and sent together in one deferred sync,
+ * so the radio wakes up once per batch instead of once per SMS.
+ */
+public class DeliveryScheduler {
+    private static final String TAG = "DeliveryScheduler";
+    private static final String PREF_BATTERY_THRESHOLD = "BATTERY_DEFER_THRESHOLD";
+    private static final int DEFAULT_BATTERY_THRESHOLD = 50; // Percent
+
+    /**
+     * Message class with its delivery latency target
+     */
+    public enum MessageClass {
+        URGENT(0),                  // Send immediately, whatever the battery state
+        BULK(15 * 60 * 1000L);      // May be held up to 15 minutes on battery
+
+        public final long latencyTargetMillis;
+
+        MessageClass(long latencyTargetMillis) {
+            this.latencyTargetMillis = latencyTargetMillis;
+        }
+    }
+
+    public enum Decision {
+        SEND_NOW,   // Upload this message right away
+        FLUSH,      // Radio is waking anyway - drain everything that is held
+        DEFER       // Leave in database, a deferred sync will pick it up
+    }
+
+    private static DeliveryScheduler instance;
+
+    private final Context context;
+    private int heldCount = 0;
+    private long oldestHeldAt = 0;
+
+    private DeliveryScheduler(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized DeliveryScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new DeliveryScheduler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Only the priority lane is urgent, everything else may be batched
+     */
+    public static MessageClass classify(MessageData messageData) {
+        return messageData.getPriority() == PriorityClassifier.LANE_PRIORITY
+                ? MessageClass.URGENT : MessageClass.BULK;
+    }
+
+    /**
+     * Decide what to do with a message that has just been saved to the database
+     */
+    public synchronized Decision onMessagePersisted(MessageData messageData) {
+        MessageClass messageClass = classify(messageData);
+
+        if (!shouldBatch()) {
+            // On power (or battery is healthy) - flush anything held earlier
+            return heldCount > 0 ? flushHeld() : Decision.SEND_NOW;
+        }
+
+        if (messageClass == MessageClass.URGENT) {
+            // Urgent message wakes the radio, let held messages ride along
+            return heldCount > 0 ? flushHeld() : Decision.SEND_NOW;
+        }
+
+        long now = System.currentTimeMillis();
+        if (heldCount == 0) {
+            oldestHeldAt = now;
+            // KEEP policy means the first held message sets the wake-up time
+            WorkManagerHelper.scheduleDeferredSync(context, messageClass.latencyTargetMillis);
+        }
+        heldCount++;
+
+        AppLog.d(TAG, "Holding message on battery (%d held, oldest %ds)", heldCount,
+                (now - oldestHeldAt) / 1000);
+        return Decision.DEFER;
+    }
+
+    /**
+     * True if onMessagePersisted would let this message go out right away
+     * (SEND_NOW or FLUSH). Changes no state, see FastPathDelivery.
+     */
+    public boolean wouldSendNow(MessageData messageData) {
+        return classify(messageData) == MessageClass.URGENT || !shouldBatch();
+    }
+
+    /**
+     * Request a sync from outside the ingestion path (e.g. network came back)
+     */
+    public synchronized void requestFlush() {
+        if (shouldBatch()) {
+            // Do not wake the radio on every connectivity change while on battery
+            WorkManagerHelper.scheduleDeferredSync(context, MessageClass.BULK.latencyTargetMillis);
+        } else {
+            flushHeld();
+        }
+    }
+
+    /**
+     * Charger connected - send everything that was held right away
+     */
+    public synchronized void onPowerConnected() {
+        AppLog.i(TAG, "Power connected, flushing %d held message(s)", heldCount);
+        flushHeld();
+    }
+
+    /**
+     * Called by the sync worker once it starts draining the database
+     */
+    public synchronized void onSyncStarted() {
+        heldCount = 0;
+        oldestHeldAt = 0;
+    }
+
+    /**
+     * True when on battery and below the configured charge threshold
+     */
+    public boolean shouldBatch() {
+        DeviceDetailsCollector.PowerState powerState = new DeviceDetailsCollector(context).getPowerState();
+        if (powerState.charging || powerState.batteryPercent < 0) {
+            return false;
+        }
+        return powerState.batteryPercent < getBatteryThreshold();
+    }
+
+    public synchronized int getHeldCount() {
+        return heldCount;
+    }
+
+    /**
+     * One line describing the current policy, for the status screen
+     */
+    public String describePolicy() {
+        DeviceDetailsCollector.PowerState powerState = new DeviceDetailsCollector(context).getPowerState();
+        if (powerState.charging) {
+            return "Send now (charging)";
+        }
+        int threshold = getBatteryThreshold();
+        if (powerState.batteryPercent < 0 || powerState.batteryPercent >= threshold) {
+            return "Send now (battery " + powerState.batteryPercent + "%)";
+        }
+        return "Batch non-urgent (battery " + powerState.batteryPercent + "% < " + threshold + "%, "
+                + getHeldCount() + " held)";
+    }
+
+    private int getBatteryThreshold() {
+        SharedPreferences prefs = context.getSharedPreferences("AppPrefs", MODE_PRIVATE);
+        return prefs.getInt(PREF_BATTERY_THRESHOLD, DEFAULT_BATTERY_THRESHOLD);
+    }
+
+    private Decision flushHeld() {
+        if (heldCount > 0) {
+            AppLog.d(TAG, "Flushing %d held message(s), oldest %ds", heldCount,
+                    (System.currentTimeMillis() - oldestHeldAt) / 1000);
+        }
+        WorkManagerHelper.cancelDeferredSync(context);
+        WorkManagerHelper.triggerImmediateSync(context);
+        heldCount = 0;
+        oldestHeldAt = 0;
+        return Decision.FLUSH;
+    }
+}
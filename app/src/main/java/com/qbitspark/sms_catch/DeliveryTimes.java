@@ -0,0 +1,70 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Stage-to-stage latencies of one message from its stored stage times
+ * (received, persisted, first attempt, acked). Each stage keeps a wall-clock
+ * and a monotonic (elapsedRealtime) time: the monotonic pair is used when both
+ * ends fall in the same boot, so clock changes do not skew the result, the wall
+ * clock otherwise.
+ */
+public class DeliveryTimes {
+    // Wall clock drift tolerated when deciding whether a stage happened in the current boot
+    static final long BOOT_TOLERANCE_MILLIS = 60_000;
+
+    private DeliveryTimes() {
+    }
+
+    /**
+     * Millis from one stage to a later one, or -1 if the start is unknown.
+     * endWall and endElapsed are taken together, normally "now".
+     */
+    public static long between(long startWall, long startElapsed, long endWall, long endElapsed) {
+        if (startElapsed > 0 && endElapsed >= startElapsed
+                && startWall >= endWall - endElapsed - BOOT_TOLERANCE_MILLIS) {
+            return endElapsed - startElapsed;
+        }
+        if (startWall <= 0) {
+            return -1;
+        }
+        return Math.max(0, endWall - startWall);
+    }
+
+    /**
+     * Count one upload attempt on the in-memory message. The row is updated
+     * through OutboxStore.recordAttempts, or at append for the fast path.
+     */
+    public static void markAttempt(MessageData messageData, long attemptAt, long attemptElapsed) {
+        if (messageData.getFirstAttemptAt() == 0) {
+            messageData.setFirstAttemptAt(attemptAt);
+            messageData.setFirstAttemptElapsed(attemptElapsed);
+        }
+        messageData.setAttemptCount(messageData.getAttemptCount() + 1);
+    }
+
+    /**
+     * Roll a message the server just accepted into the delivery histograms,
+     * counting it against its lane's latency target
+     */
+    public static void recordDelivered(MessageData messageData, long ackedAt, long ackedElapsed) {
+        long endToEnd = between(messageData.getReceivedAt(), messageData.getReceivedElapsed(), ackedAt, ackedElapsed);
+        if (endToEnd >= 0) {
+            PipelineMetrics.DELIVERY.record(endToEnd * 1000);
+            int lane = messageData.getPriority();
+            if (lane >= 0 && lane < PriorityClassifier.LANE_COUNT
+                    && endToEnd > PriorityClassifier.LANE_LATENCY_TARGETS[lane]) {
+                PipelineMetrics.DELIVERIES_OVER_TARGET.inc();
+            }
+        }
+        if (messageData.getFirstAttemptAt() > 0) {
+            long queued = between(messageData.getEnqueuedAt(), messageData.getPersistedElapsed(),
+                    messageData.getFirstAttemptAt(), messageData.getFirstAttemptElapsed());
+            if (queued >= 0) {
+                PipelineMetrics.QUEUE_WAIT.record(queued * 1000);
+            }
+        }
+        if (messageData.getAttemptCount() > 1) {
+            PipelineMetrics.DELIVERIES_RETRIED.inc();
+        }
+        PipelineMetrics.DELIVERIES.inc();
+    }
+}
@@ -18,7 +18,6 @@ import android.os.StatFs;
 import android.provider.Settings;
 import android.telephony.TelephonyManager;
 import android.util.DisplayMetrics;
-import android.util.Log;
 import android.view.WindowManager;
 
 import androidx.annotation.NonNull;
@@ -39,6 +38,10 @@ public class DeviceDetailsCollector {
     private final Context context;
     private static final String TAG = "DeviceDetailsCollector";
 
+    // Android 10+ denies both to normal apps on every call; worth one line per process, not one per message
+    private static volatile boolean imeiRestrictionLogged;
+    private static volatile boolean serialRestrictionLogged;
+
     public DeviceDetailsCollector(Context context) {
         this.context = context;
     }
@@ -134,7 +137,10 @@ public class DeviceDetailsCollector {
                             telephonyManager.getImei() : telephonyManager.getDeviceId();
                     json.put("imei", imei != null ? imei : "Not Available");
                 } catch (SecurityException e) {
-                    Log.w(TAG, "Cannot get IMEI due to security restrictions", e);
+                    if (!imeiRestrictionLogged) {
+                        imeiRestrictionLogged = true;
+                        AppLog.w(TAG, "Cannot get IMEI due to security restrictions: %s", e.getMessage());
+                    }
                     json.put("imei", "Permission Denied");
                 }
 
@@ -143,7 +149,10 @@ public class DeviceDetailsCollector {
                             Build.getSerial() : Build.SERIAL;
                     json.put("serialNumber", serialNumber != null ? serialNumber : "Not Available");
                 } catch (SecurityException e) {
-                    Log.w(TAG, "Cannot get Serial Number due to security restrictions", e);
+                    if (!serialRestrictionLogged) {
+                        serialRestrictionLogged = true;
+                        AppLog.w(TAG, "Cannot get Serial Number due to security restrictions: %s", e.getMessage());
+                    }
                     json.put("serialNumber", "Permission Denied");
                 }
             } else {
@@ -151,7 +160,7 @@ public class DeviceDetailsCollector {
                 json.put("serialNumber", "Permission not granted");
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error getting device identifiers", e);
+            AppLog.e(TAG, "Error getting device identifiers", e);
             json.put("imei", "Error getting IMEI");
             json.put("serialNumber", "Error getting Serial");
         }
@@ -174,6 +183,43 @@ public class DeviceDetailsCollector {
         return json;
     }
 
+    /**
+     * Snapshot of the charging state used for delivery scheduling
+     */
+    public static class PowerState {
+        public final boolean charging;     // Plugged in, charging or full
+        public final int batteryPercent;   // 0-100, or -1 when unknown
+
+        public PowerState(boolean charging, int batteryPercent) {
+            this.charging = charging;
+            this.batteryPercent = batteryPercent;
+        }
+    }
+
+    /**
+     * Reads the sticky battery broadcast and returns the current power state
+     */
+    public PowerState getPowerState() {
+        Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+
+        if (batteryStatus == null) {
+            // Unknown state - treat as charging so nothing is held back
+            return new PowerState(true, -1);
+        }
+
+        int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        int plugged = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+        boolean charging = plugged != 0
+                || status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+
+        int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int percent = (level >= 0 && scale > 0) ? (level * 100 / scale) : -1;
+
+        return new PowerState(charging, percent);
+    }
+
     private JSONObject getBatteryInformationJson() throws JSONException {
         JSONObject json = new JSONObject();
         Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
@@ -0,0 +1,28 @@
+package com.qbitspark.sms_catch;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface DictionaryDao {
+    @Query("SELECT id FROM senders WHERE value = :value")
+    Long findSenderId(String value);
+
+    @Query("SELECT value FROM senders WHERE id = :id")
+    String getSender(long id);
+
+    // Returns -1 if another thread interned the same value first
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertSender(SenderEntry entry);
+
+    @Query("SELECT id FROM receivers WHERE value = :value")
+    Long findReceiverId(String value);
+
+    @Query("SELECT value FROM receivers WHERE id = :id")
+    String getReceiver(long id);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertReceiver(ReceiverEntry entry);
+}
@@ -9,7 +9,6 @@ import android.os.Build;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
-import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
@@ -29,116 +28,41 @@ public class EnhancedSIMManager {
         this.context = context;
     }
 
-    /**
-     * Comprehensive SIM information class with ICCID tracking
-     */
-    public static class SIMInfo {
-        public String iccid;              // Primary identifier - follows SIM card
-        public String userPhoneNumber;    // User-entered phone number
-        public String carrierName;        // Network operator name
-        public int subscriptionId;        // Current subscription ID (can change)
-        public int slotIndex;            // Current slot (0 or 1) - can change
-        public String detectedNumber;     // Auto-detected number (may be null)
-        public long lastSeen;            // When this SIM was last detected
-        public boolean isActive;         // Currently present in device
-
-        public String getDisplayName() {
-            return carrierName + " (" + (userPhoneNumber != null ? userPhoneNumber : "No Number") + ")";
-        }
-
-        public String getIdentifierKey() {
-            return "SIM_" + iccid;
-        }
-    }
-
-    /**
-     * SIM swap detection result
-     */
-    public static class SwapDetectionResult {
-        public List<SIMInfo> newSIMs = new ArrayList<>();
-        public List<SIMInfo> removedSIMs = new ArrayList<>();
-        public List<SIMInfo> movedSIMs = new ArrayList<>();
-        public List<SIMInfo> activeSIMs = new ArrayList<>();
-
-        public boolean hasChanges() {
-            return !newSIMs.isEmpty() || !removedSIMs.isEmpty() || !movedSIMs.isEmpty();
-        }
-
-        public String getChangesSummary() {
-            StringBuilder summary = new StringBuilder();
-            if (!newSIMs.isEmpty()) {
-                summary.append("📱 New SIMs detected: ").append(newSIMs.size()).append("\n");
-            }
-            if (!removedSIMs.isEmpty()) {
-                summary.append("❌ SIMs removed: ").append(removedSIMs.size()).append("\n");
-            }
-            if (!movedSIMs.isEmpty()) {
-                summary.append("🔄 SIMs moved slots: ").append(movedSIMs.size()).append("\n");
-            }
-            return summary.toString();
-        }
-    }
-
     /**
      * Detect current SIMs and compare with saved data
      */
     public SwapDetectionResult detectSIMChanges() {
-        SwapDetectionResult result = new SwapDetectionResult();
-
         // Get currently detected SIMs
         List<SIMInfo> currentSIMs = getCurrentSIMs();
 
         // Get previously saved SIMs
         List<SIMInfo> savedSIMs = getSavedSIMs();
 
-        Log.d(TAG, "Detected " + currentSIMs.size() + " current SIMs, " + savedSIMs.size() + " saved SIMs");
-
-        // Check each current SIM
-        for (SIMInfo currentSIM : currentSIMs) {
-            SIMInfo savedSIM = findSIMByICCID(savedSIMs, currentSIM.iccid);
-
-            if (savedSIM == null) {
-                // New SIM card
-                result.newSIMs.add(currentSIM);
-                Log.d(TAG, "New SIM detected: " + currentSIM.iccid);
-            } else {
-                // Existing SIM - check if it moved slots
-                if (savedSIM.slotIndex != currentSIM.slotIndex) {
-                    currentSIM.userPhoneNumber = savedSIM.userPhoneNumber; // Preserve user data
-                    result.movedSIMs.add(currentSIM);
-                    Log.d(TAG, "SIM moved from slot " + savedSIM.slotIndex + " to " + currentSIM.slotIndex);
-                } else {
-                    // Same SIM, same slot - preserve user data
-                    currentSIM.userPhoneNumber = savedSIM.userPhoneNumber;
-                }
-            }
+        AppLog.d(TAG, "Detected %d current SIMs, %d saved SIMs", currentSIMs.size(), savedSIMs.size());
 
-            result.activeSIMs.add(currentSIM);
+        SwapDetectionResult result = SimSwapDetector.compare(currentSIMs, savedSIMs);
+        for (SIMInfo newSIM : result.newSIMs) {
+            AppLog.i(TAG, "New SIM detected: %s", newSIM.iccid);
         }
-
-        // Check for removed SIMs
-        for (SIMInfo savedSIM : savedSIMs) {
-            if (findSIMByICCID(currentSIMs, savedSIM.iccid) == null) {
-                result.removedSIMs.add(savedSIM);
-                Log.d(TAG, "SIM removed: " + savedSIM.iccid);
-            }
+        for (SIMInfo movedSIM : result.movedSIMs) {
+            AppLog.i(TAG, "SIM moved to slot %d", movedSIM.slotIndex);
+        }
+        for (SIMInfo removedSIM : result.removedSIMs) {
+            AppLog.i(TAG, "SIM removed: %s", removedSIM.iccid);
         }
 
         // Update saved data with current state
         if (result.hasChanges()) {
             saveSIMs(result.activeSIMs);
-            Log.d(TAG, "Updated SIM database due to changes");
+            AppLog.d(TAG, "Updated SIM database due to changes");
         }
 
         return result;
     }
 
-
-
-    // Replace the getCurrentSIMs() method in EnhancedSIMManager.java with this enhanced version:
-
     /**
-     * Get currently active SIMs from system with enhanced debugging
+     * Get currently active SIMs from system. Polled every few seconds, so it
+     * logs one line per SIM, and only when debug logging is on.
      */
     private List<SIMInfo> getCurrentSIMs() {
         List<SIMInfo> currentSIMs = new ArrayList<>();
@@ -148,54 +72,32 @@ public class EnhancedSIMManager {
                 // Check permissions first
                 if (ActivityCompat.checkSelfPermission(context, Manifest.permission.READ_PHONE_STATE)
                         != PackageManager.PERMISSION_GRANTED) {
-                    Log.e(TAG, "❌ READ_PHONE_STATE permission not granted!");
+                    AppLog.e(TAG, "❌ READ_PHONE_STATE permission not granted!");
                     return currentSIMs;
                 }
 
-                Log.d(TAG, "✅ READ_PHONE_STATE permission granted");
-
                 SubscriptionManager subscriptionManager = SubscriptionManager.from(context);
                 List<SubscriptionInfo> subscriptions = subscriptionManager.getActiveSubscriptionInfoList();
 
                 if (subscriptions == null) {
-                    Log.w(TAG, "⚠️ No active subscriptions found");
+                    AppLog.w(TAG, "⚠️ No active subscriptions found");
                     return currentSIMs;
                 }
 
-                Log.d(TAG, "📱 Found " + subscriptions.size() + " active subscription(s)");
-
                 for (int i = 0; i < subscriptions.size(); i++) {
                     SubscriptionInfo subInfo = subscriptions.get(i);
-
-                    Log.d(TAG, "=== SIM " + (i + 1) + " Details ===");
-                    Log.d(TAG, "Subscription ID: " + subInfo.getSubscriptionId());
-                    Log.d(TAG, "Carrier Name: " + subInfo.getCarrierName());
-                    Log.d(TAG, "Slot Index: " + subInfo.getSimSlotIndex());
-                    Log.d(TAG, "Display Name: " + subInfo.getDisplayName());
-                    Log.d(TAG, "Phone Number: " + subInfo.getNumber());
-
-                    // Debug ICCID retrieval
                     String iccid = subInfo.getIccId();
-                    Log.d(TAG, "Raw ICCID: '" + iccid + "'");
-                    Log.d(TAG, "ICCID Length: " + (iccid != null ? iccid.length() : "null"));
-                    Log.d(TAG, "ICCID isEmpty: " + (iccid == null || iccid.isEmpty()));
 
                     SIMInfo simInfo = new SIMInfo();
 
                     // Handle empty ICCID by creating fallback identifier
                     if (iccid == null || iccid.isEmpty()) {
-                        Log.w(TAG, "⚠️ ICCID is empty! Creating fallback identifier");
-
                         // Create fallback ICCID using subscription info
-                        String fallbackICCID = "FALLBACK_" +
+                        simInfo.iccid = "FALLBACK_" +
                                 subInfo.getSubscriptionId() + "_" +
                                 subInfo.getCarrierName().toString().replaceAll("[^A-Za-z0-9]", "") + "_" +
                                 subInfo.getSimSlotIndex();
-
-                        Log.d(TAG, "💡 Created fallback ICCID: " + fallbackICCID);
-                        simInfo.iccid = fallbackICCID;
                     } else {
-                        Log.d(TAG, "✅ Valid ICCID found: " + iccid);
                         simInfo.iccid = iccid;
                     }
 
@@ -208,21 +110,21 @@ public class EnhancedSIMManager {
 
                     currentSIMs.add(simInfo);
 
-                    Log.d(TAG, "✅ SIM Added: ICCID=" + simInfo.iccid +
-                            ", Carrier=" + simInfo.carrierName +
-                            ", Slot=" + simInfo.slotIndex);
-                    Log.d(TAG, "========================");
+                    if (AppLog.DEBUG) {
+                        AppLog.d(TAG, "SIM sub=%d slot=%d carrier=%s", simInfo.subscriptionId,
+                                simInfo.slotIndex, simInfo.carrierName);
+                        AppLog.d(TAG, "  ICCID=%s%s", simInfo.iccid,
+                                iccid == null || iccid.isEmpty() ? " (fallback, ICCID not readable)" : "");
+                    }
                 }
 
-                Log.d(TAG, "🎯 Total SIMs processed: " + currentSIMs.size());
-
             } catch (SecurityException e) {
-                Log.e(TAG, "🔒 Security exception during SIM detection", e);
+                AppLog.e(TAG, "🔒 Security exception during SIM detection", e);
             } catch (Exception e) {
-                Log.e(TAG, "💥 Unexpected error during SIM detection", e);
+                AppLog.e(TAG, "💥 Unexpected error during SIM detection", e);
             }
         } else {
-            Log.e(TAG, "❌ Android version too old for SubscriptionManager (API < 22)");
+            AppLog.e(TAG, "❌ Android version too old for SubscriptionManager (API < 22)");
         }
 
         return currentSIMs;
@@ -255,7 +157,7 @@ public class EnhancedSIMManager {
         }
 
         saveSIMs(sims);
-        Log.d(TAG, "Saved phone number for ICCID: " + iccid);
+        AppLog.d(TAG, "Saved phone number for ICCID: %s", iccid);
     }
 
     /**
@@ -279,38 +181,26 @@ public class EnhancedSIMManager {
         return null;
     }
 
+    /**
+     * Present SIMs with their saved numbers, from one SIM query and one prefs
+     * read. Does not save, so it never hides a swap from detectSIMChanges.
+     */
+    public SimConfigState loadConfigState() {
+        return SimConfigState.from(getCurrentSIMs(), getSavedSIMs(), System.currentTimeMillis());
+    }
+
     /**
      * Check if all SIMs are configured with phone numbers
      */
     public boolean areAllSIMsConfigured() {
-        List<SIMInfo> currentSIMs = getCurrentSIMs();
-        List<SIMInfo> savedSIMs = getSavedSIMs();
-
-        for (SIMInfo currentSIM : currentSIMs) {
-            SIMInfo savedSIM = findSIMByICCID(savedSIMs, currentSIM.iccid);
-            if (savedSIM == null || savedSIM.userPhoneNumber == null || savedSIM.userPhoneNumber.isEmpty()) {
-                return false;
-            }
-        }
-
-        return !currentSIMs.isEmpty(); // At least one SIM must be present
+        return loadConfigState().allConfigured;
     }
 
     /**
      * Get next unconfigured SIM
      */
     public SIMInfo getNextUnconfiguredSIM() {
-        List<SIMInfo> currentSIMs = getCurrentSIMs();
-        List<SIMInfo> savedSIMs = getSavedSIMs();
-
-        for (SIMInfo currentSIM : currentSIMs) {
-            SIMInfo savedSIM = findSIMByICCID(savedSIMs, currentSIM.iccid);
-            if (savedSIM == null || savedSIM.userPhoneNumber == null || savedSIM.userPhoneNumber.isEmpty()) {
-                return currentSIM;
-            }
-        }
-
-        return null;
+        return loadConfigState().nextUnconfigured;
     }
 
     // Helper methods
@@ -389,11 +279,11 @@ public class EnhancedSIMManager {
      * Debug device and Android version restrictions
      */
     public void debugDeviceRestrictions() {
-        Log.d(TAG, "=== DEVICE DEBUG INFO ===");
-        Log.d(TAG, "📱 Device: " + Build.MANUFACTURER + " " + Build.MODEL);
-        Log.d(TAG, "🤖 Android Version: " + Build.VERSION.RELEASE + " (API " + Build.VERSION.SDK_INT + ")");
-        Log.d(TAG, "🔧 Build Type: " + Build.TYPE);
-        Log.d(TAG, "🏷️ Build Tags: " + Build.TAGS);
+        AppLog.d(TAG, "=== DEVICE DEBUG INFO ===");
+        AppLog.d(TAG, "📱 Device: %s %s", Build.MANUFACTURER, Build.MODEL);
+        AppLog.d(TAG, "🤖 Android Version: %s (API %d)", Build.VERSION.RELEASE, Build.VERSION.SDK_INT);
+        AppLog.d(TAG, "🔧 Build Type: %s", Build.TYPE);
+        AppLog.d(TAG, "🏷️ Build Tags: %s", Build.TAGS);
 
         // Check specific permission statuses
         String[] permissions = {
@@ -405,58 +295,58 @@ public class EnhancedSIMManager {
 
         for (String permission : permissions) {
             int status = ContextCompat.checkSelfPermission(context, permission);
-            Log.d(TAG, "🔐 " + permission + ": " +
-                    (status == PackageManager.PERMISSION_GRANTED ? "✅ GRANTED" : "❌ DENIED"));
+            AppLog.d(TAG, "🔐 %s: %s", permission,
+                    status == PackageManager.PERMISSION_GRANTED ? "✅ GRANTED" : "❌ DENIED");
         }
 
         // Check if we can access TelephonyManager
         try {
             TelephonyManager tm = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
             if (tm != null) {
-                Log.d(TAG, "📡 TelephonyManager available");
+                AppLog.d(TAG, "📡 TelephonyManager available");
 
                 // Try different methods to get ICCID
                 tryAlternativeICCIDMethods(tm);
 
             } else {
-                Log.e(TAG, "❌ TelephonyManager is null!");
+                AppLog.e(TAG, "❌ TelephonyManager is null!");
             }
         } catch (Exception e) {
-            Log.e(TAG, "💥 Error accessing TelephonyManager", e);
+            AppLog.e(TAG, "💥 Error accessing TelephonyManager", e);
         }
 
-        Log.d(TAG, "========================");
+        AppLog.d(TAG, "========================");
     }
 
     /**
      * Try alternative methods to get ICCID
      */
     private void tryAlternativeICCIDMethods(TelephonyManager tm) {
-        Log.d(TAG, "🔍 Trying alternative ICCID methods:");
+        AppLog.d(TAG, "🔍 Trying alternative ICCID methods:");
 
         // Method 1: Direct TelephonyManager
         try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
                 // Android 10+ method
-                Log.d(TAG, "📱 Trying Android 10+ method...");
+                AppLog.d(TAG, "📱 Trying Android 10+ method...");
                 String simSerialNumber = tm.getSimSerialNumber();
-                Log.d(TAG, "📋 getSimSerialNumber(): '" + simSerialNumber + "'");
+                AppLog.d(TAG, "📋 getSimSerialNumber(): '%s'", simSerialNumber);
             }
         } catch (SecurityException e) {
-            Log.w(TAG, "🔒 getSimSerialNumber() blocked: " + e.getMessage());
+            AppLog.w(TAG, "🔒 getSimSerialNumber() blocked: %s", e.getMessage());
         } catch (Exception e) {
-            Log.e(TAG, "💥 getSimSerialNumber() error: " + e.getMessage());
+            AppLog.e(TAG, "💥 getSimSerialNumber() error: %s", e.getMessage());
         }
 
         // Method 2: Legacy method
         try {
-            Log.d(TAG, "📱 Trying legacy getDeviceId()...");
+            AppLog.d(TAG, "📱 Trying legacy getDeviceId()...");
             String deviceId = tm.getDeviceId();
-            Log.d(TAG, "📋 getDeviceId(): '" + deviceId + "'");
+            AppLog.d(TAG, "📋 getDeviceId(): '%s'", deviceId);
         } catch (SecurityException e) {
-            Log.w(TAG, "🔒 getDeviceId() blocked: " + e.getMessage());
+            AppLog.w(TAG, "🔒 getDeviceId() blocked: %s", e.getMessage());
         } catch (Exception e) {
-            Log.e(TAG, "💥 getDeviceId() error: " + e.getMessage());
+            AppLog.e(TAG, "💥 getDeviceId() error: %s", e.getMessage());
         }
 
         // Method 3: Check subscription-specific TelephonyManager
@@ -465,7 +355,7 @@ public class EnhancedSIMManager {
                 // Check permission first
                 if (ActivityCompat.checkSelfPermission(context, Manifest.permission.READ_PHONE_STATE)
                         != PackageManager.PERMISSION_GRANTED) {
-                    Log.w(TAG, "🔒 READ_PHONE_STATE permission not granted for subscription-specific check");
+                    AppLog.w(TAG, "🔒 READ_PHONE_STATE permission not granted for subscription-specific check");
                     return;
                 }
 
@@ -474,7 +364,7 @@ public class EnhancedSIMManager {
 
                 if (subscriptions != null) {
                     for (SubscriptionInfo subInfo : subscriptions) {
-                        Log.d(TAG, "🔍 Trying subscription-specific TelephonyManager for sub " + subInfo.getSubscriptionId());
+                        AppLog.d(TAG, "🔍 Trying subscription-specific TelephonyManager for sub %d", subInfo.getSubscriptionId());
 
                         try {
                             TelephonyManager subTm = tm.createForSubscriptionId(subInfo.getSubscriptionId());
@@ -482,24 +372,24 @@ public class EnhancedSIMManager {
                             if (subTm != null) {
                                 try {
                                     String subSimSerial = subTm.getSimSerialNumber();
-                                    Log.d(TAG, "📋 Sub-specific getSimSerialNumber(): '" + subSimSerial + "'");
+                                    AppLog.d(TAG, "📋 Sub-specific getSimSerialNumber(): '%s'", subSimSerial);
                                 } catch (SecurityException e) {
-                                    Log.w(TAG, "🔒 Sub-specific getSimSerialNumber() blocked: " + e.getMessage());
+                                    AppLog.w(TAG, "🔒 Sub-specific getSimSerialNumber() blocked: %s", e.getMessage());
                                 } catch (Exception e) {
-                                    Log.e(TAG, "💥 Sub-specific getSimSerialNumber() error: " + e.getMessage());
+                                    AppLog.e(TAG, "💥 Sub-specific getSimSerialNumber() error: %s", e.getMessage());
                                 }
                             } else {
-                                Log.w(TAG, "⚠️ Subscription-specific TelephonyManager is null for sub " + subInfo.getSubscriptionId());
+                                AppLog.w(TAG, "⚠️ Subscription-specific TelephonyManager is null for sub %d", subInfo.getSubscriptionId());
                             }
                         } catch (Exception e) {
-                            Log.e(TAG, "💥 Error creating subscription-specific TelephonyManager: " + e.getMessage());
+                            AppLog.e(TAG, "💥 Error creating subscription-specific TelephonyManager: %s", e.getMessage());
                         }
                     }
                 } else {
-                    Log.w(TAG, "⚠️ No subscriptions available for subscription-specific check");
+                    AppLog.w(TAG, "⚠️ No subscriptions available for subscription-specific check");
                 }
             } catch (Exception e) {
-                Log.e(TAG, "💥 Subscription-specific method error: " + e.getMessage());
+                AppLog.e(TAG, "💥 Subscription-specific method error: %s", e.getMessage());
             }
         }
         // Method 4: Check if device is rooted/system app
@@ -515,16 +405,16 @@ public class EnhancedSIMManager {
             boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
             boolean isUpdatedSystemApp = (appInfo.flags & ApplicationInfo.FLAG_UPDATED_SYSTEM_APP) != 0;
 
-            Log.d(TAG, "🏛️ Is System App: " + isSystemApp);
-            Log.d(TAG, "🔄 Is Updated System App: " + isUpdatedSystemApp);
-            Log.d(TAG, "📦 App installed in: " + appInfo.sourceDir);
+            AppLog.d(TAG, "🏛️ Is System App: %s", isSystemApp);
+            AppLog.d(TAG, "🔄 Is Updated System App: %s", isUpdatedSystemApp);
+            AppLog.d(TAG, "📦 App installed in: %s", appInfo.sourceDir);
 
             if (!isSystemApp && !isUpdatedSystemApp) {
-                Log.w(TAG, "⚠️ Regular user app - ICCID access may be restricted");
-                Log.i(TAG, "💡 This explains why ICCID is empty on your device");
+                AppLog.w(TAG, "⚠️ Regular user app - ICCID access may be restricted");
+                AppLog.i(TAG, "💡 This explains why ICCID is empty on your device");
             }
         } catch (Exception e) {
-            Log.e(TAG, "💥 Error checking system app status", e);
+            AppLog.e(TAG, "💥 Error checking system app status", e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+/**
+ * Uploads a live message from memory while its outbox insert commits,
+ * instead of after it. Only used when the message would be sent right away
+ * anyway and the kill switch is known to be off. InFlightRegistry reconciles
+ * the two results, whichever arrives first.
+ */
+public class FastPathDelivery {
+    private static final String TAG = "FastPathDelivery";
+
+    private static InFlightRegistry registry;
+
+    public enum Result {
+        DUPLICATE,  // Already stored earlier, nothing to send
+        STORED,     // In the outbox, the caller decides when to send
+        SENDING     // Upload started from memory, no further send needed
+    }
+
+    public static synchronized InFlightRegistry getRegistry(Context context) {
+        if (registry == null) {
+            final AckWriter ackWriter = AckWriter.getInstance(context);
+            registry = new InFlightRegistry(ackWriter::ack);
+        }
+        return registry;
+    }
+
+    /**
+     * Store a message that went through IngestionPipeline.prepare, starting
+     * its upload first when eligible. Must be called off the main thread.
+     */
+    public static Result persist(final Context context, final MessageData messageData) {
+        final String dedupKey = messageData.getDedupKey();
+        final InFlightRegistry registry = getRegistry(context);
+        if (!isEligible(context, messageData) || !registry.begin(messageData)) {
+            return IngestionPipeline.persist(context, messageData) ? Result.STORED : Result.DUPLICATE;
+        }
+
+        PipelineMetrics.FAST_PATH_STARTED.inc();
+        ApiClient.upload(context, messageData, new ApiClient.UploadListener() {
+            @Override
+            public void onUploaded() {
+                storeAgainIfNeeded(context, messageData, registry.onUploadDone(dedupKey, true));
+            }
+
+            @Override
+            public void onFailed() {
+                storeAgainIfNeeded(context, messageData, registry.onUploadDone(dedupKey, false));
+            }
+        });
+
+        InFlightRegistry.Commit commit;
+        try {
+            commit = IngestionPipeline.persist(context, messageData)
+                    ? InFlightRegistry.Commit.STORED : InFlightRegistry.Commit.DUPLICATE;
+        } catch (RuntimeException e) {
+            // The upload may still deliver it; if not, the registry asks for another insert
+            AppLog.e(TAG, "Insert failed while uploading %s", dedupKey, e);
+            commit = InFlightRegistry.Commit.FAILED;
+        }
+        storeAgainIfNeeded(context, messageData, registry.onCommitDone(dedupKey, commit));
+
+        return commit == InFlightRegistry.Commit.DUPLICATE ? Result.DUPLICATE : Result.SENDING;
+    }
+
+    private static boolean isEligible(Context context, MessageData messageData) {
+        return messageData.getDedupKey() != null
+                && KillSwitch.getInstance().isKnownEnabled()
+                && DeliveryScheduler.getInstance(context).wouldSendNow(messageData)
+                // A copy stored by an earlier process would otherwise be uploaded twice
+                && !OutboxStore.getDefault(context).contains(messageData.getDedupKey());
+    }
+
+    // Acks are queued by the registry itself, only a double failure is left to handle here
+    private static void storeAgainIfNeeded(Context context, MessageData messageData,
+                                           InFlightRegistry.Action action) {
+        if (action != InFlightRegistry.Action.STORE_AGAIN) {
+            return;
+        }
+        try {
+            if (OutboxStore.getDefault(context).append(messageData) != -1) {
+                AppLog.w(TAG, "Upload and first insert failed, stored %s for the sync worker",
+                        messageData.getDedupKey());
+            }
+        } catch (RuntimeException e) {
+            AppLog.e(TAG, "Message from %s could not be stored or sent", messageData.getSender(), e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loads filter rules from filter_rules.json in the app files directory and
+ * keeps a compiled FilterEngine. The file is re-checked at most every 30
+ * seconds, so replacing it (or calling install) takes effect without a restart.
+ *
+ * Format:
+ * {
+ *   "allowSenders": ["M-PESA"],
+ *   "denySenders": ["PROMO-X"],
+ *   "rules": [
+ *     {"id": "promo", "action": "drop", "senders": [], "keywords": ["ofa"], "regexes": []},
+ *     {"id": "bank", "action": "tag", "tag": "bank", "senders": ["CRDB BANK"]},
+ *     {"id": "otp", "action": "route", "lane": 0, "regexes": ["\\b\\d{6}\\b"]}
+ *   ]
+ * }
+ */
+public class FilterRuleLoader {
+    private static final String TAG = "FilterRuleLoader";
+    private static final String RULES_FILE = "filter_rules.json";
+    private static final long RELOAD_CHECK_INTERVAL_MS = 30 * 1000L;
+
+    private static volatile FilterEngine engine = FilterEngine.EMPTY;
+    private static long loadedLastModified = -1;
+    private static long lastCheckAt = 0;
+
+    /**
+     * Current engine, reloading it first if the rules file changed
+     */
+    public static FilterEngine getEngine(Context context) {
+        long now = System.currentTimeMillis();
+        synchronized (FilterRuleLoader.class) {
+            if (now - lastCheckAt >= RELOAD_CHECK_INTERVAL_MS || loadedLastModified < 0) {
+                lastCheckAt = now;
+                reloadIfChanged(context);
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Validate, store and activate a new rule set (e.g. pushed from the server).
+     * Throws IllegalArgumentException for an unknown action, invalid regex or a tag containing a comma.
+     */
+    public static void install(Context context, String rulesJson) throws JSONException, IOException {
+        // Compile first so a bad rule set never replaces a working one
+        FilterEngine compiled = parse(rulesJson);
+
+        File target = new File(context.getFilesDir(), RULES_FILE);
+        File temp = new File(context.getFilesDir(), RULES_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(rulesJson.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Could not replace " + target);
+        }
+
+        synchronized (FilterRuleLoader.class) {
+            engine = compiled;
+            loadedLastModified = target.lastModified();
+            lastCheckAt = System.currentTimeMillis();
+        }
+        Log.i(TAG, "Installed " + compiled.getRuleCount() + " filter rule(s)");
+    }
+
+    private static void reloadIfChanged(Context context) {
+        File file = new File(context.getFilesDir(), RULES_FILE);
+        long lastModified = file.exists() ? file.lastModified() : 0;
+        if (lastModified == loadedLastModified) {
+            return;
+        }
+
+        if (lastModified == 0) {
+            engine = FilterEngine.EMPTY;
+            loadedLastModified = 0;
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            engine = parse(readFile(file));
+            Log.i(TAG, "Loaded " + engine.getRuleCount() + " filter rule(s) in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+        } catch (JSONException | IOException | IllegalArgumentException e) {
+            // Keep the previous engine running
+            Log.e(TAG, "Invalid filter rules, keeping previous set", e);
+        }
+        loadedLastModified = lastModified;
+    }
+
+    static FilterEngine parse(String rulesJson) throws JSONException {
+        JSONObject root = new JSONObject(rulesJson);
+
+        List<FilterRule> rules = new ArrayList<>();
+        JSONArray rulesArray = root.optJSONArray("rules");
+        if (rulesArray != null) {
+            for (int i = 0; i < rulesArray.length(); i++) {
+                JSONObject ruleJson = rulesArray.getJSONObject(i);
+
+                FilterRule rule = new FilterRule();
+                rule.id = ruleJson.optString("id", "rule_" + i);
+                rule.action = FilterRule.Action.valueOf(
+                        ruleJson.optString("action", "tag").toUpperCase(Locale.ROOT));
+                rule.senders = toList(ruleJson.optJSONArray("senders"));
+                rule.keywords = toList(ruleJson.optJSONArray("keywords"));
+                rule.regexes = toList(ruleJson.optJSONArray("regexes"));
+                rule.tag = ruleJson.optString("tag", rule.id);
+                if (rule.action == FilterRule.Action.TAG && rule.tag.indexOf(',') >= 0) {
+                    // Tags are stored comma-separated on the message, see IngestionPipeline
+                    throw new IllegalArgumentException("Tag of rule " + rule.id + " contains a comma: " + rule.tag);
+                }
+                rule.lane = ruleJson.optInt("lane", -1);
+                rules.add(rule);
+            }
+        }
+
+        return FilterEngine.compile(
+                toList(root.optJSONArray("allowSenders")),
+                toList(root.optJSONArray("denySenders")),
+                rules);
+    }
+
+    private static List<String> toList(JSONArray array) throws JSONException {
+        List<String> list = new ArrayList<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                list.add(array.getString(i));
+            }
+        }
+        return list;
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            return new String(bytes, 0, offset, StandardCharsets.UTF_8);
+        }
+    }
+}
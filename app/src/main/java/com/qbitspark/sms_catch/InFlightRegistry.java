@@ -0,0 +1,116 @@
+package com.qbitspark.sms_catch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Messages whose upload was started before their outbox insert committed,
+ * keyed by dedup key. Each side reports its result once; the second result
+ * decides what happens to the message, so the outcome does not depend on which
+ * finishes first:
+ *
+ *   upload ok     + stored    -> ACK, handed to the AckSink exactly once
+ *   upload failed + stored    -> nothing, SyncWorker sends the stored row
+ *   upload ok     + failed    -> nothing, delivered without a local copy
+ *   upload failed + failed    -> STORE_AGAIN, so the outbox retries it
+ *   either        + duplicate -> nothing, an earlier copy is already stored
+ *
+ * The ack is handed over under the same lock that ends the flight, so a
+ * reader that finds a message no longer in flight also finds its ack queued.
+ */
+public class InFlightRegistry {
+
+    public interface AckSink {
+        void ack(MessageData messageData);
+    }
+
+    public enum Commit {
+        STORED,
+        DUPLICATE,
+        FAILED
+    }
+
+    public enum Action {
+        NONE,
+        ACK,
+        STORE_AGAIN
+    }
+
+    private static class Flight {
+        final MessageData messageData;
+        Commit commit;
+        Boolean uploaded;
+
+        Flight(MessageData messageData) {
+            this.messageData = messageData;
+        }
+    }
+
+    private final Map<String, Flight> flights = new HashMap<>();
+    private final AckSink ackSink;
+
+    public InFlightRegistry(AckSink ackSink) {
+        this.ackSink = ackSink;
+    }
+
+    /**
+     * Register a message before its upload and insert start.
+     * Returns false if a message with this key is already in flight.
+     */
+    public synchronized boolean begin(MessageData messageData) {
+        String dedupKey = messageData.getDedupKey();
+        if (dedupKey == null || flights.containsKey(dedupKey)) {
+            return false;
+        }
+        flights.put(dedupKey, new Flight(messageData));
+        return true;
+    }
+
+    public synchronized Action onCommitDone(String dedupKey, Commit commit) {
+        Flight flight = flights.get(dedupKey);
+        if (flight == null || flight.commit != null) {
+            return Action.NONE;
+        }
+        flight.commit = commit;
+        return resolve(dedupKey, flight);
+    }
+
+    public synchronized Action onUploadDone(String dedupKey, boolean uploaded) {
+        Flight flight = flights.get(dedupKey);
+        if (flight == null || flight.uploaded != null) {
+            return Action.NONE;
+        }
+        flight.uploaded = uploaded;
+        return resolve(dedupKey, flight);
+    }
+
+    /**
+     * True until both results are in. SyncWorker skips such rows, so a
+     * message is never sent and acked by both paths.
+     */
+    public synchronized boolean isInFlight(String dedupKey) {
+        return dedupKey != null && flights.containsKey(dedupKey);
+    }
+
+    public synchronized int size() {
+        return flights.size();
+    }
+
+    private Action resolve(String dedupKey, Flight flight) {
+        if (flight.commit == null || flight.uploaded == null) {
+            return Action.NONE;
+        }
+        flights.remove(dedupKey);
+        if (flight.commit == Commit.STORED) {
+            if (!flight.uploaded) {
+                return Action.NONE;
+            }
+            ackSink.ack(flight.messageData);
+            return Action.ACK;
+        }
+        if (flight.commit == Commit.FAILED && !flight.uploaded) {
+            return Action.STORE_AGAIN;
+        }
+        return Action.NONE;
+    }
+}
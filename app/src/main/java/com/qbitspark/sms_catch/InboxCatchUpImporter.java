@@ -0,0 +1,181 @@
+package com.qbitspark.sms_catch;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.provider.Telephony;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports inbox SMS that arrived while no broadcast was delivered to us
+ * (process killed, force-stopped, before boot completed). Streams
+ * Telephony.Sms.Inbox in _id order from a persisted watermark, one bounded
+ * page at a time, through the normal ingestion pipeline. Messages that were
+ * already captured live are dropped there by their dedup key.
+ */
+public class InboxCatchUpImporter {
+    private static final String TAG = "InboxCatchUpImporter";
+    private static final String PREF_LAST_ID = "INBOX_IMPORT_LAST_ID";
+    private static final String PREF_SINCE = "INBOX_IMPORT_SINCE";
+    private static final int PAGE_SIZE = 200;
+
+    private static final String[] PROJECTION = {
+            Telephony.Sms._ID,
+            Telephony.Sms.ADDRESS,
+            Telephony.Sms.BODY,
+            Telephony.Sms.DATE,
+            Telephony.Sms.DATE_SENT,
+            Telephony.Sms.SUBSCRIPTION_ID
+    };
+
+    /**
+     * Outcome of one import run
+     */
+    public static class ImportStats {
+        public int scanned;
+        public int imported;
+        public int skipped;         // Duplicates, blocklisted or dropped by rules
+        public int pages;
+        public long durationMillis;
+
+        public double getRowsPerSecond() {
+            return durationMillis > 0 ? scanned * 1000.0 / durationMillis : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "scanned=%d imported=%d skipped=%d pages=%d in %dms (%.0f rows/s)",
+                    scanned, imported, skipped, pages, durationMillis, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Run one catch-up pass. Must be called off the main thread.
+     * Synchronized so boot, service start and the periodic worker never import the same page twice.
+     */
+    public static synchronized ImportStats run(Context context) {
+        ImportStats stats = new ImportStats();
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_SMS)
+                != PackageManager.PERMISSION_GRANTED) {
+            AppLog.w(TAG, "READ_SMS not granted, skipping catch-up import");
+            return stats;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE);
+        long since = prefs.getLong(PREF_SINCE, 0);
+        if (since == 0) {
+            // First run: only what arrived since install, not the whole inbox history
+            since = getFirstInstallTime(context);
+            prefs.edit().putLong(PREF_SINCE, since).apply();
+        }
+        long lastId = prefs.getLong(PREF_LAST_ID, 0);
+
+        long start = System.currentTimeMillis();
+        Map<Integer, String> receiverBySubscription = new HashMap<>();
+        boolean sendNow = false;
+
+        while (true) {
+            int rows = 0;
+            try (Cursor cursor = context.getContentResolver().query(
+                    Telephony.Sms.Inbox.CONTENT_URI,
+                    PROJECTION,
+                    Telephony.Sms._ID + " > ? AND " + Telephony.Sms.DATE + " >= ?",
+                    new String[]{Long.toString(lastId), Long.toString(since)},
+                    Telephony.Sms._ID + " ASC LIMIT " + PAGE_SIZE)) {
+
+                if (cursor == null) {
+                    AppLog.e(TAG, "SMS provider returned no cursor");
+                    break;
+                }
+
+                int idColumn = cursor.getColumnIndexOrThrow(Telephony.Sms._ID);
+                int addressColumn = cursor.getColumnIndexOrThrow(Telephony.Sms.ADDRESS);
+                int bodyColumn = cursor.getColumnIndexOrThrow(Telephony.Sms.BODY);
+                int dateColumn = cursor.getColumnIndexOrThrow(Telephony.Sms.DATE);
+                int dateSentColumn = cursor.getColumnIndex(Telephony.Sms.DATE_SENT);
+                int subIdColumn = cursor.getColumnIndex(Telephony.Sms.SUBSCRIPTION_ID);  // Missing on some OEM builds
+
+                while (cursor.moveToNext()) {
+                    rows++;
+                    lastId = cursor.getLong(idColumn);
+
+                    // The broadcast path keys on the SMSC timestamp, which the provider keeps in date_sent
+                    long dateSent = dateSentColumn >= 0 ? cursor.getLong(dateSentColumn) : 0;
+                    int subId = subIdColumn >= 0 ? cursor.getInt(subIdColumn) : -1;
+
+                    MessageData messageData = new MessageData();
+                    messageData.setSender(cursor.getString(addressColumn));
+                    messageData.setReceiver(getReceiver(context, receiverBySubscription, subId));
+                    messageData.setMessageBody(cursor.getString(bodyColumn));
+                    messageData.setTimestamp(dateSent > 0 ? dateSent : cursor.getLong(dateColumn));
+
+                    if (messageData.getSender() == null || messageData.getMessageBody() == null) {
+                        stats.skipped++;
+                        continue;
+                    }
+                    if (IngestionPipeline.process(context, messageData)) {
+                        stats.imported++;
+                        DeliveryScheduler.Decision decision = DeliveryScheduler.getInstance(context)
+                                .onMessagePersisted(messageData);
+                        sendNow |= decision == DeliveryScheduler.Decision.SEND_NOW;
+                    } else {
+                        stats.skipped++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                AppLog.e(TAG, "Catch-up import failed after _id %d", lastId, e);
+                break;
+            }
+
+            stats.scanned += rows;
+            if (rows > 0) {
+                stats.pages++;
+                // Watermark moves per page, so a crash repeats at most one page (which dedup absorbs)
+                prefs.edit().putLong(PREF_LAST_ID, lastId).apply();
+            }
+            if (rows < PAGE_SIZE) {
+                break;
+            }
+        }
+
+        if (sendNow) {
+            // SyncWorker applies the kill switch before uploading
+            WorkManagerHelper.triggerImmediateSync(context);
+        }
+
+        stats.durationMillis = System.currentTimeMillis() - start;
+        if (stats.scanned > 0) {
+            AppLog.i(TAG, "Catch-up import: %s", stats);
+        }
+        return stats;
+    }
+
+    private static String getReceiver(Context context, Map<Integer, String> cache, int subId) {
+        if (subId < 0) {
+            // Same value the broadcast path uses without a subscription extra
+            return "NO_SUBSCRIPTION_ID";
+        }
+        String receiver = cache.get(subId);
+        if (receiver == null) {
+            receiver = SmsReceiver.getReceiverIdentifier(context, subId);
+            cache.put(subId, receiver);
+        }
+        return receiver;
+    }
+
+    private static long getFirstInstallTime(Context context) {
+        try {
+            return context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).firstInstallTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return System.currentTimeMillis();
+        }
+    }
+}
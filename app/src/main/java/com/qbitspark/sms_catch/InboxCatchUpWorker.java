@@ -0,0 +1,24 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Runs InboxCatchUpImporter at boot, at service start and periodically
+ */
+public class InboxCatchUpWorker extends Worker {
+
+    public InboxCatchUpWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        InboxCatchUpImporter.run(getApplicationContext());
+        return Result.success();
+    }
+}
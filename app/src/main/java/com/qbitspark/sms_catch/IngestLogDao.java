@@ -0,0 +1,24 @@
+package com.qbitspark.sms_catch;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface IngestLogDao {
+    // Returns -1 when the key was already logged
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(IngestLogEntry entry);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertAll(List<IngestLogEntry> entries);
+
+    @Query("SELECT COUNT(*) FROM ingest_log WHERE dedupKey = :dedupKey")
+    int count(String dedupKey);
+
+    @Query("DELETE FROM ingest_log WHERE ingestedAt < :cutoff")
+    int deleteOlderThan(long cutoff);
+}
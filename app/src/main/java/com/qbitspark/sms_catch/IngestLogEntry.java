@@ -0,0 +1,46 @@
+package com.qbitspark.sms_catch;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Dedup key of every message that entered the outbox. Outlives the message
+ * row (removed by MessageRetention after the retention window), so catch-up
+ * imports and late redeliveries of an already uploaded SMS are still recognised.
+ */
+@Entity(tableName = "ingest_log",
+        indices = {@Index(value = {"ingestedAt"})})  // Age-based pruning
+public class IngestLogEntry {
+    @PrimaryKey
+    @NonNull
+    private String dedupKey = "";
+
+    private long ingestedAt;
+
+    public IngestLogEntry() {
+    }
+
+    public IngestLogEntry(@NonNull String dedupKey, long ingestedAt) {
+        this.dedupKey = dedupKey;
+        this.ingestedAt = ingestedAt;
+    }
+
+    @NonNull
+    public String getDedupKey() {
+        return dedupKey;
+    }
+
+    public void setDedupKey(@NonNull String dedupKey) {
+        this.dedupKey = dedupKey;
+    }
+
+    public long getIngestedAt() {
+        return ingestedAt;
+    }
+
+    public void setIngestedAt(long ingestedAt) {
+        this.ingestedAt = ingestedAt;
+    }
+}
@@ -0,0 +1,140 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Stages every captured SMS goes through before it reaches the outbox:
+ * duplicate check, blocklist check, classify into a lane, apply filter rules,
+ * extract mobile-money fields, serialize the upload payload, then persist.
+ * Must be called off the main thread.
+ */
+public class IngestionPipeline {
+    private static final String TAG = "IngestionPipeline";
+
+    /**
+     * Run all stages for one message.
+     * Returns true if the message was saved to the outbox (its id is then set).
+     */
+    public static boolean process(Context context, MessageData messageData) {
+        return prepare(context, messageData) && persist(context, messageData);
+    }
+
+    /**
+     * Stages 1-6. Returns false if the message was dropped.
+     */
+    public static boolean prepare(Context context, MessageData messageData) {
+        // Broadcast messages carry the receiver's capture time; catch-up and timed-out multipart start here
+        if (messageData.getReceivedAt() == 0) {
+            messageData.setReceivedAt(System.currentTimeMillis());
+            messageData.setReceivedElapsed(SystemClock.elapsedRealtime());
+        }
+
+        // 1. Redelivered or replayed copies of a message we already took
+        messageData.setDedupKey(DedupKey.compute(messageData.getSender(), messageData.getTimestamp(),
+                messageData.getMessageBody(), messageData.getReceiver()));
+        // Check only; the key is added once persist has stored the message
+        if (DedupCache.getShared().contains(messageData.getDedupKey(), System.currentTimeMillis())) {
+            AppLog.d(TAG, "Dropped duplicate from %s (cache)", messageData.getSender());
+            PipelineMetrics.MESSAGES_DUPLICATE.inc();
+            return false;
+        }
+
+        // 2. Known spam senders never reach the database
+        if (SenderBlocklist.getInstance(context).isBlocked(messageData.getSender())) {
+            AppLog.d(TAG, "Dropped message from blocklisted sender %s", messageData.getSender());
+            PipelineMetrics.MESSAGES_DROPPED.inc();
+            return false;
+        }
+
+        // 3. Outbox lane from sender/keywords
+        messageData.setPriority(PriorityClassifier.classify(messageData.getSender(), messageData.getMessageBody()));
+
+        // 4. Drop / tag / route rules
+        FilterEngine.Result filterResult = FilterRuleLoader.getEngine(context)
+                .evaluate(messageData.getSender(), messageData.getMessageBody());
+
+        if (filterResult.drop) {
+            AppLog.d(TAG, "Dropped message from %s by rule %s", messageData.getSender(), filterResult.ruleId);
+            PipelineMetrics.MESSAGES_DROPPED.inc();
+            return false;
+        }
+        if (!filterResult.tags.isEmpty()) {
+            messageData.setTags(TextUtils.join(",", filterResult.tags));
+        }
+        if (filterResult.lane >= 0 && filterResult.lane < PriorityClassifier.LANE_COUNT) {
+            messageData.setPriority(filterResult.lane);
+        }
+
+        // 5. Amounts, balances and transaction IDs from known mobile-money senders
+        ParsedMessage parsed = MoneyMessageParser.getDefault()
+                .parse(messageData.getSender(), messageData.getMessageBody());
+        if (parsed != null) {
+            try {
+                messageData.setParsedFields(toJson(parsed).toString());
+            } catch (JSONException e) {
+                AppLog.e(TAG, "Failed to serialise parsed fields", e);
+            }
+        }
+
+        // 6. Serialize the upload body once; retries send these bytes
+        long serializeStartNanos = System.nanoTime();
+        try {
+            PayloadStore.attach(context, messageData, ApiClient.buildPayload(context, messageData));
+        } catch (JSONException e) {
+            // ApiClient builds it at send time instead
+            AppLog.e(TAG, "Failed to serialise payload", e);
+        }
+        PipelineMetrics.SERIALIZE.record(PipelineMetrics.micros(serializeStartNanos));
+
+        return true;
+    }
+
+    /**
+     * Stage 7. Returns true if the message was saved (its id is then set),
+     * false if it had been taken earlier.
+     */
+    public static boolean persist(Context context, MessageData messageData) {
+        return persist(context, OutboxStore.getDefault(context), messageData);
+    }
+
+    static boolean persist(Context context, OutboxStore store, MessageData messageData) {
+        // 7. Persist, ignoring messages already taken earlier (even if since uploaded)
+        messageData.setEnqueuedAt(System.currentTimeMillis());
+        messageData.setPersistedElapsed(SystemClock.elapsedRealtime());
+        long startNanos = System.nanoTime();
+        // A failed insert throws before the key is cached, so a later copy is not dropped
+        long id = store.append(messageData);
+        PipelineMetrics.PERSIST.record(PipelineMetrics.micros(startNanos));
+        DedupCache.getShared().add(messageData.getDedupKey(), System.currentTimeMillis());
+        if (id == -1) {
+            AppLog.d(TAG, "Dropped duplicate from %s (already ingested)", messageData.getSender());
+            PipelineMetrics.MESSAGES_DUPLICATE.inc();
+            // The side file written by this message's prepare; the stored copy has its own
+            PayloadStore.discard(context, messageData);
+            return false;
+        }
+        PipelineMetrics.MESSAGES_PERSISTED.inc();
+        return true;
+    }
+
+    private static JSONObject toJson(ParsedMessage parsed) throws JSONException {
+        // JSONObject.putOpt skips null values
+        JSONObject json = new JSONObject();
+        json.put("provider", parsed.provider);
+        json.put("type", parsed.type.name());
+        json.put("currency", parsed.currency);
+        json.putOpt("amount", parsed.amount);
+        json.putOpt("fee", parsed.fee);
+        json.putOpt("balance", parsed.balance);
+        json.putOpt("transactionId", parsed.transactionId);
+        json.putOpt("counterpartyNumber", parsed.counterpartyNumber);
+        json.putOpt("counterpartyName", parsed.counterpartyName);
+        json.put("template", parsed.templateId);
+        return json;
+    }
+}
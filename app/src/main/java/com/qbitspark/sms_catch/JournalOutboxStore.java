@@ -0,0 +1,631 @@
+package com.qbitspark.sms_catch;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Outbox as an append-only log of fixed-size memory-mapped segment files.
+ *
+ * Record: int length, int CRC32 of id and fields, long id, then the message
+ * fields. A zero length ends the written part of a segment (segments start
+ * zero-filled). Each append forces the mapping before returning, so a stored
+ * message survives process death and power loss like a committed transaction.
+ *
+ * Acks: the cursor file holds the id up to which every message is acked, acks
+ * above it go to an ack log until the gap below them closes. Segments whose
+ * messages are all acked are deleted.
+ *
+ * Upload attempts: records are immutable, so attempts go to an attempts log
+ * (id, first attempt time and elapsed, count) and are applied to the pending
+ * index on open. The log is emptied once nothing is pending and rewritten
+ * with one entry per message when it grows.
+ *
+ * Opening scans the segments from the cursor and rebuilds the pending index in
+ * memory. A record whose length or checksum does not verify (a torn write)
+ * ends the log; the rest of the segment is zeroed and the next append goes there.
+ *
+ * Unlike RoomOutboxStore there is no search index, dictionary or ingest log:
+ * duplicates are only detected among pending messages.
+ */
+public class JournalOutboxStore implements OutboxStore, Closeable {
+    private static final String TAG = "JournalOutboxStore";
+    static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final int HEADER_SIZE = 16;                  // length, crc, id
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+    private static final String ACK_LOG_FILE = "acks.log";
+    private static final int ACK_LOG_COMPACT_ENTRIES = 4096;
+    private static final String ATTEMPT_LOG_FILE = "attempts.log";
+    private static final int ATTEMPT_LOG_ENTRY_SIZE = 28;       // id, attemptAt, attemptElapsed, count
+    private static final int ATTEMPT_LOG_COMPACT_ENTRIES = 4096;
+
+    private final File directory;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();   // By first id
+    private final TreeMap<Long, Entry> pending = new TreeMap<>();
+    private final Set<String> pendingKeys = new HashSet<>();
+    private final TreeSet<Long> ackedAboveCursor = new TreeSet<>();
+    private final FileChannel cursorChannel;
+    private final FileChannel ackLogChannel;
+    private final FileChannel attemptLogChannel;
+    private final CRC32 crc = new CRC32();
+
+    private Segment active;
+    private long nextId = 1;
+    private long cursor;            // Every id up to and including this one is acked
+    private int ackLogEntries;
+    private int attemptLogEntries;
+
+    private static class Segment {
+        final File file;
+        final long firstId;
+        final MappedByteBuffer buffer;
+        long lastId;
+        int position;
+
+        Segment(File file, long firstId) throws IOException {
+            this.file = file;
+            this.firstId = firstId;
+            this.lastId = firstId - 1;
+            // The mapping stays valid after the channel is closed
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(SEGMENT_SIZE);
+                this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            }
+        }
+    }
+
+    // Where a pending message is, plus what the lane queries need without decoding it
+    private static class Entry {
+        final Segment segment;
+        final int offset;
+        final int lane;
+        final long enqueuedAt;
+        final String dedupKey;
+        // Attempts recorded after the append, from the attempts log
+        int attempts;
+        long firstAttemptAt;
+        long firstAttemptElapsed;
+
+        Entry(Segment segment, int offset, int lane, long enqueuedAt, String dedupKey) {
+            this.segment = segment;
+            this.offset = offset;
+            this.lane = lane;
+            this.enqueuedAt = enqueuedAt;
+            this.dedupKey = dedupKey;
+        }
+    }
+
+    public JournalOutboxStore(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        cursorChannel = new RandomAccessFile(new File(directory, CURSOR_FILE), "rw").getChannel();
+        ackLogChannel = new RandomAccessFile(new File(directory, ACK_LOG_FILE), "rw").getChannel();
+        attemptLogChannel = new RandomAccessFile(new File(directory, ATTEMPT_LOG_FILE), "rw").getChannel();
+        recover();
+    }
+
+    @Override
+    public synchronized long append(MessageData messageData) {
+        String dedupKey = messageData.getDedupKey();
+        if (dedupKey != null && pendingKeys.contains(dedupKey)) {
+            return -1;
+        }
+
+        try {
+            byte[] fields = encode(messageData);
+            int recordSize = HEADER_SIZE + fields.length;
+            if (recordSize > SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Message of " + recordSize + " bytes exceeds a segment");
+            }
+            if (active == null || active.position + recordSize > SEGMENT_SIZE) {
+                roll();
+            }
+
+            long id = nextId;
+            int offset = active.position;
+            MappedByteBuffer buffer = active.buffer;
+            buffer.putLong(offset + 8, id);
+            ByteBuffer out = buffer.duplicate();
+            out.position(offset + HEADER_SIZE);
+            out.put(fields);
+            buffer.putInt(offset + 4, checksum(id, fields, fields.length));
+            buffer.putInt(offset, fields.length);
+            buffer.force();
+
+            nextId++;
+            active.lastId = id;
+            active.position = offset + recordSize;
+            pending.put(id, new Entry(active, offset, messageData.getPriority(),
+                    messageData.getEnqueuedAt(), dedupKey));
+            if (dedupKey != null) {
+                pendingKeys.add(dedupKey);
+            }
+            messageData.setId(id);
+            return id;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal append failed", e);
+        }
+    }
+
+    // Pending messages only, acked ones are not kept
+    @Override
+    public synchronized boolean contains(String dedupKey) {
+        return pendingKeys.contains(dedupKey);
+    }
+
+    @Override
+    public synchronized List<MessageData> readPending(int lane, long afterId, int limit) {
+        List<MessageData> messages = new ArrayList<>();
+        for (Map.Entry<Long, Entry> e : pending.tailMap(afterId, false).entrySet()) {
+            if (messages.size() >= limit) {
+                break;
+            }
+            Entry entry = e.getValue();
+            if (entry.lane != lane) {
+                continue;
+            }
+            try {
+                MessageData message = read(entry.segment, entry.offset);
+                if (entry.attempts > 0) {
+                    message.setAttemptCount(message.getAttemptCount() + entry.attempts);
+                    if (message.getFirstAttemptAt() == 0) {
+                        message.setFirstAttemptAt(entry.firstAttemptAt);
+                        message.setFirstAttemptElapsed(entry.firstAttemptElapsed);
+                    }
+                }
+                messages.add(message);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Journal record " + e.getKey() + " unreadable", ex);
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized List<LaneDepth> getLaneDepths() {
+        Map<Integer, LaneDepth> byLane = new TreeMap<>();
+        for (Entry entry : pending.values()) {
+            LaneDepth depth = byLane.get(entry.lane);
+            if (depth == null) {
+                depth = new LaneDepth();
+                depth.lane = entry.lane;
+                depth.oldestEnqueuedAt = entry.enqueuedAt;
+                byLane.put(entry.lane, depth);
+            }
+            depth.depth++;
+            depth.oldestEnqueuedAt = Math.min(depth.oldestEnqueuedAt, entry.enqueuedAt);
+        }
+        return new ArrayList<>(byLane.values());
+    }
+
+    // Unknown or already acked ids are ignored, as by RoomOutboxStore
+    @Override
+    public synchronized void recordAttempts(long[] ids, long attemptAt, long attemptElapsed) {
+        ByteBuffer log = ByteBuffer.allocate(ids.length * ATTEMPT_LOG_ENTRY_SIZE);
+        for (long id : ids) {
+            Entry entry = pending.get(id);
+            if (entry != null) {
+                applyAttempts(entry, attemptAt, attemptElapsed, 1);
+                putAttempts(log, id, attemptAt, attemptElapsed, 1);
+                attemptLogEntries++;
+            }
+        }
+        log.flip();
+        if (!log.hasRemaining()) {
+            return;
+        }
+
+        try {
+            attemptLogChannel.write(log, attemptLogChannel.size());
+            attemptLogChannel.force(false);
+            if (attemptLogEntries > ATTEMPT_LOG_COMPACT_ENTRIES && attemptLogEntries > 2 * pending.size()) {
+                // A crash mid-rewrite only loses attempt counts, never messages
+                rewriteAttemptLog();
+            }
+        } catch (IOException e) {
+            // Counted in memory, lost on restart
+            Log.e(TAG, "Failed to persist attempts for " + ids.length + " messages", e);
+        }
+    }
+
+    // Acked messages are not kept, the journal has no local history
+    @Override
+    public synchronized void ack(long[] ids, long ackedAt) {
+        List<Long> acked = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Entry entry = pending.remove(id);
+            if (entry != null) {
+                acked.add(id);
+                if (entry.dedupKey != null) {
+                    pendingKeys.remove(entry.dedupKey);
+                }
+            }
+        }
+        if (acked.isEmpty()) {
+            return;
+        }
+
+        try {
+            long newCursor = pending.isEmpty() ? nextId - 1 : pending.firstKey() - 1;
+            ByteBuffer above = ByteBuffer.allocate(acked.size() * 8);
+            for (long id : acked) {
+                if (id > newCursor) {
+                    above.putLong(id);
+                    ackedAboveCursor.add(id);
+                    ackLogEntries++;
+                }
+            }
+            above.flip();
+            if (above.hasRemaining()) {
+                ackLogChannel.write(above, ackLogChannel.size());
+                ackLogChannel.force(false);
+            }
+            if (newCursor != cursor) {
+                advanceCursor(newCursor);
+            }
+            if (pending.isEmpty() && attemptLogEntries > 0) {
+                attemptLogChannel.truncate(0);
+                attemptLogEntries = 0;
+            }
+            if (ackLogEntries > ACK_LOG_COMPACT_ENTRIES && ackLogEntries > 2 * ackedAboveCursor.size()) {
+                // A crash mid-rewrite only loses acks, which means those messages are sent again
+                rewriteAckLog();
+            }
+        } catch (IOException e) {
+            // The messages stay pending in the file and are sent again after a restart
+            Log.e(TAG, "Failed to persist " + acked.size() + " acks", e);
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Offset of the next append in the active segment, for tests
+    synchronized int getWritePosition() {
+        return active != null ? active.position : 0;
+    }
+
+    synchronized File getActiveSegmentFile() {
+        return active != null ? active.file : null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+        }
+        cursorChannel.close();
+        ackLogChannel.close();
+        attemptLogChannel.close();
+    }
+
+    private void roll() throws IOException {
+        File file = new File(directory, String.format(Locale.US, "%s%019d%s", SEGMENT_PREFIX, nextId, SEGMENT_SUFFIX));
+        active = new Segment(file, nextId);
+        segments.put(active.firstId, active);
+    }
+
+    private void advanceCursor(long newCursor) throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(8);
+        value.putLong(newCursor).flip();
+        cursorChannel.write(value, 0);
+        cursorChannel.force(false);
+        cursor = newCursor;
+
+        ackedAboveCursor.headSet(newCursor, true).clear();
+        if (ackedAboveCursor.isEmpty()) {
+            ackLogChannel.truncate(0);
+            ackLogEntries = 0;
+        }
+        deleteAckedSegments();
+    }
+
+    private void rewriteAckLog() throws IOException {
+        ackLogChannel.truncate(0);
+        ByteBuffer all = ByteBuffer.allocate(ackedAboveCursor.size() * 8);
+        for (long id : ackedAboveCursor) {
+            all.putLong(id);
+        }
+        all.flip();
+        ackLogChannel.write(all, 0);
+        ackLogChannel.force(false);
+        ackLogEntries = ackedAboveCursor.size();
+    }
+
+    private void rewriteAttemptLog() throws IOException {
+        attemptLogChannel.truncate(0);
+        int entries = 0;
+        for (Entry entry : pending.values()) {
+            if (entry.attempts > 0) {
+                entries++;
+            }
+        }
+        ByteBuffer all = ByteBuffer.allocate(entries * ATTEMPT_LOG_ENTRY_SIZE);
+        for (Map.Entry<Long, Entry> e : pending.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.attempts > 0) {
+                putAttempts(all, e.getKey(), entry.firstAttemptAt, entry.firstAttemptElapsed, entry.attempts);
+            }
+        }
+        all.flip();
+        attemptLogChannel.write(all, 0);
+        attemptLogChannel.force(false);
+        attemptLogEntries = entries;
+    }
+
+    private static void putAttempts(ByteBuffer log, long id, long attemptAt, long attemptElapsed, int count) {
+        log.putLong(id);
+        log.putLong(attemptAt);
+        log.putLong(attemptElapsed);
+        log.putInt(count);
+    }
+
+    // The first attempt time is only set once, as by MessageDao.recordAttempts
+    private static void applyAttempts(Entry entry, long attemptAt, long attemptElapsed, int count) {
+        if (entry.attempts == 0) {
+            entry.firstAttemptAt = attemptAt;
+            entry.firstAttemptElapsed = attemptElapsed;
+        }
+        entry.attempts += count;
+    }
+
+    private void deleteAckedSegments() {
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.lastId > cursor) {
+                return;
+            }
+            segments.remove(oldest.firstId);
+            if (!oldest.file.delete()) {
+                Log.w(TAG, "Could not delete " + oldest.file.getName());
+            }
+        }
+    }
+
+    /**
+     * Rebuild the pending index from the cursor, ack log and segments
+     */
+    private void recover() throws IOException {
+        long start = System.currentTimeMillis();
+
+        ByteBuffer value = ByteBuffer.allocate(8);
+        if (cursorChannel.read(value, 0) == 8) {
+            value.flip();
+            cursor = value.getLong();
+        }
+        ByteBuffer acks = ByteBuffer.allocate((int) (ackLogChannel.size() / 8 * 8));
+        ackLogChannel.read(acks, 0);
+        acks.flip();
+        while (acks.remaining() >= 8) {
+            long id = acks.getLong();
+            if (id > cursor) {
+                ackedAboveCursor.add(id);
+            }
+            ackLogEntries++;
+        }
+
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);     // Zero-padded first ids sort by name
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].getName();
+                long firstId = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = new Segment(files[i], firstId);
+                scan(segment, i == files.length - 1);
+                segments.put(firstId, segment);
+                nextId = Math.max(nextId, segment.lastId + 1);
+                active = segment;
+            }
+        }
+        // Never reuse an id the cursor or ack log already counts as acked
+        nextId = Math.max(nextId, cursor + 1);
+        if (!ackedAboveCursor.isEmpty()) {
+            nextId = Math.max(nextId, ackedAboveCursor.last() + 1);
+        }
+        deleteAckedSegments();
+
+        // Only applied once the pending index exists; a torn last entry is dropped
+        ByteBuffer attempts = ByteBuffer.allocate(
+                (int) (attemptLogChannel.size() / ATTEMPT_LOG_ENTRY_SIZE * ATTEMPT_LOG_ENTRY_SIZE));
+        attemptLogChannel.read(attempts, 0);
+        attempts.flip();
+        while (attempts.remaining() >= ATTEMPT_LOG_ENTRY_SIZE) {
+            Entry entry = pending.get(attempts.getLong());
+            long attemptAt = attempts.getLong();
+            long attemptElapsed = attempts.getLong();
+            int count = attempts.getInt();
+            if (entry != null) {
+                applyAttempts(entry, attemptAt, attemptElapsed, count);
+            }
+            attemptLogEntries++;
+        }
+        if (attemptLogChannel.size() != attempts.limit()) {
+            // Later entries must start on an entry boundary
+            attemptLogChannel.truncate(attempts.limit());
+        }
+
+        Log.i(TAG, "Recovered " + pending.size() + " pending messages from " + segments.size()
+                + " segments in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void scan(Segment segment, boolean last) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= SEGMENT_SIZE) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            long id = buffer.getLong(position + 8);
+            byte[] fields = length > 0 && position + HEADER_SIZE + length <= SEGMENT_SIZE
+                    ? readFields(buffer, position, length) : null;
+            if (fields == null || id <= segment.lastId
+                    || checksum(id, fields, length) != buffer.getInt(position + 4)) {
+                Log.w(TAG, "Torn record at " + segment.file.getName() + ":" + position
+                        + (last ? ", truncating" : ", skipping rest of segment"));
+                if (last) {
+                    // Zero the tail, so nothing after the next append can look like a record
+                    zero(buffer, position);
+                }
+                break;
+            }
+
+            segment.lastId = id;
+            if (id > cursor && !ackedAboveCursor.contains(id)) {
+                MessageData message = decode(fields);
+                pending.put(id, new Entry(segment, position, message.getPriority(),
+                        message.getEnqueuedAt(), message.getDedupKey()));
+                if (message.getDedupKey() != null) {
+                    pendingKeys.add(message.getDedupKey());
+                }
+            }
+            position += HEADER_SIZE + length;
+        }
+        segment.position = position;
+    }
+
+    private static void zero(MappedByteBuffer buffer, int from) {
+        byte[] zeros = new byte[8192];
+        ByteBuffer out = buffer.duplicate();
+        out.position(from);
+        while (out.hasRemaining()) {
+            out.put(zeros, 0, Math.min(zeros.length, out.remaining()));
+        }
+        buffer.force();
+    }
+
+    private MessageData read(Segment segment, int offset) throws IOException {
+        int length = segment.buffer.getInt(offset);
+        MessageData message = decode(readFields(segment.buffer, offset, length));
+        message.setId(segment.buffer.getLong(offset + 8));
+        return message;
+    }
+
+    private static byte[] readFields(MappedByteBuffer buffer, int offset, int length) {
+        byte[] fields = new byte[length];
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + HEADER_SIZE);
+        in.get(fields);
+        return fields;
+    }
+
+    private int checksum(long id, byte[] fields, int length) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (id >>> shift));
+        }
+        crc.update(fields, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(MessageData message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(message.getPriority());
+        out.writeLong(message.getTimestamp());
+        out.writeLong(message.getEnqueuedAt());
+        writeBytes(out, toUtf8(message.getSender()));
+        writeBytes(out, toUtf8(message.getReceiver()));
+        writeBytes(out, toUtf8(message.getMessageBody()));
+        writeBytes(out, toUtf8(message.getTags()));
+        writeBytes(out, toUtf8(message.getParsedFields()));
+        writeBytes(out, toUtf8(message.getDedupKey()));
+        writeBytes(out, message.getPayload());
+        writeBytes(out, toUtf8(message.getPayloadFile()));
+        out.writeLong(message.getReceivedAt());
+        out.writeLong(message.getReceivedElapsed());
+        out.writeLong(message.getPersistedElapsed());
+        out.writeLong(message.getFirstAttemptAt());
+        out.writeLong(message.getFirstAttemptElapsed());
+        out.writeInt(message.getAttemptCount());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static MessageData decode(byte[] fields) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(fields));
+        MessageData message = new MessageData();
+        message.setPriority(in.readInt());
+        message.setTimestamp(in.readLong());
+        message.setEnqueuedAt(in.readLong());
+        message.setSender(fromUtf8(readBytes(in)));
+        message.setReceiver(fromUtf8(readBytes(in)));
+        message.setMessageBody(fromUtf8(readBytes(in)));
+        message.setTags(fromUtf8(readBytes(in)));
+        message.setParsedFields(fromUtf8(readBytes(in)));
+        message.setDedupKey(fromUtf8(readBytes(in)));
+        message.setPayload(readBytes(in));
+        message.setPayloadFile(fromUtf8(readBytes(in)));
+        if (in.available() > 0) {
+            // Stage times, absent from records written before they existed
+            message.setReceivedAt(in.readLong());
+            message.setReceivedElapsed(in.readLong());
+            message.setPersistedElapsed(in.readLong());
+            message.setFirstAttemptAt(in.readLong());
+            message.setFirstAttemptElapsed(in.readLong());
+            message.setAttemptCount(in.readInt());
+        }
+        return message;
+    }
+
+    // Length-prefixed, -1 for null
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static byte[] toUtf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String fromUtf8(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+}
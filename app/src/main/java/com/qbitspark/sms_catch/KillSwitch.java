@@ -0,0 +1,63 @@
+package com.qbitspark.sms_catch;
+
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+/**
+ * Last known value of the remote kill switch, kept current by a standing
+ * listener so the send path does not wait for a round-trip per message.
+ * Unknown until the first snapshot arrives; callers that need an answer
+ * before then still do their own single-value check.
+ */
+public class KillSwitch {
+    private static final String TAG = "KillSwitch";
+
+    private static KillSwitch instance;
+
+    private volatile Boolean disabled;      // null until the first snapshot
+
+    private KillSwitch() {
+        FirebaseDatabase.getInstance()
+                .getReference("killSwitchEnabled")
+                .addValueEventListener(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Boolean value = snapshot.getValue(Boolean.class);
+                        disabled = value != null && value;
+                        AppLog.d(TAG, "Kill switch %s", disabled ? "on" : "off");
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        AppLog.e(TAG, "Kill switch listener cancelled", error.toException());
+                        disabled = null;
+                    }
+                });
+    }
+
+    public static synchronized KillSwitch getInstance() {
+        if (instance == null) {
+            instance = new KillSwitch();
+        }
+        return instance;
+    }
+
+    /**
+     * True only if the switch is known to be off right now
+     */
+    public boolean isKnownEnabled() {
+        return Boolean.FALSE.equals(disabled);
+    }
+
+    /**
+     * True only if the switch is known to be on right now
+     */
+    public boolean isKnownDisabled() {
+        return Boolean.TRUE.equals(disabled);
+    }
+}
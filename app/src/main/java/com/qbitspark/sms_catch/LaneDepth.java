@@ -0,0 +1,14 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Queue depth and age of the oldest unsent message for one outbox lane
+ */
+public class LaneDepth {
+    public int lane;
+    public int depth;
+    public long oldestEnqueuedAt;
+
+    public long getOldestAgeMillis(long now) {
+        return oldestEnqueuedAt > 0 ? now - oldestEnqueuedAt : 0;
+    }
+}
@@ -8,10 +8,15 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.format.DateFormat;
 import android.util.Log;
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.widget.AbsListView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -24,8 +29,10 @@ import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.ViewModelProvider;
 
 import java.util.List;
+import java.util.Locale;
 
 @RequiresApi(api = Build.VERSION_CODES.O)
 public class MainActivity extends AppCompatActivity {
@@ -41,11 +48,21 @@ public class MainActivity extends AppCompatActivity {
     };
 
     private String currentSimBeingConfigured = null; // Now stores ICCID
+    private SimStateViewModel simState;
+
+    // Message search state, only touched on the main thread
+    private ArrayAdapter<String> searchAdapter;
+    private String searchQuery;
+    private long searchNextBeforeId;
+    private boolean searchHasMore;
+    private boolean searchLoading;
+    private int searchGeneration;
 
     @SuppressLint("MissingInflatedId")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        MainThreadWatchdog.install();
 
         NetworkChangeReceiver networkChangeReceiver = new NetworkChangeReceiver(this);
         networkChangeReceiver.registerNetworkCallback();
@@ -62,18 +79,31 @@ public class MainActivity extends AppCompatActivity {
         EditText branchIdInput = findViewById(R.id.branchIdInput);
         TextView statusTextView = findViewById(R.id.statusTextView);
 
+        // SIM configuration renders from a snapshot loaded off the main thread
+        simState = new ViewModelProvider(this).get(SimStateViewModel.class);
+        simState.getState().observe(this, this::renderSimState);
+
         // Set up input field for phone numbers
         setupPhoneNumberInput(branchIdInput);
 
         // Use ONLY the enhanced save button setup
         setupEnhancedSaveButton();
 
+        // Outbox and delivery figures, refreshed only while the screen is visible
+        DashboardViewModel dashboard = new ViewModelProvider(this).get(DashboardViewModel.class);
+        dashboard.getState().observe(this, this::renderDashboard);
+
+        // Full-text search over captured messages
+        setupSearch();
+
         // Check and request all required permissions
         if (!hasAllPermissions()) {
             ActivityCompat.requestPermissions(this, REQUIRED_PERMISSIONS, SMS_PERMISSION_CODE);
         } else {
-            EnhancedSIMManager simManager = new EnhancedSIMManager(this);
-            simManager.debugDeviceRestrictions(); // Add this line
+            if (AppLog.DEBUG) {
+                final EnhancedSIMManager simManager = new EnhancedSIMManager(getApplicationContext());
+                new Thread(simManager::debugDeviceRestrictions, "DeviceRestrictions").start();
+            }
             Intent monitorIntent = new Intent(this, SIMMonitorService.class);
             startService(monitorIntent);
             startSmsListener();
@@ -83,6 +113,12 @@ public class MainActivity extends AppCompatActivity {
         WorkManagerHelper.triggerImmediateSync(this);
         // Schedule periodic sync worker
         WorkManagerHelper.scheduleSyncWorker(this);
+        // Keep the spam sender blocklist current
+        WorkManagerHelper.scheduleBlocklistSync(this);
+        // Periodically import inbox SMS that no broadcast delivered to us
+        WorkManagerHelper.scheduleInboxCatchUp(this);
+        // Trim acknowledged history and compact the database while charging
+        WorkManagerHelper.scheduleRetention(this);
     }
 
     /**
@@ -137,14 +173,7 @@ public class MainActivity extends AppCompatActivity {
      * Silent validation (no toast messages) for real-time feedback
      */
     private boolean isValidPhoneNumberSilent(String phoneNumber) {
-        if (phoneNumber == null || phoneNumber.isEmpty()) return false;
-        phoneNumber = phoneNumber.replaceAll("[\\s-]", "");
-
-        return phoneNumber.matches("\\d{10}") &&
-                phoneNumber.startsWith("0") &&
-                !phoneNumber.equals("0000000000") &&
-                !phoneNumber.equals("0123456789") &&
-                !phoneNumber.matches("0(\\d)\\1{8}");
+        return PhoneNumbers.isValid(phoneNumber);
     }
 
     /**
@@ -153,57 +182,33 @@ public class MainActivity extends AppCompatActivity {
      * @return true if valid, false if invalid (with error message shown)
      */
     private boolean isValidPhoneNumber(String phoneNumber) {
-        // Check if empty
-        if (phoneNumber == null || phoneNumber.isEmpty()) {
-            Toast.makeText(this,
-                    "❌ Phone number is required! Cannot skip SIM configuration.",
-                    Toast.LENGTH_LONG).show();
-            return false;
-        }
-
-        // Remove any spaces or dashes that user might have entered
-        phoneNumber = phoneNumber.replaceAll("[\\s-]", "");
-
-        // Check if it contains only digits
-        if (!phoneNumber.matches("\\d+")) {
-            Toast.makeText(this,
-                    "❌ Invalid format! Phone number must contain only digits.\n" +
-                            "Example: 0745051250",
-                    Toast.LENGTH_LONG).show();
-            return false;
-        }
-
-        // Check if it starts with 0
-        if (!phoneNumber.startsWith("0")) {
-            Toast.makeText(this,
-                    "❌ Invalid format! Phone number must start with 0.\n" +
-                            "Example: 0745051250",
-                    Toast.LENGTH_LONG).show();
-            return false;
-        }
-
-        // Check if it's exactly 10 digits
-        if (phoneNumber.length() != 10) {
-            Toast.makeText(this,
-                    "❌ Invalid length! Phone number must be exactly 10 digits.\n" +
-                            "You entered: " + phoneNumber.length() + " digits\n" +
-                            "Example: 0745051250",
-                    Toast.LENGTH_LONG).show();
-            return false;
-        }
-
-        // Check for common invalid patterns
-        if (phoneNumber.equals("0000000000") ||
-                phoneNumber.equals("0123456789") ||
-                phoneNumber.matches("0(\\d)\\1{8}")) { // All same digits after 0
-            Toast.makeText(this,
-                    "❌ Invalid number! Please enter a real phone number.\n" +
-                            "Example: 0745051250",
-                    Toast.LENGTH_LONG).show();
-            return false;
+        String message;
+        switch (PhoneNumbers.validate(phoneNumber)) {
+            case NONE:
+                return true;
+            case EMPTY:
+                message = "❌ Phone number is required! Cannot skip SIM configuration.";
+                break;
+            case NOT_DIGITS:
+                message = "❌ Invalid format! Phone number must contain only digits.\n" +
+                        "Example: 0745051250";
+                break;
+            case NO_LEADING_ZERO:
+                message = "❌ Invalid format! Phone number must start with 0.\n" +
+                        "Example: 0745051250";
+                break;
+            case WRONG_LENGTH:
+                message = "❌ Invalid length! Phone number must be exactly 10 digits.\n" +
+                        "You entered: " + PhoneNumbers.normalize(phoneNumber).length() + " digits\n" +
+                        "Example: 0745051250";
+                break;
+            default:
+                message = "❌ Invalid number! Please enter a real phone number.\n" +
+                        "Example: 0745051250";
+                break;
         }
-
-        return true;
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        return false;
     }
 
     /**
@@ -212,9 +217,8 @@ public class MainActivity extends AppCompatActivity {
     private void handleEnhancedSave(String phoneNumber) {
         if (phoneNumber != null && !phoneNumber.isEmpty() && currentSimBeingConfigured != null) {
 
-            // Save using ICCID as the key
-            EnhancedSIMManager simManager = new EnhancedSIMManager(this);
-            simManager.saveSIMConfiguration(currentSimBeingConfigured, phoneNumber);
+            // Save using ICCID as the key; the screen updates when the new state loads
+            simState.saveConfiguration(currentSimBeingConfigured, phoneNumber);
 
             Toast.makeText(MainActivity.this,
                     "✅ Saved " + phoneNumber + " for SIM with ICCID: " + maskICCID(currentSimBeingConfigured),
@@ -225,9 +229,6 @@ public class MainActivity extends AppCompatActivity {
             branchIdInput.setText("");
             currentSimBeingConfigured = null;
 
-            // Check for next unconfigured SIM
-            updateEnhancedDisplay();
-
         } else {
             Toast.makeText(MainActivity.this,
                     "❌ Phone number is required! Cannot skip SIM configuration.",
@@ -236,18 +237,16 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Enhanced display update with ICCID tracking
+     * Show the SIM configuration step, or the configured SIMs, from the latest snapshot
      */
-    private void updateEnhancedDisplay() {
+    private void renderSimState(SimConfigState state) {
         TextView statusTextView = findViewById(R.id.statusTextView);
         EditText branchIdInput = findViewById(R.id.branchIdInput);
         Button saveBranchButton = findViewById(R.id.saveBranchButton);
 
-        EnhancedSIMManager simManager = new EnhancedSIMManager(this);
-
-        if (!simManager.areAllSIMsConfigured()) {
+        if (!state.allConfigured) {
             // Get next unconfigured SIM
-            EnhancedSIMManager.SIMInfo unconfiguredSIM = simManager.getNextUnconfiguredSIM();
+            SIMInfo unconfiguredSIM = state.nextUnconfigured;
 
             if (unconfiguredSIM != null) {
                 currentSimBeingConfigured = unconfiguredSIM.iccid;
@@ -275,10 +274,9 @@ public class MainActivity extends AppCompatActivity {
             saveBranchButton.setVisibility(View.GONE);
 
             // Show comprehensive status
-            EnhancedSIMManager.SwapDetectionResult currentStatus = simManager.detectSIMChanges();
             StringBuilder statusMessage = new StringBuilder("🎉 ALL SIMs CONFIGURED SUCCESSFULLY!\n\n");
 
-            for (EnhancedSIMManager.SIMInfo sim : currentStatus.activeSIMs) {
+            for (SIMInfo sim : state.activeSIMs) {
                 statusMessage.append("✅ ").append(sim.getDisplayName()).append("\n");
                 statusMessage.append("   📍 Slot: ").append(sim.slotIndex).append("\n");
                 statusMessage.append("   🆔 ICCID: ").append(maskICCID(sim.iccid)).append("\n\n");
@@ -288,10 +286,41 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Outbox depth per lane, throughput, delivery latency and what is gating uploads
+     */
+    private void renderDashboard(DashboardState state) {
+        TextView dashboardTextView = findViewById(R.id.dashboardTextView);
+        StringBuilder text = new StringBuilder();
+
+        text.append("Outbox: ").append(state.getTotalDepth()).append(" pending\n");
+        for (int lane = 0; lane < PriorityClassifier.LANE_COUNT; lane++) {
+            text.append(String.format(Locale.US, "  %-10s %5d", PriorityClassifier.laneName(lane),
+                    state.laneDepths[lane]));
+            if (state.laneOldestEnqueuedAt[lane] > 0) {
+                text.append("  oldest ")
+                        .append((state.updatedAt - state.laneOldestEnqueuedAt[lane]) / 1000).append('s');
+            }
+            text.append('\n');
+        }
+        text.append(String.format(Locale.US, "In %.1f/min  Out %.1f/min\n",
+                state.receivedPerMinute, state.deliveredPerMinute));
+        text.append("Delivery p95: ")
+                .append(state.deliveryP95Millis >= 0 ? state.deliveryP95Millis + "ms" : "-").append('\n');
+        text.append("Last upload: ")
+                .append(state.lastUploadAt > 0 ? DateFormat.format("yyyy-MM-dd HH:mm:ss", state.lastUploadAt) : "-")
+                .append('\n');
+        text.append("Kill switch: ").append(state.killSwitch).append('\n');
+        text.append("Policy: ").append(state.deliveryPolicy).append('\n');
+        text.append("Network: ").append(state.network);
+
+        dashboardTextView.setText(text);
+    }
+
     /**
      * Show alert when SIM changes are detected
      */
-    private void showSIMChangesAlert(EnhancedSIMManager.SwapDetectionResult swapResult) {
+    private void showSIMChangesAlert(SwapDetectionResult swapResult) {
         if (swapResult.hasChanges()) {
             StringBuilder alertMessage = new StringBuilder("🔔 SIM CHANGES DETECTED!\n\n");
             alertMessage.append(swapResult.getChangesSummary());
@@ -332,6 +361,91 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Search box and result list. Pages are loaded in the background as the
+     * list is scrolled to its end.
+     */
+    private void setupSearch() {
+        EditText searchInput = findViewById(R.id.searchInput);
+        Button searchButton = findViewById(R.id.searchButton);
+        ListView searchResults = findViewById(R.id.searchResults);
+
+        searchAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+        searchResults.setAdapter(searchAdapter);
+
+        searchButton.setOnClickListener(v -> startSearch(searchInput.getText().toString()));
+        searchInput.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                startSearch(v.getText().toString());
+                return true;
+            }
+            return false;
+        });
+        searchResults.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {}
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount
+                        && searchHasMore && !searchLoading) {
+                    loadSearchPage();
+                }
+            }
+        });
+    }
+
+    private void startSearch(String query) {
+        searchGeneration++;
+        searchQuery = query;
+        searchNextBeforeId = Long.MAX_VALUE;
+        searchHasMore = true;
+        searchAdapter.clear();
+        loadSearchPage();
+    }
+
+    private void loadSearchPage() {
+        final int generation = searchGeneration;
+        final String query = searchQuery;
+        final long beforeId = searchNextBeforeId;
+        searchLoading = true;
+
+        new Thread(() -> {
+            MessageSearch.Page page;
+            try {
+                page = MessageSearch.search(getApplicationContext(), query, beforeId);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Message search failed", e);
+                page = null;
+            }
+            final MessageSearch.Page result = page;
+            runOnUiThread(() -> {
+                if (generation != searchGeneration) {
+                    return;     // A newer search replaced this one
+                }
+                searchLoading = false;
+                if (result == null) {
+                    searchHasMore = false;
+                    Toast.makeText(this, "Search failed", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                searchNextBeforeId = result.nextBeforeId;
+                searchHasMore = result.hasMore;
+                for (MessageData message : result.messages) {
+                    searchAdapter.add(formatSearchResult(message));
+                }
+                if (searchAdapter.isEmpty()) {
+                    Toast.makeText(this, "No messages found", Toast.LENGTH_SHORT).show();
+                }
+            });
+        }, "MessageSearch").start();
+    }
+
+    private String formatSearchResult(MessageData message) {
+        return message.getSender() + " · " + DateFormat.format("yyyy-MM-dd HH:mm", message.getTimestamp())
+                + "\n" + message.getMessageBody();
+    }
+
     private boolean hasAllPermissions() {
         for (String permission : REQUIRED_PERMISSIONS) {
             if (ContextCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
@@ -356,7 +470,7 @@ public class MainActivity extends AppCompatActivity {
 
             if (allPermissionsGranted) {
                 startSmsListener();
-                updateEnhancedDisplay(); // Use enhanced version
+                simState.start();
             } else {
                 Toast.makeText(this, "All permissions are required for this app to work",
                         Toast.LENGTH_LONG).show();
@@ -376,10 +490,10 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onBackPressed() {
-        // Use enhanced configuration status
-        EnhancedSIMManager simManager = new EnhancedSIMManager(this);
+        // Cached configuration status; not loaded yet counts as not configured
+        SimConfigState state = simState.getState().getValue();
 
-        if (!simManager.areAllSIMsConfigured()) {
+        if (state == null || !state.allConfigured) {
             Toast.makeText(this,
                     "⚠️ Cannot exit! Please configure all SIM cards first.",
                     Toast.LENGTH_LONG).show();
@@ -395,7 +509,7 @@ public class MainActivity extends AppCompatActivity {
         super.onStart();
 
         if (hasAllPermissions()) {
-            updateEnhancedDisplay(); // Use enhanced version
+            simState.start();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.qbitspark.sms_catch;
+
+import android.os.Looper;
+import android.util.Printer;
+
+/**
+ * Times every main looper dispatch through Looper's message logging hook.
+ * When one runs past STALL_THRESHOLD_MILLIS a watchdog thread samples the main
+ * thread's stack while it is still stuck; the finished stall is logged to the
+ * AppLog ring, counted in PipelineMetrics and aggregated by cause in a
+ * StallDetector, dumped with
+ *
+ *   adb shell dumpsys activity service com.qbitspark.sms_catch/.SmsListenerService --stalls
+ *
+ * The watchdog thread sleeps until a dispatch starts, so an idle main thread
+ * costs no wakeups.
+ */
+public final class MainThreadWatchdog implements Printer {
+    private static final String TAG = "MainThreadWatchdog";
+    // Over a few dropped frames, and the point where input starts to feel stuck
+    static final long STALL_THRESHOLD_MILLIS = 250;
+    // Half the 5s input dispatch ANR timeout
+    static final long NEAR_ANR_MILLIS = 2500;
+
+    private static MainThreadWatchdog instance;
+
+    private final Thread mainThread;
+    private final StallDetector detector;
+    private final Object lock = new Object();
+    private volatile boolean watchdogParked;
+
+    private MainThreadWatchdog(Looper looper) {
+        mainThread = looper.getThread();
+        detector = new StallDetector(STALL_THRESHOLD_MILLIS, NEAR_ANR_MILLIS,
+                MainThreadWatchdog.class.getPackage().getName());
+    }
+
+    /**
+     * Start watching the main looper; later calls return the running watchdog
+     */
+    public static synchronized MainThreadWatchdog install() {
+        if (instance == null) {
+            instance = new MainThreadWatchdog(Looper.getMainLooper());
+            Looper.getMainLooper().setMessageLogging(instance);
+            Thread thread = new Thread(instance::watch, TAG);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return instance;
+    }
+
+    /**
+     * The running watchdog, or null if install was never called in this process
+     */
+    static synchronized MainThreadWatchdog getInstance() {
+        return instance;
+    }
+
+    public StallDetector getDetector() {
+        return detector;
+    }
+
+    /**
+     * Called by Looper on the main thread before and after each message
+     */
+    @Override
+    public void println(String line) {
+        if (line.startsWith(">")) {
+            detector.dispatchStarted(line, System.nanoTime());
+            if (watchdogParked) {
+                synchronized (lock) {
+                    lock.notify();
+                }
+            }
+        } else if (line.startsWith("<")) {
+            long endNanos = System.nanoTime();
+            StallDetector.StallReport report = detector.dispatchFinished(endNanos, System.currentTimeMillis());
+            if (report != null) {
+                onStall(report);
+            }
+        }
+    }
+
+    private void onStall(StallDetector.StallReport report) {
+        // The report aggregates every stall with this cause, the last* fields describe this one
+        String topFrame = report.lastTopFrame != null ? report.lastTopFrame : "not sampled";
+        PipelineMetrics.MAIN_THREAD_STALL.record(report.lastMillis * 1000);
+        PipelineMetrics.MAIN_THREAD_STALLS.inc();
+        if (report.lastMillis >= NEAR_ANR_MILLIS) {
+            PipelineMetrics.MAIN_THREAD_NEAR_ANRS.inc();
+            AppLog.e(TAG, "Main thread blocked %dms in %s, top frame %s", report.lastMillis, report.key,
+                    topFrame);
+        } else {
+            AppLog.w(TAG, "Main thread stalled %dms in %s, top frame %s", report.lastMillis, report.key,
+                    topFrame);
+        }
+    }
+
+    /**
+     * Watchdog thread: park while the main thread is idle, otherwise sleep to
+     * the stall threshold and sample the stack if the same dispatch still runs
+     */
+    private void watch() {
+        try {
+            while (true) {
+                long wait = detector.millisUntilStall(System.nanoTime());
+                if (wait < 0) {
+                    synchronized (lock) {
+                        watchdogParked = true;
+                        // Re-check after publishing the flag, a dispatch may have started meanwhile
+                        if (!detector.isDispatching()) {
+                            lock.wait();
+                        }
+                        watchdogParked = false;
+                    }
+                } else if (wait > 0) {
+                    Thread.sleep(wait);
+                } else if (!detector.sampleIfStalled(System.nanoTime(), mainThread::getStackTrace)) {
+                    // Already sampled: check again once this stall could have ended
+                    Thread.sleep(STALL_THRESHOLD_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            AppLog.w(TAG, "Watchdog stopped");
+        }
+    }
+}
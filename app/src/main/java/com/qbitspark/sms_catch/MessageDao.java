@@ -2,21 +2,74 @@ package com.qbitspark.sms_catch;
 
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Update;
 
 import java.util.List;
 
 @Dao
 public interface MessageDao {
-    @Insert
+    // Returns -1 when a row with the same dedupKey already exists
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
     long insert(MessageData messageData);
 
     @Query("SELECT * FROM messages WHERE syncStatus = 0")
     List<MessageData> getUnsyncedMessages();
 
+    // Keyset page of one lane, served by the (syncStatus, priority, id) index
+    @Query("SELECT * FROM messages WHERE syncStatus = 0 AND priority = :lane AND id > :afterId " +
+            "ORDER BY id LIMIT :limit")
+    List<MessageData> getUnsyncedMessagesInLane(int lane, long afterId, int limit);
+
+    @Query("SELECT priority AS lane, COUNT(*) AS depth, MIN(enqueuedAt) AS oldestEnqueuedAt " +
+            "FROM messages WHERE syncStatus = 0 GROUP BY priority")
+    List<LaneDepth> getLaneDepths();
+
     @Query("UPDATE messages SET syncStatus = 1 WHERE id = :id")
     void markAsSynced(long id);
 
     @Query("DELETE FROM messages WHERE id = :id")
     void deleteMessage(long id);
+
+    // Rows written by older versions, see OutboxBackfill
+    @Query("SELECT * FROM messages WHERE id > :afterId AND (dedupKey IS NULL " +
+            "OR (senderId = 0 AND sender IS NOT NULL) OR (receiverId = 0 AND receiver IS NOT NULL)) " +
+            "ORDER BY id LIMIT :limit")
+    List<MessageData> getRowsNeedingBackfill(long afterId, int limit);
+
+    // Integer index lookups, resolve IDs with MessageDictionary
+    @Query("SELECT * FROM messages WHERE senderId = :senderId ORDER BY id DESC LIMIT :limit")
+    List<MessageData> getMessagesBySender(long senderId, int limit);
+
+    @Query("SELECT * FROM messages WHERE receiverId = :receiverId ORDER BY id DESC LIMIT :limit")
+    List<MessageData> getMessagesByReceiver(long receiverId, int limit);
+
+    // 0 if another row already holds the message's dedup key, see OutboxBackfill
+    @Update(onConflict = OnConflictStrategy.IGNORE)
+    int updateMessage(MessageData message);
+
+    // Batched acks from AckWriter, one transaction per call. Acked rows are kept
+    // for MessageRetention; their payload is no longer needed.
+    @Query("UPDATE messages SET syncStatus = 1, ackedAt = :ackedAt, payload = NULL, payloadFile = NULL " +
+            "WHERE id IN (:ids)")
+    int markAcked(long[] ids, long ackedAt);
+
+    // One statement per SyncWorker batch; the first attempt time is only set once
+    @Query("UPDATE messages SET attemptCount = attemptCount + 1, " +
+            "firstAttemptAt = CASE WHEN firstAttemptAt = 0 THEN :attemptAt ELSE firstAttemptAt END, " +
+            "firstAttemptElapsed = CASE WHEN firstAttemptElapsed = 0 THEN :attemptElapsed ELSE firstAttemptElapsed END " +
+            "WHERE id IN (:ids)")
+    int recordAttempts(long[] ids, long attemptAt, long attemptElapsed);
+
+    // Served by the (syncStatus, ackedAt) index
+    @Query("SELECT MIN(ackedAt) FROM messages WHERE syncStatus = 1")
+    Long getOldestAckedAt();
+
+    // Time of the last successful upload, same index
+    @Query("SELECT MAX(ackedAt) FROM messages WHERE syncStatus = 1")
+    Long getNewestAckedAt();
+
+    @Query("DELETE FROM messages WHERE syncStatus = 1 AND ackedAt < :before")
+    int deleteAckedBefore(long before);
 }
\ No newline at end of file
@@ -1,19 +1,80 @@
 package com.qbitspark.sms_catch;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "messages")
+@Entity(tableName = "messages",
+        indices = {@Index(value = {"syncStatus", "priority", "id"}),  // Priority-ordered draining
+                @Index(value = {"dedupKey"}, unique = true),         // One row per distinct SMS
+                @Index(value = {"syncStatus", "ackedAt"}),           // Retention cleanup by age
+                @Index(value = {"senderId"}),
+                @Index(value = {"receiverId"})})
 public class MessageData {
     @PrimaryKey(autoGenerate = true)
     private long id;
 
-    private String sender;
+    @ColumnInfo(name = "sender")
+    private String legacySender;    // Only rows from before v10, new rows use senderId
+
+    @ColumnInfo(name = "receiver")
+    private String legacyReceiver;  // Only rows from before v10, new rows use receiverId
+
+    @ColumnInfo(defaultValue = "0")
+    private long senderId;          // senders.id, 0 if not interned
+
+    @ColumnInfo(defaultValue = "0")
+    private long receiverId;        // receivers.id, 0 if not interned
+
+    @Ignore
+    private String sender;          // Resolved through MessageDictionary
+
+    @Ignore
     private String receiver;  // Add receiver field
     private String messageBody;
     private long timestamp;
     private int syncStatus; // 0 = not sent, 1 = sent successfully
 
+    @ColumnInfo(defaultValue = "0")
+    private long ackedAt;   // When the server accepted it, 0 while pending
+
+    @ColumnInfo(defaultValue = "1")
+    private int priority;   // Outbox lane, see PriorityClassifier
+
+    @ColumnInfo(defaultValue = "0")
+    private long enqueuedAt; // When the message entered the outbox
+
+    // Delivery stage times, see DeliveryTimes. *Elapsed values are
+    // SystemClock.elapsedRealtime() and only comparable within one boot; 0 if unknown.
+    @ColumnInfo(defaultValue = "0")
+    private long receivedAt;            // Wall clock when the app captured the SMS
+
+    @ColumnInfo(defaultValue = "0")
+    private long receivedElapsed;
+
+    @ColumnInfo(defaultValue = "0")
+    private long persistedElapsed;      // Wall clock counterpart is enqueuedAt
+
+    @ColumnInfo(defaultValue = "0")
+    private long firstAttemptAt;
+
+    @ColumnInfo(defaultValue = "0")
+    private long firstAttemptElapsed;
+
+    @ColumnInfo(defaultValue = "0")
+    private int attemptCount;           // Upload attempts started
+
+    private String tags;    // Comma-separated tags from filter rules, null if none
+
+    private String parsedFields; // JSON of extracted mobile-money fields, null if not recognised
+
+    private String dedupKey;    // See DedupKey; null for rows saved before deduplication
+
+    private byte[] payload;     // Upload body serialized at ingestion, see PayloadStore
+    private String payloadFile; // Side file name when the payload is too large to keep inline
+
     // Getters and setters
     public long getId() {
         return id;
@@ -24,7 +85,7 @@ public class MessageData {
     }
 
     public String getSender() {
-        return sender;
+        return sender != null ? sender : legacySender;
     }
 
     public void setSender(String sender) {
@@ -32,13 +93,45 @@ public class MessageData {
     }
 
     public String getReceiver() {
-        return receiver;
+        return receiver != null ? receiver : legacyReceiver;
     }
 
     public void setReceiver(String receiver) {
         this.receiver = receiver;
     }
 
+    public String getLegacySender() {
+        return legacySender;
+    }
+
+    public void setLegacySender(String legacySender) {
+        this.legacySender = legacySender;
+    }
+
+    public String getLegacyReceiver() {
+        return legacyReceiver;
+    }
+
+    public void setLegacyReceiver(String legacyReceiver) {
+        this.legacyReceiver = legacyReceiver;
+    }
+
+    public long getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(long senderId) {
+        this.senderId = senderId;
+    }
+
+    public long getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(long receiverId) {
+        this.receiverId = receiverId;
+    }
+
     public String getMessageBody() {
         return messageBody;
     }
@@ -62,4 +155,116 @@ public class MessageData {
     public void setSyncStatus(int syncStatus) {
         this.syncStatus = syncStatus;
     }
-}
\ No newline at end of file
+
+    public long getAckedAt() {
+        return ackedAt;
+    }
+
+    public void setAckedAt(long ackedAt) {
+        this.ackedAt = ackedAt;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public void setEnqueuedAt(long enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    public long getReceivedElapsed() {
+        return receivedElapsed;
+    }
+
+    public void setReceivedElapsed(long receivedElapsed) {
+        this.receivedElapsed = receivedElapsed;
+    }
+
+    public long getPersistedElapsed() {
+        return persistedElapsed;
+    }
+
+    public void setPersistedElapsed(long persistedElapsed) {
+        this.persistedElapsed = persistedElapsed;
+    }
+
+    public long getFirstAttemptAt() {
+        return firstAttemptAt;
+    }
+
+    public void setFirstAttemptAt(long firstAttemptAt) {
+        this.firstAttemptAt = firstAttemptAt;
+    }
+
+    public long getFirstAttemptElapsed() {
+        return firstAttemptElapsed;
+    }
+
+    public void setFirstAttemptElapsed(long firstAttemptElapsed) {
+        this.firstAttemptElapsed = firstAttemptElapsed;
+    }
+
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(int attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    public String getTags() {
+        return tags;
+    }
+
+    public void setTags(String tags) {
+        this.tags = tags;
+    }
+
+    public String getParsedFields() {
+        return parsedFields;
+    }
+
+    public void setParsedFields(String parsedFields) {
+        this.parsedFields = parsedFields;
+    }
+
+    public String getDedupKey() {
+        return dedupKey;
+    }
+
+    public void setDedupKey(String dedupKey) {
+        this.dedupKey = dedupKey;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public String getPayloadFile() {
+        return payloadFile;
+    }
+
+    public void setPayloadFile(String payloadFile) {
+        this.payloadFile = payloadFile;
+    }
+}
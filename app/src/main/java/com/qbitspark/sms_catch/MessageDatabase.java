@@ -6,21 +6,33 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 
-@Database(entities = {MessageData.class}, version = 2)  // Increment version for schema change
+// Increment version for schema change and add a Migration to OutboxMigrations
+@Database(entities = {MessageData.class, IngestLogEntry.class, SenderEntry.class, ReceiverEntry.class,
+        MessageFts.class}, version = 12, exportSchema = true)
 public abstract class MessageDatabase extends RoomDatabase {
     private static final String DATABASE_NAME = "message_db";
     private static MessageDatabase instance;
 
     public abstract MessageDao messageDao();
 
+    public abstract IngestLogDao ingestLogDao();
+
+    public abstract DictionaryDao dictionaryDao();
+
+    public abstract SearchDao searchDao();
+
     public static synchronized MessageDatabase getInstance(Context context) {
         if (instance == null) {
             instance = Room.databaseBuilder(
                             context.getApplicationContext(),
                             MessageDatabase.class,
                             DATABASE_NAME)
-                    .fallbackToDestructiveMigration()  // Add this for schema change
+                    .addMigrations(OutboxMigrations.ALL)
+                    .fallbackToDestructiveMigrationFrom(1)  // No install has v1 schema to preserve
                     .build();
+
+            // Older rows get their new columns filled in small chunks after the upgrade
+            OutboxBackfill.startIfNeeded(context.getApplicationContext());
         }
         return instance;
     }
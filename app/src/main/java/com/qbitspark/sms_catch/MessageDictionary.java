@@ -0,0 +1,186 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interns sender and receiver strings into the senders/receivers tables, so
+ * each message row stores two integers instead of repeating e.g. the long
+ * phone_carrier_SLOTn_iccid6 receiver identifier. A small LRU in front of
+ * each table means steady-state ingestion does no dictionary queries at all:
+ * a device sees a few dozen senders and one or two SIMs.
+ */
+public class MessageDictionary {
+    private static final int CACHE_SIZE = 512;
+
+    private static MessageDictionary instance;
+
+    private final DictionaryDao dao;
+    private final Table senders;
+    private final Table receivers;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Cached view of one dictionary table
+     */
+    private abstract class Table {
+        final LruCache<String, Long> idByValue = new LruCache<>(CACHE_SIZE);
+        final LruCache<Long, String> valueById = new LruCache<>(CACHE_SIZE);
+
+        abstract Long find(String value);
+
+        abstract String get(long id);
+
+        abstract long insert(String value);
+
+        long intern(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Long id = idByValue.get(value);
+            if (id != null) {
+                hits.incrementAndGet();
+                return id;
+            }
+            misses.incrementAndGet();
+            id = find(value);
+            if (id == null) {
+                long inserted = insert(value);
+                // -1: lost an insert race, the row exists now
+                id = inserted != -1 ? inserted : find(value);
+            }
+            idByValue.put(value, id);
+            valueById.put(id, value);
+            return id;
+        }
+
+        long lookupId(String value) {
+            Long id = idByValue.get(value);
+            if (id == null) {
+                id = find(value);
+                if (id == null) {
+                    return 0;
+                }
+                idByValue.put(value, id);
+                valueById.put(id, value);
+            }
+            return id;
+        }
+
+        String lookup(long id) {
+            if (id == 0) {
+                return null;
+            }
+            String value = valueById.get(id);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+            misses.incrementAndGet();
+            value = get(id);
+            if (value != null) {
+                valueById.put(id, value);
+                idByValue.put(value, id);
+            }
+            return value;
+        }
+    }
+
+    MessageDictionary(DictionaryDao dao) {
+        this.dao = dao;
+        this.senders = new Table() {
+            @Override
+            Long find(String value) {
+                return MessageDictionary.this.dao.findSenderId(value);
+            }
+
+            @Override
+            String get(long id) {
+                return MessageDictionary.this.dao.getSender(id);
+            }
+
+            @Override
+            long insert(String value) {
+                return MessageDictionary.this.dao.insertSender(new SenderEntry(value));
+            }
+        };
+        this.receivers = new Table() {
+            @Override
+            Long find(String value) {
+                return MessageDictionary.this.dao.findReceiverId(value);
+            }
+
+            @Override
+            String get(long id) {
+                return MessageDictionary.this.dao.getReceiver(id);
+            }
+
+            @Override
+            long insert(String value) {
+                return MessageDictionary.this.dao.insertReceiver(new ReceiverEntry(value));
+            }
+        };
+    }
+
+    public static synchronized MessageDictionary getInstance(Context context) {
+        if (instance == null) {
+            instance = new MessageDictionary(MessageDatabase.getInstance(context).dictionaryDao());
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the message's sender and receiver strings by dictionary IDs before
+     * it is written. The in-memory strings stay available through the getters.
+     * Must not run inside a transaction that can roll back, or the cache would
+     * hold IDs that were never committed.
+     */
+    public void intern(MessageData messageData) {
+        messageData.setSenderId(senders.intern(messageData.getSender()));
+        messageData.setReceiverId(receivers.intern(messageData.getReceiver()));
+        messageData.setLegacySender(null);
+        messageData.setLegacyReceiver(null);
+    }
+
+    /**
+     * Fill in sender and receiver strings of rows read from the database
+     */
+    public void resolve(List<MessageData> messages) {
+        for (MessageData message : messages) {
+            if (message.getSenderId() != 0) {
+                message.setSender(senders.lookup(message.getSenderId()));
+            }
+            if (message.getReceiverId() != 0) {
+                message.setReceiver(receivers.lookup(message.getReceiverId()));
+            }
+        }
+    }
+
+    /**
+     * ID for queries by sender, 0 if this sender was never stored
+     */
+    public long getSenderId(String sender) {
+        return sender == null ? 0 : senders.lookupId(sender);
+    }
+
+    public long getReceiverId(String receiver) {
+        return receiver == null ? 0 : receivers.lookupId(receiver);
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long m = misses.get();
+        return h + m > 0 ? (double) h / (h + m) : 0;
+    }
+
+    public String getStatsSummary() {
+        return String.format(Locale.US, "dictionary hits=%d misses=%d hitRate=%.3f senders=%d receivers=%d",
+                hits.get(), misses.get(), getHitRate(), senders.idByValue.size(), receivers.idByValue.size());
+    }
+}
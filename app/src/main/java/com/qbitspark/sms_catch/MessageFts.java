@@ -0,0 +1,59 @@
+package com.qbitspark.sms_catch;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index row for one message. The rowid is the message id.
+ *
+ * Standalone rather than external-content: messages no longer hold the sender
+ * string (see MessageDictionary), so the resolved sender is indexed here.
+ * Written in the same transaction as the message, see IngestionPipeline.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "messages_fts")
+public class MessageFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private long rowId;
+
+    private String sender;
+
+    private String messageBody;
+
+    public MessageFts() {
+    }
+
+    public MessageFts(long rowId, String sender, String messageBody) {
+        this.rowId = rowId;
+        this.sender = sender;
+        this.messageBody = messageBody;
+    }
+
+    public long getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(long rowId) {
+        this.rowId = rowId;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    public String getMessageBody() {
+        return messageBody;
+    }
+
+    public void setMessageBody(String messageBody) {
+        this.messageBody = messageBody;
+    }
+}
@@ -0,0 +1,146 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Locale;
+
+/**
+ * Keeps a short local history of acknowledged messages and bounds the database.
+ *
+ * Acked rows are removed oldest first, one day bucket per transaction, using the
+ * (syncStatus, ackedAt) index, so each delete frees a contiguous run of pages
+ * instead of scattering holes. Freed pages are returned to the file system
+ * with incremental vacuum. Pending messages are never removed.
+ */
+public class MessageRetention {
+    private static final String TAG = "MessageRetention";
+    private static final String PREF_RETENTION_DAYS = "RETENTION_DAYS";
+    private static final String PREF_MAX_DB_MB = "RETENTION_MAX_DB_MB";
+    private static final String PREF_LAST_REPORT = "RETENTION_LAST_REPORT";
+    private static final int DEFAULT_RETENTION_DAYS = 7;
+    private static final int DEFAULT_MAX_DB_MB = 64;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long INGEST_LOG_RETENTION_MILLIS = 30 * DAY_MILLIS;
+    private static final int VACUUM_PAGES_PER_RUN = 2000;
+
+    /**
+     * Outcome of one cleanup run
+     */
+    public static class Report {
+        public long sizeBeforeBytes;
+        public long sizeAfterBytes;
+        public int rowsDeleted;
+        public int buckets;
+        public int ingestLogDeleted;
+        public long durationMillis;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "db %.1fMB -> %.1fMB, deleted %d rows in %d buckets, "
+                            + "%d ingest log keys, %dms",
+                    sizeBeforeBytes / 1048576.0, sizeAfterBytes / 1048576.0, rowsDeleted, buckets,
+                    ingestLogDeleted, durationMillis);
+        }
+    }
+
+    /**
+     * Run one cleanup pass. Must be called off the main thread.
+     */
+    public static Report run(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE);
+        long retentionMillis = prefs.getInt(PREF_RETENTION_DAYS, DEFAULT_RETENTION_DAYS) * DAY_MILLIS;
+        long maxBytes = prefs.getInt(PREF_MAX_DB_MB, DEFAULT_MAX_DB_MB) * 1024L * 1024L;
+
+        MessageDatabase database = MessageDatabase.getInstance(context);
+        MessageDao dao = database.messageDao();
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+
+        Report report = new Report();
+        long start = System.currentTimeMillis();
+        long now = start;
+        report.sizeBeforeBytes = getUsedBytes(db);
+
+        // Age bound: drop whole day buckets past the retention window
+        long cutoff = now - retentionMillis;
+        Long oldest = dao.getOldestAckedAt();
+        while (oldest != null && oldest < cutoff) {
+            long bucketEnd = Math.min(bucketStart(oldest) + DAY_MILLIS, cutoff);
+            report.rowsDeleted += deleteAckedBefore(database, bucketEnd);
+            report.buckets++;
+            oldest = dao.getOldestAckedAt();
+        }
+
+        // Size bound: keep dropping the oldest remaining acked day until under the limit
+        while (oldest != null && getUsedBytes(db) > maxBytes) {
+            report.rowsDeleted += deleteAckedBefore(database, bucketStart(oldest) + DAY_MILLIS);
+            report.buckets++;
+            oldest = dao.getOldestAckedAt();
+        }
+        if (getUsedBytes(db) > maxBytes) {
+            Log.w(TAG, "Database over " + (maxBytes >> 20) + "MB with only pending messages left");
+        }
+
+        report.ingestLogDeleted = database.ingestLogDao().deleteOlderThan(now - INGEST_LOG_RETENTION_MILLIS);
+
+        compact(db);
+
+        report.sizeAfterBytes = getUsedBytes(db);
+        report.durationMillis = System.currentTimeMillis() - start;
+        prefs.edit().putString(PREF_LAST_REPORT, report.toString()).apply();
+        Log.i(TAG, "Retention: " + report);
+        return report;
+    }
+
+    public static String getLastReport(Context context) {
+        return context.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE).getString(PREF_LAST_REPORT, null);
+    }
+
+    // One transaction per bucket, search index rows go with their messages
+    private static int deleteAckedBefore(MessageDatabase database, long before) {
+        return database.runInTransaction(() -> {
+            database.searchDao().deleteAckedBefore(before);
+            return database.messageDao().deleteAckedBefore(before);
+        });
+    }
+
+    private static long bucketStart(long time) {
+        return time - time % DAY_MILLIS;
+    }
+
+    /**
+     * Return free pages to the file system. The first run switches the file to
+     * incremental auto-vacuum, which needs one full VACUUM; the worker only
+     * runs while charging and idle, so that one-time cost is acceptable.
+     */
+    private static void compact(SupportSQLiteDatabase db) {
+        if (queryLong(db, "PRAGMA auto_vacuum") != 2) {
+            Log.i(TAG, "Enabling incremental auto-vacuum");
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            return;
+        }
+        // incremental_vacuum returns a row per step, the cursor has to be drained
+        try (Cursor cursor = db.query("PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_RUN + ")")) {
+            while (cursor.moveToNext()) {
+                // Each step frees one page
+            }
+        }
+    }
+
+    // In-use bytes: pages minus free-list pages
+    private static long getUsedBytes(SupportSQLiteDatabase db) {
+        long pageSize = queryLong(db, "PRAGMA page_size");
+        return (queryLong(db, "PRAGMA page_count") - queryLong(db, "PRAGMA freelist_count")) * pageSize;
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Full-text search over captured messages, in keyset pages newest first.
+ * Must be called off the main thread.
+ */
+public class MessageSearch {
+    public static final int PAGE_SIZE = 30;
+    private static final int MAX_TERMS = 8;
+
+    /**
+     * One page of results. Pass nextBeforeId to get the following page.
+     */
+    public static class Page {
+        public final List<MessageData> messages;
+        public final long nextBeforeId;
+        public final boolean hasMore;
+
+        Page(List<MessageData> messages, long nextBeforeId, boolean hasMore) {
+            this.messages = messages;
+            this.nextBeforeId = nextBeforeId;
+            this.hasMore = hasMore;
+        }
+    }
+
+    public static Page firstPage(Context context, String input) {
+        return search(context, input, Long.MAX_VALUE);
+    }
+
+    public static Page search(Context context, String input, long beforeId) {
+        String query = toFtsQuery(input);
+        if (query == null) {
+            return new Page(Collections.<MessageData>emptyList(), beforeId, false);
+        }
+        List<MessageData> messages = MessageDatabase.getInstance(context).searchDao()
+                .search(query, beforeId, PAGE_SIZE);
+        MessageDictionary.getInstance(context).resolve(messages);
+        long next = messages.isEmpty() ? beforeId : messages.get(messages.size() - 1).getId();
+        return new Page(messages, next, messages.size() == PAGE_SIZE);
+    }
+
+    /**
+     * Turn free text into an FTS4 MATCH expression: every word must match,
+     * the last part of each word as a prefix (search as you type). A word the
+     * tokenizer would split, like "M-PESA" or "15,000", becomes a phrase.
+     * Operators and quotes typed by the user are not passed through.
+     * Returns null if the input has nothing searchable.
+     */
+    static String toFtsQuery(String input) {
+        if (input == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>();
+        for (String word : input.trim().split("\\s+")) {
+            List<String> tokens = tokenize(word);
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            StringBuilder term = new StringBuilder();
+            if (tokens.size() > 1) {
+                term.append('"');
+            }
+            for (int i = 0; i < tokens.size(); i++) {
+                if (i > 0) {
+                    term.append(' ');
+                }
+                term.append(tokens.get(i));
+            }
+            term.append('*');
+            if (tokens.size() > 1) {
+                term.append('"');
+            }
+            terms.add(term.toString());
+            if (terms.size() == MAX_TERMS) {
+                break;
+            }
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String term : terms) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(term);
+        }
+        return query.toString();
+    }
+
+    // Letter/digit runs, lower-cased so AND/OR/NOT/NEAR are never read as operators
+    private static List<String> tokenize(String word) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= word.length(); i++) {
+            boolean inToken = i < word.length() && Character.isLetterOrDigit(word.charAt(i));
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                tokens.add(word.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,337 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins concatenated SMS whose parts arrive in separate SMS_RECEIVED broadcasts.
+ * getInstance, addPart, flushExpired and release do file I/O: call them off the main thread.
+ * Parts are held in memory keyed by (sender, concat reference, subscription)
+ * and every pending group is spilled to a small file, so a process death
+ * between broadcasts does not lose the parts already received.
+ *
+ * A group is emitted once all parts are present, or with whatever arrived
+ * when TIMEOUT_MILLIS has passed since its first part. An emitted group's
+ * spill file is kept, renamed to a handoff file, until the caller has stored
+ * the message and calls release; handoff files left by a process death are
+ * emitted again on the next start, and the outbox drops any already stored.
+ */
+public class MultipartReassembler {
+    private static final String TAG = "MultipartReassembler";
+    private static final String SPILL_DIR = "multipart";
+    private static final int SPILL_VERSION = 1;
+    private static final String PENDING_SUFFIX = ".part";
+    private static final String HANDOFF_SUFFIX = ".done";
+
+    public static final long TIMEOUT_MILLIS = 5 * 60 * 1000L;
+
+    private static MultipartReassembler instance;
+
+    private final File spillDir;
+    private final Map<String, Group> pending = new HashMap<>();
+    private final List<Group> superseded = new ArrayList<>();  // Emitted on the next flush
+
+    private long completedCount;
+    private long timedOutCount;
+    private long partsMerged;
+
+    /**
+     * A message ready for the ingestion pipeline
+     */
+    public static class Assembled {
+        public String sender;
+        public String receiver;
+        public String messageBody;
+        public long timestamp;
+        public boolean complete;    // False if emitted on timeout with parts missing
+        public String handoffFile;  // Pass to release once stored, null if nothing was spilled
+    }
+
+    private static class Group {
+        String key;
+        String sender;
+        String receiver;
+        int subscriptionId;
+        int reference;
+        long firstSeenAt;
+        long timestamp;             // SMSC timestamp of the lowest part seen
+        int lowestSequence = Integer.MAX_VALUE;
+        String[] parts;             // Indexed by sequence - 1
+        int received;
+        String handoffFile;
+    }
+
+    private MultipartReassembler(File spillDir) {
+        this.spillDir = spillDir;
+        loadSpilled();
+    }
+
+    public static synchronized MultipartReassembler getInstance(Context context) {
+        if (instance == null) {
+            instance = new MultipartReassembler(new File(context.getApplicationContext().getFilesDir(), SPILL_DIR));
+        }
+        return instance;
+    }
+
+    /**
+     * Add one part. Returns the whole message if this part completed it, otherwise null.
+     */
+    public synchronized Assembled addPart(String sender, String receiver, int subscriptionId,
+                                          ConcatHeaderParser.ConcatInfo info, String body, long timestamp) {
+        String key = keyOf(sender, info.reference, subscriptionId);
+        Group group = pending.get(key);
+        if (group != null && group.parts.length != info.totalParts) {
+            // Reference reused by the SMSC for a different message
+            AppLog.w(TAG, "Part count changed for %s, earlier parts will be emitted as incomplete", key);
+            pending.remove(key);
+            handOff(group);
+            superseded.add(group);
+            group = null;
+        }
+        if (group == null) {
+            group = new Group();
+            group.key = key;
+            group.sender = sender;
+            group.receiver = receiver;
+            group.subscriptionId = subscriptionId;
+            group.reference = info.reference;
+            group.firstSeenAt = System.currentTimeMillis();
+            group.parts = new String[info.totalParts];
+            pending.put(key, group);
+        }
+
+        int index = info.sequence - 1;
+        if (group.parts[index] != null) {
+            AppLog.d(TAG, "Ignoring repeated part %d/%d of %s", info.sequence, info.totalParts, key);
+            return null;
+        }
+        group.parts[index] = body == null ? "" : body;
+        group.received++;
+        partsMerged++;
+        if (info.sequence < group.lowestSequence) {
+            group.lowestSequence = info.sequence;
+            group.timestamp = timestamp;
+        }
+
+        if (group.received == group.parts.length) {
+            pending.remove(key);
+            // Kept until the message is stored, see release
+            if (spill(group)) {
+                handOff(group);
+            } else {
+                // Never leave the partial copy behind to be emitted again
+                new File(spillDir, group.key + PENDING_SUFFIX).delete();
+            }
+            completedCount++;
+            AppLog.d(TAG, "Reassembled %d parts from %s", group.parts.length, sender);
+            return toAssembled(group);
+        }
+
+        spill(group);
+        return null;
+    }
+
+    /**
+     * Remove and return groups whose first part is older than TIMEOUT_MILLIS
+     */
+    public synchronized List<Assembled> flushExpired(long now) {
+        List<Assembled> expired = new ArrayList<>();
+        for (Group group : superseded) {
+            timedOutCount++;
+            expired.add(toAssembled(group));
+        }
+        superseded.clear();
+
+        Iterator<Group> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            Group group = iterator.next();
+            if (now - group.firstSeenAt >= TIMEOUT_MILLIS) {
+                iterator.remove();
+                handOff(group);
+                timedOutCount++;
+                AppLog.w(TAG, "Timed out waiting for %d of %d parts from %s",
+                        group.parts.length - group.received, group.parts.length, group.sender);
+                expired.add(toAssembled(group));
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Delay until the oldest pending group expires, or -1 if nothing is pending
+     */
+    public synchronized long getNextExpiryDelay(long now) {
+        long next = superseded.isEmpty() ? -1 : 0;
+        for (Group group : pending.values()) {
+            long delay = Math.max(0, group.firstSeenAt + TIMEOUT_MILLIS - now);
+            if (next < 0 || delay < next) {
+                next = delay;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * The message emitted with this handoff file is stored (or was dropped on
+     * purpose), its parts are no longer needed
+     */
+    public void release(String handoffFile) {
+        if (handoffFile == null) {
+            return;
+        }
+        File file = new File(spillDir, handoffFile);
+        if (file.exists() && !file.delete()) {
+            AppLog.w(TAG, "Could not delete %s", file);
+        }
+    }
+
+    public synchronized String getStatsSummary() {
+        return "pending=" + pending.size() + " completed=" + completedCount
+                + " timedOut=" + timedOutCount + " partsMerged=" + partsMerged;
+    }
+
+    private static Assembled toAssembled(Group group) {
+        StringBuilder body = new StringBuilder();
+        for (String part : group.parts) {
+            if (part != null) {
+                body.append(part);
+            }
+        }
+        Assembled assembled = new Assembled();
+        assembled.sender = group.sender;
+        assembled.receiver = group.receiver;
+        assembled.messageBody = body.toString();
+        assembled.timestamp = group.timestamp;
+        assembled.complete = group.received == group.parts.length;
+        assembled.handoffFile = group.handoffFile;
+        return assembled;
+    }
+
+    private static String keyOf(String sender, int reference, int subscriptionId) {
+        String normalized = sender == null ? "" : PriorityClassifier.normalizeSender(sender);
+        return normalized + "_" + reference + "_" + subscriptionId;
+    }
+
+    // Spill file layout: version, group fields, then (sequence, body) for each part received
+    private boolean spill(Group group) {
+        if (!spillDir.exists() && !spillDir.mkdirs()) {
+            AppLog.e(TAG, "Could not create " + spillDir);
+            return false;
+        }
+        File target = new File(spillDir, group.key + PENDING_SUFFIX);
+        File temp = new File(spillDir, group.key + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SPILL_VERSION);
+            out.writeUTF(group.sender == null ? "" : group.sender);
+            out.writeBoolean(group.receiver != null);
+            if (group.receiver != null) {
+                out.writeUTF(group.receiver);
+            }
+            out.writeInt(group.subscriptionId);
+            out.writeInt(group.reference);
+            out.writeLong(group.firstSeenAt);
+            out.writeLong(group.timestamp);
+            out.writeInt(group.lowestSequence);
+            out.writeInt(group.parts.length);
+            out.writeInt(group.received);
+            for (int i = 0; i < group.parts.length; i++) {
+                if (group.parts[i] != null) {
+                    out.writeInt(i + 1);
+                    out.writeUTF(group.parts[i]);
+                }
+            }
+            out.flush();
+            // On disk before the rename, or a power loss can leave an empty file under the final name
+            file.getFD().sync();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Failed to spill %s", group.key, e);
+            return false;
+        }
+        if (!temp.renameTo(target)) {
+            AppLog.e(TAG, "Failed to replace " + target);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rename the spill file to a name of its own, so a new group reusing the
+     * key cannot overwrite it before the emitted message is stored
+     */
+    private void handOff(Group group) {
+        File file = new File(spillDir, group.key + PENDING_SUFFIX);
+        if (!file.exists()) {
+            return;
+        }
+        String handoffFile = group.key + "_" + group.firstSeenAt + HANDOFF_SUFFIX;
+        if (file.renameTo(new File(spillDir, handoffFile))) {
+            group.handoffFile = handoffFile;
+        } else {
+            AppLog.w(TAG, "Could not hand off %s", file);
+        }
+    }
+
+    private void loadSpilled() {
+        File[] files = spillDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            boolean handedOff = file.getName().endsWith(HANDOFF_SUFFIX);
+            if (!handedOff && !file.getName().endsWith(PENDING_SUFFIX)) {
+                // Leftover temp file from an interrupted spill
+                file.delete();
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != SPILL_VERSION) {
+                    file.delete();
+                    continue;
+                }
+                Group group = new Group();
+                group.sender = in.readUTF();
+                group.receiver = in.readBoolean() ? in.readUTF() : null;
+                group.subscriptionId = in.readInt();
+                group.reference = in.readInt();
+                group.firstSeenAt = in.readLong();
+                group.timestamp = in.readLong();
+                group.lowestSequence = in.readInt();
+                group.parts = new String[in.readInt()];
+                group.received = in.readInt();
+                for (int i = 0; i < group.received; i++) {
+                    int sequence = in.readInt();
+                    group.parts[sequence - 1] = in.readUTF();
+                }
+                group.key = keyOf(group.sender, group.reference, group.subscriptionId);
+                if (handedOff) {
+                    // Emitted before the process died, maybe never stored
+                    group.handoffFile = file.getName();
+                    superseded.add(group);
+                } else {
+                    pending.put(group.key, group);
+                }
+            } catch (IOException | RuntimeException e) {
+                AppLog.e(TAG, "Dropping unreadable spill file %s", file.getName(), e);
+                file.delete();
+            }
+        }
+        if (!pending.isEmpty() || !superseded.isEmpty()) {
+            AppLog.i(TAG, "Restored %d incomplete and %d unsaved multipart messages", pending.size(),
+                    superseded.size());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.List;
+
+/**
+ * Emits multipart messages whose remaining parts never arrived.
+ * Runs the ingestion pipeline directly, since a foreground service
+ * cannot be started from the background on Android 12+.
+ */
+public class MultipartTimeoutWorker extends Worker {
+    private static final String TAG = "MultipartTimeoutWorker";
+
+    public MultipartTimeoutWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        MultipartReassembler reassembler = MultipartReassembler.getInstance(context);
+        long now = System.currentTimeMillis();
+
+        List<MultipartReassembler.Assembled> expired = reassembler.flushExpired(now);
+        boolean sendNow = false;
+        for (MultipartReassembler.Assembled assembled : expired) {
+            MessageData messageData = new MessageData();
+            messageData.setSender(assembled.sender);
+            messageData.setReceiver(assembled.receiver);
+            messageData.setMessageBody(assembled.messageBody);
+            messageData.setTimestamp(assembled.timestamp);
+
+            boolean stored = IngestionPipeline.process(context, messageData);
+            // Stored, dropped by a rule or already in the outbox: the spilled parts are done with
+            reassembler.release(assembled.handoffFile);
+            if (stored) {
+                DeliveryScheduler.Decision decision = DeliveryScheduler.getInstance(context)
+                        .onMessagePersisted(messageData);
+                sendNow |= decision == DeliveryScheduler.Decision.SEND_NOW;
+            }
+        }
+        if (sendNow) {
+            // SyncWorker applies the kill switch before uploading
+            WorkManagerHelper.triggerImmediateSync(context);
+        }
+
+        long nextDelay = reassembler.getNextExpiryDelay(System.currentTimeMillis());
+        if (nextDelay >= 0) {
+            WorkManagerHelper.rescheduleMultipartTimeout(context, nextDelay);
+        }
+
+        if (AppLog.DEBUG) {
+            // The summary is built under the reassembler's lock
+            AppLog.d(TAG, "Emitted %d incomplete messages, %s", expired.size(), reassembler.getStatsSummary());
+        }
+        return Result.success();
+    }
+}
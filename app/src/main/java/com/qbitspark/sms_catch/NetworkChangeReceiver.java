@@ -26,8 +26,8 @@ public class NetworkChangeReceiver {
             networkCallback = new ConnectivityManager.NetworkCallback() {
                 @Override
                 public void onAvailable(@NonNull Network network) {
-                    Log.i(TAG, "Network available, triggering immediate sync");
-                    WorkManagerHelper.triggerImmediateSync(context);
+                    Log.i(TAG, "Network available, requesting sync");
+                    DeliveryScheduler.getInstance(context).requestFlush();
                 }
 
                 @Override
@@ -39,8 +39,8 @@ public class NetworkChangeReceiver {
                 public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities networkCapabilities) {
                     Log.d(TAG,"Network Capabilities Changed");
                     if (networkCapabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
-                        Log.i(TAG, "Network has internet capabilities, triggering immediate sync");
-                        WorkManagerHelper.triggerImmediateSync(context);
+                        Log.i(TAG, "Network has internet capabilities, requesting sync");
+                        DeliveryScheduler.getInstance(context).requestFlush();
                     }
                 }
             };
@@ -0,0 +1,175 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills columns added by OutboxMigrations for rows written by older versions:
+ * lane, enqueue time, dedup key, ingest log entry and dictionary IDs. Works through the
+ * table in keyset order, CHUNK_SIZE rows per transaction with a short pause
+ * between chunks, so new SMS inserts are never blocked for long.
+ *
+ * Rows needing a backfill are those with a NULL dedupKey or an inline
+ * sender/receiver string, neither of which IngestionPipeline writes. A row
+ * whose computed dedup key is already held by another row is a copy stored
+ * twice before deduplication existed; it is deleted in the same chunk, so
+ * every row leaves the backfill set and the copy is not uploaded again.
+ * Rows missing from the search index are handled by indexForSearch.
+ */
+public class OutboxBackfill {
+    private static final String TAG = "OutboxBackfill";
+    private static final int CHUNK_SIZE = 500;
+    private static final long PAUSE_BETWEEN_CHUNKS_MILLIS = 50;
+
+    private static boolean started;
+
+    /**
+     * Start a background backfill once per process, if any row needs one
+     */
+    public static synchronized void startIfNeeded(final Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+        new Thread(() -> {
+            MessageDatabase database = MessageDatabase.getInstance(context);
+            run(database);
+            indexForSearch(database);
+        }, "OutboxBackfill").start();
+    }
+
+    /**
+     * Backfill every pending row. Returns the number of rows updated; duplicate
+     * copies deleted are not counted.
+     */
+    static int run(final MessageDatabase database) {
+        // Own dictionary cache: interning happens inside chunk transactions, and a
+        // rolled-back chunk must not leave uncommitted IDs in the shared cache
+        final MessageDictionary dictionary = new MessageDictionary(database.dictionaryDao());
+        long start = System.currentTimeMillis();
+        int updated = 0;
+        int duplicates = 0;
+        int chunks = 0;
+        long lastId = 0;
+
+        while (true) {
+            final long afterId = lastId;
+            long[] result = database.runInTransaction(() -> backfillChunk(database, dictionary, afterId));
+            long rows = result[0];
+            updated += (int) result[1];
+            duplicates += (int) result[3];
+            if (rows == 0) {
+                break;
+            }
+            chunks++;
+            lastId = result[2];
+
+            try {
+                Thread.sleep(PAUSE_BETWEEN_CHUNKS_MILLIS);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Backfill interrupted after " + updated + " rows");
+                return updated;
+            }
+        }
+
+        if (chunks > 0) {
+            Log.i(TAG, "Backfilled " + updated + " rows in " + chunks + " chunks, removed " + duplicates
+                    + " duplicate copies, " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return updated;
+    }
+
+    /**
+     * Add rows written before the full-text index existed (v11) to it. Every
+     * newer message is indexed on insert, so all unindexed rows have ids below
+     * the lowest indexed one; they are indexed downwards from there, one id
+     * range per transaction. Returns the number of rows indexed.
+     */
+    static int indexForSearch(final MessageDatabase database) {
+        final SearchDao dao = database.searchDao();
+        long start = System.currentTimeMillis();
+        int indexed = 0;
+
+        while (true) {
+            Long firstIndexed = dao.getFirstIndexedId();
+            Long top = dao.getLastMessageIdBefore(firstIndexed != null ? firstIndexed : Long.MAX_VALUE);
+            if (top == null) {
+                break;
+            }
+            final long upTo = top;
+            indexed += database.runInTransaction(() -> {
+                // Resolved sender, or the inline string on rows the dictionary pass has not reached
+                try (SupportSQLiteStatement statement = database.compileStatement(
+                        "INSERT INTO messages_fts (rowid, sender, messageBody) "
+                                + "SELECT m.id, COALESCE(s.value, m.sender), m.messageBody "
+                                + "FROM messages m LEFT JOIN senders s ON s.id = m.senderId "
+                                + "WHERE m.id > ? AND m.id <= ?")) {
+                    statement.bindLong(1, upTo - CHUNK_SIZE);
+                    statement.bindLong(2, upTo);
+                    return statement.executeUpdateDelete();
+                }
+            });
+
+            try {
+                Thread.sleep(PAUSE_BETWEEN_CHUNKS_MILLIS);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Search indexing interrupted after " + indexed + " rows");
+                return indexed;
+            }
+        }
+
+        if (indexed > 0) {
+            Log.i(TAG, "Indexed " + indexed + " rows for search, "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        return indexed;
+    }
+
+    // Returns {rows read, rows updated, last id, duplicate copies deleted}
+    private static long[] backfillChunk(MessageDatabase database, MessageDictionary dictionary, long afterId) {
+        List<MessageData> rows = database.messageDao().getRowsNeedingBackfill(afterId, CHUNK_SIZE);
+        if (rows.isEmpty()) {
+            return new long[]{0, 0, afterId, 0};
+        }
+
+        long now = System.currentTimeMillis();
+        List<IngestLogEntry> logEntries = new ArrayList<>(rows.size());
+        for (MessageData row : rows) {
+            if (row.getEnqueuedAt() == 0) {
+                // Saved before lanes existed (v2)
+                row.setPriority(PriorityClassifier.classify(row.getSender(), row.getMessageBody()));
+                row.setEnqueuedAt(row.getTimestamp() > 0 ? row.getTimestamp() : now);
+            }
+            if (row.getDedupKey() == null) {
+                row.setDedupKey(DedupKey.compute(row.getSender(), row.getTimestamp(),
+                        row.getMessageBody(), row.getReceiver()));
+                logEntries.add(new IngestLogEntry(row.getDedupKey(), now));
+            }
+            // Strings move to the dictionary, the row keeps two integers
+            dictionary.intern(row);
+        }
+
+        int updated = 0;
+        int duplicates = 0;
+        for (MessageData row : rows) {
+            if (database.messageDao().updateMessage(row) == 1) {
+                updated++;
+                continue;
+            }
+            // Another row holds this dedup key: the same SMS stored twice before v6. Left
+            // alone it would keep its NULL key, be read again on every start and be
+            // uploaded a second time.
+            database.searchDao().delete(row.getId());
+            database.messageDao().deleteMessage(row.getId());
+            duplicates++;
+        }
+        database.ingestLogDao().insertAll(logEntries);
+
+        return new long[]{rows.size(), updated, rows.get(rows.size() - 1).getId(), duplicates};
+    }
+}
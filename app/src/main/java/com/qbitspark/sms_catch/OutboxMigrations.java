@@ -0,0 +1,134 @@
+package com.qbitspark.sms_catch;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Schema migrations for MessageDatabase. Each one is DDL only
+ * (ADD COLUMN is a metadata change in SQLite), so the upgrade transaction
+ * stays short on large outboxes. Row data for older rows is filled in
+ * afterwards by OutboxBackfill in small chunks.
+ *
+ * SQL must match what Room generates for the entities exactly,
+ * Room validates the result on open.
+ */
+public class OutboxMigrations {
+
+    // v3: outbox lanes and enqueue time
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `priority` INTEGER NOT NULL DEFAULT 1");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `enqueuedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_syncStatus_priority_id` "
+                    + "ON `messages` (`syncStatus`, `priority`, `id`)");
+        }
+    };
+
+    // v4: filter rule tags
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `tags` TEXT");
+        }
+    };
+
+    // v5: extracted mobile-money fields
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `parsedFields` TEXT");
+        }
+    };
+
+    // v6: dedup key. Existing rows keep NULL, which the unique index allows any number of.
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `dedupKey` TEXT");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_messages_dedupKey` ON `messages` (`dedupKey`)");
+        }
+    };
+
+    // v7: ingest log of dedup keys
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `ingest_log` (`dedupKey` TEXT NOT NULL, "
+                    + "`ingestedAt` INTEGER NOT NULL, PRIMARY KEY(`dedupKey`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_ingest_log_ingestedAt` ON `ingest_log` (`ingestedAt`)");
+        }
+    };
+
+    // v8: pre-serialized payloads. Old rows keep NULL and are serialized at send time.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `payload` BLOB");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `payloadFile` TEXT");
+        }
+    };
+
+    // v9: acked rows are kept for a retention window
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `ackedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_syncStatus_ackedAt` "
+                    + "ON `messages` (`syncStatus`, `ackedAt`)");
+        }
+    };
+
+    // v10: sender/receiver dictionaries. Old rows keep their strings until OutboxBackfill converts them.
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `senders` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`value` TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_senders_value` ON `senders` (`value`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `receivers` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`value` TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_receivers_value` ON `receivers` (`value`)");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `senderId` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `receiverId` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_senderId` ON `messages` (`senderId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_receiverId` ON `messages` (`receiverId`)");
+        }
+    };
+
+    // v11: full-text index. Existing rows are indexed by OutboxBackfill.
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `messages_fts` "
+                    + "USING FTS4(`sender` TEXT, `messageBody` TEXT, tokenize=unicode61)");
+        }
+    };
+
+    // v12: per-message delivery stage times and attempt count. Older rows keep 0 (unknown).
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `receivedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `receivedElapsed` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `persistedElapsed` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `firstAttemptAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `firstAttemptElapsed` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `messages` ADD COLUMN `attemptCount` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration[] ALL = {
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11,
+            MIGRATION_11_12
+    };
+}
@@ -0,0 +1,55 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * The outbox as the pipeline sees it: append on receive, read pending
+ * messages in order per lane, ack what the server accepted.
+ *
+ * RoomOutboxStore is the production backend. JournalOutboxStore is an
+ * append-only memory-mapped log with the same contract, see
+ * OutboxStoreBenchmark for how the two compare.
+ */
+public interface OutboxStore {
+
+    /**
+     * Backend used by the app
+     */
+    static OutboxStore getDefault(Context context) {
+        return RoomOutboxStore.getInstance(context);
+    }
+
+    /**
+     * Durably store a new message and set its id.
+     * Returns the id, or -1 if a message with the same dedup key was already stored.
+     */
+    long append(MessageData messageData);
+
+    /**
+     * True if a message with this dedup key has been stored
+     */
+    boolean contains(String dedupKey);
+
+    /**
+     * Up to limit pending messages of one lane with id > afterId, in id order,
+     * sender and receiver filled in
+     */
+    List<MessageData> readPending(int lane, long afterId, int limit);
+
+    /**
+     * Depth and oldest enqueue time of every non-empty lane
+     */
+    List<LaneDepth> getLaneDepths();
+
+    /**
+     * Count an upload attempt for stored messages, keeping the time of the first one
+     */
+    void recordAttempts(long[] ids, long attemptAt, long attemptElapsed);
+
+    /**
+     * Mark messages as accepted by the server. Unknown or already acked ids are ignored.
+     */
+    void ack(long[] ids, long ackedAt);
+}
@@ -0,0 +1,87 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+/**
+ * Keeps the upload body serialized at ingestion, so every retry sends the
+ * same bytes without rebuilding JSON. Small payloads live in the
+ * messages.payload BLOB; large ones go to a side file so page queries
+ * in SyncWorker stay well inside the CursorWindow limit. Every attach writes
+ * a file of its own, so a later copy of a stored message never touches the
+ * file the stored row points at.
+ */
+public class PayloadStore {
+    private static final String TAG = "PayloadStore";
+    private static final String PAYLOAD_DIR = "payloads";
+    private static final int INLINE_LIMIT_BYTES = 16 * 1024;
+
+    /**
+     * Store the payload on the message, inline or as a new side file
+     */
+    public static void attach(Context context, MessageData messageData, byte[] payload) {
+        if (payload.length <= INLINE_LIMIT_BYTES) {
+            messageData.setPayload(payload);
+            return;
+        }
+
+        File dir = new File(context.getFilesDir(), PAYLOAD_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            AppLog.e(TAG, "Could not create %s, storing payload inline", dir);
+            messageData.setPayload(payload);
+            return;
+        }
+        // Not the dedup key alone: a duplicate would overwrite, then discard, the stored row's file
+        File file = new File(dir, messageData.getDedupKey() + "_" + UUID.randomUUID() + ".json");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(payload);
+            out.getFD().sync();     // Must be durable before the row that points at it
+            messageData.setPayloadFile(file.getName());
+        } catch (IOException e) {
+            AppLog.e(TAG, "Failed to write %s, storing payload inline", file, e);
+            messageData.setPayload(payload);
+        }
+    }
+
+    /**
+     * Request body streaming the stored bytes, or null if none were stored (rows saved before v8)
+     */
+    public static RequestBody toRequestBody(Context context, MessageData messageData, MediaType mediaType) {
+        if (messageData.getPayload() != null) {
+            return RequestBody.create(messageData.getPayload(), mediaType);
+        }
+        if (messageData.getPayloadFile() != null) {
+            File file = new File(new File(context.getFilesDir(), PAYLOAD_DIR), messageData.getPayloadFile());
+            if (file.exists()) {
+                return RequestBody.create(file, mediaType);
+            }
+            AppLog.w(TAG, "Missing payload file %s for message %d", file.getName(), messageData.getId());
+        }
+        return null;
+    }
+
+    /**
+     * Remove the side file, if any, once the message is acknowledged, or when
+     * the attach that created it did not lead to a stored row
+     */
+    public static void discard(Context context, MessageData messageData) {
+        discardFile(context, messageData.getPayloadFile());
+    }
+
+    public static void discardFile(Context context, String payloadFile) {
+        if (payloadFile == null) {
+            return;
+        }
+        File file = new File(new File(context.getFilesDir(), PAYLOAD_DIR), payloadFile);
+        if (file.exists() && !file.delete()) {
+            AppLog.w(TAG, "Could not delete %s", file);
+        }
+    }
+}
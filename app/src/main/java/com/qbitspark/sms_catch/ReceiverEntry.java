@@ -0,0 +1,44 @@
+package com.qbitspark.sms_catch;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Dictionary row: each distinct receiver string is stored once and
+ * referenced from messages.receiverId, see MessageDictionary
+ */
+@Entity(tableName = "receivers",
+        indices = {@Index(value = {"value"}, unique = true)})
+public class ReceiverEntry {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @NonNull
+    private String value = "";
+
+    public ReceiverEntry() {
+    }
+
+    public ReceiverEntry(@NonNull String value) {
+        this.value = value;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(@NonNull String value) {
+        this.value = value;
+    }
+}
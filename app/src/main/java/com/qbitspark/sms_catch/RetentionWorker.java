@@ -0,0 +1,24 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Runs MessageRetention while the device is charging and idle
+ */
+public class RetentionWorker extends Worker {
+
+    public RetentionWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        MessageRetention.run(getApplicationContext());
+        return Result.success();
+    }
+}
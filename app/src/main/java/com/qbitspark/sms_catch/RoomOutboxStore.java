@@ -0,0 +1,81 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * Outbox in the messages table. Appends also record the dedup key in
+ * ingest_log and index the message for search, in one transaction.
+ */
+public class RoomOutboxStore implements OutboxStore {
+    private static RoomOutboxStore instance;
+
+    private final MessageDatabase database;
+    private final MessageDictionary dictionary;
+
+    RoomOutboxStore(MessageDatabase database, MessageDictionary dictionary) {
+        this.database = database;
+        this.dictionary = dictionary;
+    }
+
+    public static synchronized RoomOutboxStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new RoomOutboxStore(MessageDatabase.getInstance(context),
+                    MessageDictionary.getInstance(context));
+        }
+        return instance;
+    }
+
+    @Override
+    public long append(final MessageData messageData) {
+        // Outside the transaction below, see MessageDictionary.intern
+        dictionary.intern(messageData);
+        long id = database.runInTransaction(() -> {
+            // Ignoring messages already taken earlier, even if since uploaded
+            if (database.ingestLogDao().insert(
+                    new IngestLogEntry(messageData.getDedupKey(), messageData.getEnqueuedAt())) == -1) {
+                return -1L;
+            }
+            long rowId = database.messageDao().insert(messageData);
+            if (rowId != -1) {
+                // Search index row, uses the sender string before it was interned
+                database.searchDao().insert(new MessageFts(rowId, messageData.getSender(),
+                        messageData.getMessageBody()));
+            }
+            return rowId;
+        });
+        if (id != -1) {
+            messageData.setId(id);
+        }
+        return id;
+    }
+
+    // Includes messages already acked, within the ingest log retention
+    @Override
+    public boolean contains(String dedupKey) {
+        return database.ingestLogDao().count(dedupKey) > 0;
+    }
+
+    @Override
+    public List<MessageData> readPending(int lane, long afterId, int limit) {
+        List<MessageData> messages = database.messageDao().getUnsyncedMessagesInLane(lane, afterId, limit);
+        dictionary.resolve(messages);
+        return messages;
+    }
+
+    @Override
+    public List<LaneDepth> getLaneDepths() {
+        return database.messageDao().getLaneDepths();
+    }
+
+    @Override
+    public void recordAttempts(long[] ids, long attemptAt, long attemptElapsed) {
+        database.messageDao().recordAttempts(ids, attemptAt, attemptElapsed);
+    }
+
+    @Override
+    public void ack(long[] ids, long ackedAt) {
+        database.messageDao().markAcked(ids, ackedAt);
+    }
+}
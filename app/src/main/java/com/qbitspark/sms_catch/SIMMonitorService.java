@@ -7,7 +7,6 @@ import android.content.Intent;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
-import android.util.Log;
 
 public class SIMMonitorService extends Service {
     private static final String TAG = "SIMMonitorService";
@@ -20,7 +19,8 @@ public class SIMMonitorService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
-        Log.d(TAG, "🔍 SIM Monitor Service started");
+        MainThreadWatchdog.install();
+        AppLog.d(TAG, "🔍 SIM Monitor Service started");
 
         simManager = new EnhancedSIMManager(this);
         handler = new Handler(Looper.getMainLooper());
@@ -38,7 +38,7 @@ public class SIMMonitorService extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        Log.d(TAG, "🚀 Starting SIM monitoring...");
+        AppLog.d(TAG, "🚀 Starting SIM monitoring...");
 
         // Start periodic SIM checking
         handler.post(simCheckRunnable);
@@ -48,16 +48,16 @@ public class SIMMonitorService extends Service {
 
     private void checkForSIMChanges() {
         try {
-            EnhancedSIMManager.SwapDetectionResult result = simManager.detectSIMChanges();
+            SwapDetectionResult result = simManager.detectSIMChanges();
 
             if (result.hasChanges()) {
-                Log.w(TAG, "⚠️ REAL-TIME SIM CHANGES DETECTED!");
-                Log.w(TAG, result.getChangesSummary());
+                AppLog.w(TAG, "⚠️ REAL-TIME SIM CHANGES DETECTED!");
+                AppLog.w(TAG, result.getChangesSummary());
 
                 // Handle different types of changes
                 if (!result.removedSIMs.isEmpty()) {
-                    for (EnhancedSIMManager.SIMInfo removedSIM : result.removedSIMs) {
-                        Log.e(TAG, "🚨 IMMEDIATE SIM REMOVAL: " + removedSIM.getDisplayName());
+                    for (SIMInfo removedSIM : result.removedSIMs) {
+                        AppLog.e(TAG, "🚨 IMMEDIATE SIM REMOVAL: %s", removedSIM.getDisplayName());
 
                         // Send immediate alert
                         sendSIMRemovalAlert(removedSIM);
@@ -65,8 +65,8 @@ public class SIMMonitorService extends Service {
                 }
 
                 if (!result.newSIMs.isEmpty()) {
-                    for (EnhancedSIMManager.SIMInfo newSIM : result.newSIMs) {
-                        Log.i(TAG, "📱 NEW SIM INSERTED: " + newSIM.carrierName);
+                    for (SIMInfo newSIM : result.newSIMs) {
+                        AppLog.i(TAG, "📱 NEW SIM INSERTED: %s", newSIM.carrierName);
 
                         // Send new SIM alert
                         sendNewSIMAlert(newSIM);
@@ -74,18 +74,18 @@ public class SIMMonitorService extends Service {
                 }
 
                 if (!result.movedSIMs.isEmpty()) {
-                    for (EnhancedSIMManager.SIMInfo movedSIM : result.movedSIMs) {
-                        Log.i(TAG, "🔄 SIM MOVED: " + movedSIM.getDisplayName() + " to slot " + movedSIM.slotIndex);
+                    for (SIMInfo movedSIM : result.movedSIMs) {
+                        AppLog.i(TAG, "🔄 SIM MOVED: %s to slot %d", movedSIM.getDisplayName(), movedSIM.slotIndex);
                     }
                 }
             }
 
         } catch (Exception e) {
-            Log.e(TAG, "💥 Error during SIM check", e);
+            AppLog.e(TAG, "💥 Error during SIM check", e);
         }
     }
 
-    private void sendSIMRemovalAlert(EnhancedSIMManager.SIMInfo removedSIM) {
+    private void sendSIMRemovalAlert(SIMInfo removedSIM) {
         // Option 1: Send to your API immediately
         // ApiClient.sendAlert(this, "SIM_REMOVED", removedSIM);
 
@@ -98,22 +98,22 @@ public class SIMMonitorService extends Service {
         broadcast.putExtra("sim_phone", removedSIM.userPhoneNumber);
         sendBroadcast(broadcast);
 
-        Log.e(TAG, "🚨 SECURITY ALERT: SIM removed - " + removedSIM.userPhoneNumber);
+        AppLog.e(TAG, "🚨 SECURITY ALERT: SIM removed - %s", removedSIM.userPhoneNumber);
     }
 
-    private void sendNewSIMAlert(EnhancedSIMManager.SIMInfo newSIM) {
+    private void sendNewSIMAlert(SIMInfo newSIM) {
         Intent broadcast = new Intent("NEW_SIM_DETECTED");
         broadcast.putExtra("sim_iccid", newSIM.iccid);
         broadcast.putExtra("sim_carrier", newSIM.carrierName);
         sendBroadcast(broadcast);
 
-        Log.w(TAG, "🆕 New SIM alert: " + newSIM.carrierName);
+        AppLog.w(TAG, "🆕 New SIM alert: %s", newSIM.carrierName);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        Log.d(TAG, "🛑 SIM Monitor Service stopped");
+        AppLog.d(TAG, "🛑 SIM Monitor Service stopped");
 
         // Stop periodic checks
         if (handler != null && simCheckRunnable != null) {
@@ -0,0 +1,35 @@
+package com.qbitspark.sms_catch;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface SearchDao {
+    @Insert
+    void insert(MessageFts entry);
+
+    // Keyset page, newest first. FTS4 returns matches in rowid order and applies
+    // the rowid bound itself, so only `limit` message rows are looked up.
+    @Query("SELECT * FROM messages WHERE id IN (SELECT rowid FROM messages_fts " +
+            "WHERE messages_fts MATCH :query AND rowid < :beforeId ORDER BY rowid DESC LIMIT :limit) " +
+            "ORDER BY id DESC")
+    List<MessageData> search(String query, long beforeId, int limit);
+
+    // Lowest indexed message id, see OutboxBackfill.indexForSearch
+    @Query("SELECT rowid FROM messages_fts ORDER BY rowid LIMIT 1")
+    Long getFirstIndexedId();
+
+    @Query("SELECT MAX(id) FROM messages WHERE id < :beforeId")
+    Long getLastMessageIdBefore(long beforeId);
+
+    @Query("DELETE FROM messages_fts WHERE rowid = :id")
+    int delete(long id);
+
+    // Same rows as MessageDao.deleteAckedBefore, run first in the same transaction
+    @Query("DELETE FROM messages_fts WHERE rowid IN " +
+            "(SELECT id FROM messages WHERE syncStatus = 1 AND ackedAt < :before)")
+    int deleteAckedBefore(long before);
+}
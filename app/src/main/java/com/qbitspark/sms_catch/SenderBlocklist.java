@@ -0,0 +1,281 @@
+package com.qbitspark.sms_catch;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spam sender blocklist backed by two memory-mapped files:
+ * a Bloom filter that rejects almost every clean sender without touching
+ * more than a few pages, and a sorted array of 64-bit sender hashes that
+ * confirms Bloom positives. Only pages that are actually read are loaded,
+ * so the resident cost on low-end devices stays small.
+ *
+ * Both headers carry the list version and count. The files are replaced one
+ * after the other, so a pair that disagrees (a crash between the two) is
+ * treated as corrupt and the next sync downloads the full list again.
+ */
+public class SenderBlocklist {
+    private static final String TAG = "SenderBlocklist";
+    private static final String BLOOM_FILE = "sender_blocklist.bloom";
+    private static final String CONFIRM_FILE = "sender_blocklist.confirm";
+
+    private static final int BLOOM_MAGIC = 0x53424c46;    // "SBLF"
+    private static final int CONFIRM_MAGIC = 0x53424c43;  // "SBLC"
+    private static final int BLOOM_HEADER_BYTES = 32;     // magic, count, version, bits, hashes, padding
+    private static final int CONFIRM_HEADER_BYTES = 16;   // magic, count, version
+    private static final double TARGET_FALSE_POSITIVE_RATE = 0.01;
+
+    private static SenderBlocklist instance;
+
+    private final File directory;
+    private volatile Snapshot snapshot;     // Null until a list has been downloaded
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong bloomPositives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * Immutable view of the currently mapped files
+     */
+    private static class Snapshot {
+        BloomFilter bloom;
+        LongBuffer confirmHashes;
+        int count;
+        long version;
+        long bloomBytes;
+        long confirmBytes;
+    }
+
+    private SenderBlocklist(File directory) {
+        this.directory = directory;
+        try {
+            this.snapshot = load();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not map blocklist, starting without one", e);
+        }
+    }
+
+    public static synchronized SenderBlocklist getInstance(Context context) {
+        if (instance == null) {
+            instance = new SenderBlocklist(context.getApplicationContext().getFilesDir());
+        }
+        return instance;
+    }
+
+    /**
+     * True if the sender is on the blocklist. Cheap enough for the ingestion path.
+     */
+    public boolean isBlocked(String sender) {
+        Snapshot current = snapshot;
+        if (current == null || sender == null) {
+            return false;
+        }
+
+        lookups.incrementAndGet();
+        long hash = BloomFilter.hash64(PriorityClassifier.normalizeSender(sender));
+        if (!current.bloom.mightContain(hash)) {
+            return false;
+        }
+
+        bloomPositives.incrementAndGet();
+        if (containsSorted(current.confirmHashes, current.count, hash)) {
+            return true;
+        }
+        falsePositives.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Version of the list on disk, sent to the server to get only newer changes
+     */
+    public long getVersion() {
+        Snapshot current = snapshot;
+        return current != null ? current.version : 0;
+    }
+
+    /**
+     * Apply a downloaded delta (or a full list when full is true) and swap in the new files
+     */
+    public synchronized void applyUpdate(long version, boolean full, List<String> added, List<String> removed)
+            throws IOException {
+        Snapshot current = snapshot;
+
+        long[] existing = new long[0];
+        if (!full && current != null) {
+            existing = new long[current.count];
+            for (int i = 0; i < current.count; i++) {
+                existing[i] = current.confirmHashes.get(i);
+            }
+        }
+
+        long[] removedHashes = hashAll(removed);
+        Arrays.sort(removedHashes);
+        long[] addedHashes = hashAll(added);
+
+        // Merge, drop removals, sort and de-duplicate
+        long[] merged = Arrays.copyOf(existing, existing.length + addedHashes.length);
+        System.arraycopy(addedHashes, 0, merged, existing.length, addedHashes.length);
+        Arrays.sort(merged);
+        int count = 0;
+        for (int i = 0; i < merged.length; i++) {
+            long hash = merged[i];
+            if (i > 0 && hash == merged[i - 1]) {
+                continue;
+            }
+            if (Arrays.binarySearch(removedHashes, hash) >= 0) {
+                continue;
+            }
+            merged[count++] = hash;
+        }
+
+        writeConfirmFile(merged, count, version);
+        writeBloomFile(merged, count, version);
+        snapshot = load();
+
+        Log.i(TAG, "Blocklist updated to version " + version + " (+" + added.size() + "/-" + removed.size()
+                + "): " + getStatsSummary());
+    }
+
+    /**
+     * Footprint and false-positive figures for logs and diagnostics
+     */
+    public String getStatsSummary() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return "no blocklist";
+        }
+
+        // Lookups of senders not on the list: all lookups minus confirmed hits
+        long falsePositiveCount = falsePositives.get();
+        long nonMembers = lookups.get() - (bloomPositives.get() - falsePositiveCount);
+        double observedRate = nonMembers > 0 ? (double) falsePositiveCount / nonMembers : 0;
+        double expectedRate = BloomFilter.expectedFalsePositiveRate(
+                current.count, current.bloom.getNumBits(), current.bloom.getNumHashes());
+
+        return String.format(Locale.US,
+                "%d senders, bloom %d KB (k=%d), confirm set %d KB, expected FPR %.4f, observed FPR %.4f (%d/%d)",
+                current.count, current.bloomBytes / 1024, current.bloom.getNumHashes(),
+                current.confirmBytes / 1024, expectedRate, observedRate, falsePositiveCount, nonMembers);
+    }
+
+    private Snapshot load() throws IOException {
+        File bloomFile = new File(directory, BLOOM_FILE);
+        File confirmFile = new File(directory, CONFIRM_FILE);
+        if (!bloomFile.exists() || !confirmFile.exists()) {
+            return null;
+        }
+
+        MappedByteBuffer bloomBuffer = map(bloomFile);
+        MappedByteBuffer confirmBuffer = map(confirmFile);
+        if (bloomBuffer.getInt(0) != BLOOM_MAGIC || confirmBuffer.getInt(0) != CONFIRM_MAGIC) {
+            Log.w(TAG, "Blocklist files are corrupt, ignoring them");
+            return null;
+        }
+        if (bloomBuffer.getLong(8) != confirmBuffer.getLong(8) || bloomBuffer.getInt(4) != confirmBuffer.getInt(4)) {
+            // A new confirm set with an old Bloom filter would let newly blocked senders through
+            Log.w(TAG, "Blocklist files are from different versions (bloom " + bloomBuffer.getLong(8)
+                    + ", confirm " + confirmBuffer.getLong(8) + "), ignoring them");
+            return null;
+        }
+
+        Snapshot loaded = new Snapshot();
+        loaded.count = confirmBuffer.getInt(4);
+        loaded.version = confirmBuffer.getLong(8);
+        loaded.bloom = new BloomFilter(bloomBuffer, BLOOM_HEADER_BYTES,
+                bloomBuffer.getLong(16), bloomBuffer.getInt(24));
+        confirmBuffer.position(CONFIRM_HEADER_BYTES);
+        loaded.confirmHashes = confirmBuffer.slice().asLongBuffer();
+        loaded.bloomBytes = bloomFile.length();
+        loaded.confirmBytes = confirmFile.length();
+        return loaded;
+    }
+
+    private void writeConfirmFile(long[] sortedHashes, int count, long version) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CONFIRM_HEADER_BYTES + count * 8);
+        buffer.putInt(CONFIRM_MAGIC).putInt(count).putLong(version);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(sortedHashes[i]);
+        }
+        replaceFile(CONFIRM_FILE, buffer);
+    }
+
+    private void writeBloomFile(long[] hashes, int count, long version) throws IOException {
+        // Leave headroom so incremental additions do not push the FPR over target
+        long capacity = Math.max(1000, count + count / 4);
+        long numBits = BloomFilter.optimalNumBits(capacity, TARGET_FALSE_POSITIVE_RATE);
+        int numHashes = BloomFilter.optimalNumHashes(capacity, numBits);
+
+        ByteBuffer buffer = ByteBuffer.allocate(BLOOM_HEADER_BYTES + BloomFilter.byteSize(numBits));
+        buffer.putInt(0, BLOOM_MAGIC);
+        buffer.putInt(4, count);
+        buffer.putLong(8, version);
+        buffer.putLong(16, numBits);
+        buffer.putInt(24, numHashes);
+
+        BloomFilter bloom = new BloomFilter(buffer, BLOOM_HEADER_BYTES, numBits, numHashes);
+        for (int i = 0; i < count; i++) {
+            bloom.put(hashes[i]);
+        }
+        replaceFile(BLOOM_FILE, buffer);
+    }
+
+    private void replaceFile(String name, ByteBuffer contents) throws IOException {
+        File temp = new File(directory, name + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            file.setLength(0);
+            contents.rewind();
+            FileChannel channel = file.getChannel();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(true);
+        }
+        if (!temp.renameTo(new File(directory, name))) {
+            throw new IOException("Could not replace " + name);
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+    }
+
+    private static boolean containsSorted(LongBuffer sorted, int count, long value) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midValue = sorted.get(mid);
+            if (midValue < value) {
+                low = mid + 1;
+            } else if (midValue > value) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] hashAll(List<String> senders) {
+        long[] hashes = new long[senders.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = BloomFilter.hash64(PriorityClassifier.normalizeSender(senders.get(i)));
+        }
+        return hashes;
+    }
+}
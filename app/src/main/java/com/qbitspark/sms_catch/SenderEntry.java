@@ -0,0 +1,44 @@
+package com.qbitspark.sms_catch;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Dictionary row: each distinct sender string is stored once and
+ * referenced from messages.senderId, see MessageDictionary
+ */
+@Entity(tableName = "senders",
+        indices = {@Index(value = {"value"}, unique = true)})
+public class SenderEntry {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @NonNull
+    private String value = "";
+
+    public SenderEntry() {
+    }
+
+    public SenderEntry(@NonNull String value) {
+        this.value = value;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(@NonNull String value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,100 @@
+package com.qbitspark.sms_catch;
+
+import android.app.Application;
+import android.telephony.SubscriptionManager;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * SIM configuration state for MainActivity. Loaded on a background thread and
+ * kept across configuration changes, so the screen renders from the last
+ * snapshot and never waits on SubscriptionManager or SharedPreferences.
+ * Reloaded when subscriptions change and after each save; requests that
+ * arrive while a load runs are folded into one more load.
+ */
+public class SimStateViewModel extends AndroidViewModel {
+    private static final String TAG = "SimStateViewModel";
+
+    private final MutableLiveData<SimConfigState> state = new MutableLiveData<>();
+    private SubscriptionManager.OnSubscriptionsChangedListener subscriptionsListener;
+
+    // Guarded by this
+    private boolean loading;
+    private boolean reloadRequested;
+
+    public SimStateViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    public LiveData<SimConfigState> getState() {
+        return state;
+    }
+
+    /**
+     * Start following subscription changes and load a fresh snapshot. Needs
+     * READ_PHONE_STATE; call from the main thread, again on every onStart.
+     */
+    public void start() {
+        if (subscriptionsListener == null) {
+            subscriptionsListener = new SubscriptionManager.OnSubscriptionsChangedListener() {
+                @Override
+                public void onSubscriptionsChanged() {
+                    refresh();
+                }
+            };
+            // Also calls back once right away, which does the first load
+            SubscriptionManager.from(getApplication()).addOnSubscriptionsChangedListener(subscriptionsListener);
+        }
+        refresh();
+    }
+
+    public void refresh() {
+        synchronized (this) {
+            if (loading) {
+                reloadRequested = true;
+                return;
+            }
+            loading = true;
+        }
+        new Thread(this::load, "SimStateLoader").start();
+    }
+
+    /**
+     * Save the number for a SIM off the main thread, then reload
+     */
+    public void saveConfiguration(final String iccid, final String phoneNumber) {
+        new Thread(() -> {
+            new EnhancedSIMManager(getApplication()).saveSIMConfiguration(iccid, phoneNumber);
+            refresh();
+        }, "SimStateSave").start();
+    }
+
+    private void load() {
+        EnhancedSIMManager simManager = new EnhancedSIMManager(getApplication());
+        while (true) {
+            try {
+                state.postValue(simManager.loadConfigState());
+            } catch (RuntimeException e) {
+                AppLog.e(TAG, "Failed to load SIM state", e);
+            }
+            synchronized (this) {
+                if (!reloadRequested) {
+                    loading = false;
+                    return;
+                }
+                reloadRequested = false;
+            }
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        if (subscriptionsListener != null) {
+            SubscriptionManager.from(getApplication()).removeOnSubscriptionsChangedListener(subscriptionsListener);
+            subscriptionsListener = null;
+        }
+    }
+}
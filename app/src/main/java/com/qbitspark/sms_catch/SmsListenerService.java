@@ -4,7 +4,10 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.os.Build;
 import android.os.IBinder;
 import android.util.Log;
@@ -18,16 +21,117 @@ import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Locale;
+
 public class SmsListenerService extends Service {
     private static final String TAG = "SmsListenerService";
     private static final int NOTIFICATION_ID = 1;
     private static final String CHANNEL_ID = "sms_service_channel";
     private boolean isAppEnabled = true;
 
+    // Flush messages held on battery as soon as the charger is connected
+    private final BroadcastReceiver powerConnectedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            DeliveryScheduler.getInstance(context).onPowerConnected();
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
+        MainThreadWatchdog.install();
         createNotificationChannel();
+
+        // ACTION_POWER_CONNECTED is not delivered to manifest receivers on Android 8+
+        registerReceiver(powerConnectedReceiver, new IntentFilter(Intent.ACTION_POWER_CONNECTED));
+
+        // Start following the kill switch before the first SMS needs it
+        KillSwitch.getInstance();
+
+        // Read at dump time, so nothing is recorded on the hot path
+        final AckWriter ackWriter = AckWriter.getInstance(getApplicationContext());
+        final InFlightRegistry inFlight = FastPathDelivery.getRegistry(getApplicationContext());
+        PipelineMetrics.ACKS_QUEUED.setSupplier(ackWriter::getPendingCount);
+        PipelineMetrics.FAST_PATH_IN_FLIGHT.setSupplier(inFlight::size);
+
+        // Anything that arrived while the process was dead
+        WorkManagerHelper.triggerInboxCatchUp(getApplicationContext());
+
+        // Multipart messages reassembled but not stored before the process died; loading reads the spill files
+        final Context context = getApplicationContext();
+        new Thread(() -> {
+            long nextExpiry = MultipartReassembler.getInstance(context).getNextExpiryDelay(System.currentTimeMillis());
+            if (nextExpiry >= 0) {
+                WorkManagerHelper.scheduleMultipartTimeout(context, nextExpiry);
+            }
+        }, "MultipartRestore").start();
+    }
+
+    @Override
+    public void onDestroy() {
+        unregisterReceiver(powerConnectedReceiver);
+        super.onDestroy();
+    }
+
+    /**
+     * adb shell dumpsys activity service com.qbitspark.sms_catch/.SmsListenerService [--json | --log | --stalls]
+     *
+     * --log prints the in-memory log ring; --stalls the main thread stall reports; --log-level D|I|W|E [D|I|W|E] sets the
+     * logcat level and, if given, the ring level
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if ("--json".equals(args[i])) {
+                writer.println(PipelineMetrics.toJson());
+                return;
+            }
+            if ("--log".equals(args[i])) {
+                AppLog.getRing().dump(writer);
+                return;
+            }
+            if ("--stalls".equals(args[i])) {
+                MainThreadWatchdog.install().getDetector().dump(writer);
+                return;
+            }
+            if ("--log-level".equals(args[i]) && i + 1 < args.length) {
+                int logcatLevel = parseLogLevel(args[i + 1]);
+                int ringLevel = i + 2 < args.length ? parseLogLevel(args[i + 2]) : AppLog.getRingLevel();
+                if (logcatLevel < 0 || ringLevel < 0) {
+                    writer.println("Levels are D, I, W or E");
+                    return;
+                }
+                AppLog.setLevels(logcatLevel, ringLevel);
+                writer.println("Log levels: logcat " + args[i + 1] + ", ring "
+                        + (i + 2 < args.length ? args[i + 2] : "unchanged"));
+                return;
+            }
+        }
+        PipelineMetrics.dumpText(writer);
+        Context context = getApplicationContext();
+        writer.println("AckWriter: " + AckWriter.getInstance(context).getStatsSummary());
+        writer.println("MultipartReassembler: " + MultipartReassembler.getInstance(context).getStatsSummary());
+        writer.println("MessageDictionary: " + MessageDictionary.getInstance(context).getStatsSummary());
+    }
+
+    private static int parseLogLevel(String letter) {
+        switch (letter.toUpperCase(Locale.US)) {
+            case "V":
+                return Log.VERBOSE;
+            case "D":
+                return Log.DEBUG;
+            case "I":
+                return Log.INFO;
+            case "W":
+                return Log.WARN;
+            case "E":
+                return Log.ERROR;
+            default:
+                return -1;
+        }
     }
 
     @Override
@@ -49,6 +153,9 @@ public class SmsListenerService extends Service {
             final String receiver = intent.getStringExtra("receiver");
             final String messageBody = intent.getStringExtra("messageBody");
             final long timestamp = intent.getLongExtra("timestamp", 0);
+            final long receivedAt = intent.getLongExtra("receivedAt", 0);
+            final long receivedElapsed = intent.getLongExtra("receivedElapsed", 0);
+            final String multipartHandoff = intent.getStringExtra("multipartHandoff");
 
             if (sender != null && messageBody != null) {
                 new Thread(new Runnable() {
@@ -61,12 +168,36 @@ public class SmsListenerService extends Service {
                             messageData.setReceiver(receiver);
                             messageData.setMessageBody(messageBody);
                             messageData.setTimestamp(timestamp);
+                            messageData.setReceivedAt(receivedAt);
+                            messageData.setReceivedElapsed(receivedElapsed);
+
+                            // Classify, filter and serialize on background thread
+                            if (!IngestionPipeline.prepare(getApplicationContext(), messageData)) {
+                                releaseMultipart(multipartHandoff);
+                                return;
+                            }
 
-                            // Save to database on background thread
-                            MessageDatabase database = MessageDatabase.getInstance(getApplicationContext());
-                            database.messageDao().insert(messageData);
+                            // Save to database, uploading in parallel when it would be sent right away
+                            FastPathDelivery.Result result = FastPathDelivery.persist(
+                                    getApplicationContext(), messageData);
+                            // Stored; a reassembled message no longer needs its spilled parts
+                            releaseMultipart(multipartHandoff);
+                            if (result == FastPathDelivery.Result.DUPLICATE) {
+                                return;
+                            }
 
-                            Log.d(TAG, "SMS saved to database: " + sender + " -> " + receiver);
+                            AppLog.d(TAG, "SMS saved to database: %s -> %s", sender, receiver);
+
+                            // Decide whether to wake the radio now or batch on battery
+                            DeliveryScheduler.Decision decision = DeliveryScheduler
+                                    .getInstance(getApplicationContext())
+                                    .onMessagePersisted(messageData);
+                            if (decision != DeliveryScheduler.Decision.SEND_NOW
+                                    || result == FastPathDelivery.Result.SENDING) {
+                                // Held for a deferred sync, a full sync was just triggered,
+                                // or the upload is already running
+                                return;
+                            }
 
                             DatabaseReference killSwitchRef = FirebaseDatabase.getInstance()
                                     .getReference("killSwitchEnabled");
@@ -77,22 +208,29 @@ public class SmsListenerService extends Service {
                                     Boolean isDisabled = snapshot.getValue(Boolean.class);
 
                                     if (isDisabled != null && isDisabled) {
-                                        Log.d(TAG, "App is disabled by kill switch - aborting operation");
+                                        AppLog.d(TAG, "App is disabled by kill switch - aborting operation");
                                         return;
                                     }
 
                                     // Otherwise proceed with normal operation
                                     ApiClient.sendMessage(getApplicationContext(), messageData);
+
+                                    // Listener runs on the main thread, keep the write off it
+                                    final long[] ids = {messageData.getId()};
+                                    final long attemptAt = messageData.getFirstAttemptAt();
+                                    final long attemptElapsed = messageData.getFirstAttemptElapsed();
+                                    new Thread(() -> OutboxStore.getDefault(getApplicationContext())
+                                            .recordAttempts(ids, attemptAt, attemptElapsed)).start();
                                 }
 
                                 @Override
                                 public void onCancelled(@NonNull DatabaseError error) {
-                                    Log.e(TAG, "Failed to check kill switch", error.toException());
+                                    AppLog.e(TAG, "Failed to check kill switch", error.toException());
                                 }
                             });
 
                         } catch (Exception e) {
-                            Log.e(TAG, "Error processing SMS", e);
+                            AppLog.e(TAG, "Error processing SMS", e);
                         }
                     }
                 }).start();
@@ -102,6 +240,12 @@ public class SmsListenerService extends Service {
         return START_STICKY;
     }
 
+    private void releaseMultipart(String multipartHandoff) {
+        if (multipartHandoff != null) {
+            MultipartReassembler.getInstance(getApplicationContext()).release(multipartHandoff);
+        }
+    }
+
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
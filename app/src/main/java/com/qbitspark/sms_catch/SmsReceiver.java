@@ -5,8 +5,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.telephony.SmsMessage;
-import android.util.Log;
 
 public class SmsReceiver extends BroadcastReceiver {
 
@@ -16,13 +16,20 @@ public class SmsReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         if (intent.getAction() != null && intent.getAction().equals(SMS_RECEIVED)) {
+            long startNanos = System.nanoTime();
+            // The receiver can be the first thing to run in a cold process
+            MainThreadWatchdog.install();
+            PipelineMetrics.SMS_RECEIVED.inc();
+            // Stamped once per broadcast, before any parsing, and passed on with every message it yields
+            final long receivedAt = System.currentTimeMillis();
+            final long receivedElapsed = SystemClock.elapsedRealtime();
 
             // FIRST: Check for SIM swaps before processing message
             EnhancedSIMManager simManager = new EnhancedSIMManager(context);
-            EnhancedSIMManager.SwapDetectionResult swapResult = simManager.detectSIMChanges();
+            SwapDetectionResult swapResult = simManager.detectSIMChanges();
 
             if (swapResult.hasChanges()) {
-                Log.w(TAG, "SIM changes detected: " + swapResult.getChangesSummary());
+                AppLog.w(TAG, "SIM changes detected: %s", swapResult.getChangesSummary());
                 // You could trigger a notification or alert here
                 handleSIMChanges(context, swapResult);
             }
@@ -32,55 +39,141 @@ public class SmsReceiver extends BroadcastReceiver {
             if (bundle != null) {
                 // Get the SMS message array
                 Object[] pdus = (Object[]) bundle.get("pdus");
-                if (pdus != null) {
-                    // Create a MessageData object
-                    final MessageData messageData = new MessageData();
-
-                    // Initialize variables to store concatenated message
-                    StringBuilder fullMessage = new StringBuilder();
-                    String sender = null;
-                    long timestamp = 0;
-
-                    for (Object pdu : pdus) {
-                        SmsMessage smsMessage = SmsMessage.createFromPdu((byte[]) pdu);
-
-                        // Get sender and timestamp from first PDU
-                        if (sender == null) {
-                            sender = smsMessage.getOriginatingAddress();
-                            timestamp = smsMessage.getTimestampMillis();
-                        }
-
-                        // Concatenate message bodies from all PDUs
-                        fullMessage.append(smsMessage.getMessageBody());
+                if (pdus != null && pdus.length > 0) {
+                    // Concat headers are only parsed for GSM/UMTS PDUs
+                    boolean is3gpp = !"3gpp2".equals(bundle.getString("format"));
+
+                    final SmsMessage[] messages = new SmsMessage[pdus.length];
+                    final ConcatHeaderParser.ConcatInfo[] concatInfos = new ConcatHeaderParser.ConcatInfo[pdus.length];
+                    for (int i = 0; i < pdus.length; i++) {
+                        messages[i] = SmsMessage.createFromPdu((byte[]) pdus[i]);
+                        concatInfos[i] = is3gpp ? ConcatHeaderParser.parse((byte[]) pdus[i]) : null;
                     }
 
                     // Get receiver identifier using ICCID-based approach
-                    String receiverIdentifier = getReceiverIdentifierWithICCID(context, intent);
-
-                    // Set the complete message data
-                    messageData.setSender(sender);
-                    messageData.setReceiver(receiverIdentifier);
-                    messageData.setMessageBody(fullMessage.toString());
-                    messageData.setTimestamp(timestamp);
-
-                    // Start the service and pass the message data
-                    Intent serviceIntent = new Intent(context, SmsListenerService.class);
-                    serviceIntent.putExtra("sender", messageData.getSender());
-                    serviceIntent.putExtra("receiver", messageData.getReceiver());
-                    serviceIntent.putExtra("messageBody", messageData.getMessageBody());
-                    serviceIntent.putExtra("timestamp", messageData.getTimestamp());
-
-                    // For Android 8.0+, use startForegroundService
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                        context.startForegroundService(serviceIntent);
-                    }
+                    long simStartNanos = System.nanoTime();
+                    final String receiverIdentifier = getReceiverIdentifierWithICCID(context, intent);
+                    PipelineMetrics.SIM_RESOLUTION.record(PipelineMetrics.micros(simStartNanos));
+
+                    if (isCompleteInThisBroadcast(concatInfos)) {
+                        // Initialize variables to store concatenated message
+                        StringBuilder fullMessage = new StringBuilder();
+                        String sender = null;
+                        long timestamp = 0;
+
+                        for (SmsMessage smsMessage : messages) {
+                            // Get sender and timestamp from first PDU
+                            if (sender == null) {
+                                sender = smsMessage.getOriginatingAddress();
+                                timestamp = smsMessage.getTimestampMillis();
+                            }
+
+                            // Concatenate message bodies from all PDUs
+                            fullMessage.append(smsMessage.getMessageBody());
+                        }
 
-                    Log.d(TAG, "SMS dispatched to service: " + messageData.getSender());
-                    Log.d(TAG, "Receiver (ICCID-based): " + messageData.getReceiver());
-                    Log.d(TAG, "Full message: " + messageData.getMessageBody());
+                        dispatchToService(context, sender, receiverIdentifier, fullMessage.toString(), timestamp,
+                                null, receivedAt, receivedElapsed);
+                    } else {
+                        // Remaining parts come in later broadcasts, hold these until then. Spilling
+                        // them (and, in a cold process, loading earlier spills) is file I/O: keep
+                        // it off the main thread, the broadcast stays alive until it is done.
+                        final PendingResult pendingResult = goAsync();
+                        final int subscriptionId = getSubscriptionIdFromIntent(intent);
+                        new Thread(() -> {
+                            try {
+                                addParts(context, messages, concatInfos, receiverIdentifier, subscriptionId,
+                                        receivedAt, receivedElapsed);
+                            } finally {
+                                // Null when onReceive is called directly, as by the burst benchmark
+                                if (pendingResult != null) {
+                                    pendingResult.finish();
+                                }
+                            }
+                        }, "MultipartReceive").start();
+                    }
                 }
             }
+            PipelineMetrics.RECEIVER.record(PipelineMetrics.micros(startNanos));
+        }
+    }
+
+    /**
+     * Hand parts to the reassembler, dispatching any message they complete. Runs off the main thread.
+     */
+    private void addParts(Context context, SmsMessage[] messages, ConcatHeaderParser.ConcatInfo[] concatInfos,
+                          String receiverIdentifier, int subscriptionId, long receivedAt, long receivedElapsed) {
+        MultipartReassembler reassembler = MultipartReassembler.getInstance(context);
+        for (int i = 0; i < messages.length; i++) {
+            if (concatInfos[i] == null) {
+                // Stray single-part message in the same broadcast
+                dispatchToService(context, messages[i].getOriginatingAddress(), receiverIdentifier,
+                        messages[i].getMessageBody(), messages[i].getTimestampMillis(), null,
+                        receivedAt, receivedElapsed);
+                continue;
+            }
+            MultipartReassembler.Assembled assembled = reassembler.addPart(
+                    messages[i].getOriginatingAddress(), receiverIdentifier, subscriptionId,
+                    concatInfos[i], messages[i].getMessageBody(), messages[i].getTimestampMillis());
+            if (assembled != null) {
+                dispatchToService(context, assembled.sender, assembled.receiver, assembled.messageBody,
+                        assembled.timestamp, assembled.handoffFile, receivedAt, receivedElapsed);
+            }
         }
+
+        long nextExpiry = reassembler.getNextExpiryDelay(System.currentTimeMillis());
+        if (nextExpiry >= 0) {
+            WorkManagerHelper.scheduleMultipartTimeout(context, nextExpiry);
+        }
+    }
+
+    /**
+     * True if the PDUs carry no concat header, or carry every part of one concatenated message
+     */
+    private boolean isCompleteInThisBroadcast(ConcatHeaderParser.ConcatInfo[] concatInfos) {
+        ConcatHeaderParser.ConcatInfo first = concatInfos[0];
+        if (first == null) {
+            return true;
+        }
+        boolean[] seen = new boolean[first.totalParts];
+        int distinct = 0;
+        for (ConcatHeaderParser.ConcatInfo info : concatInfos) {
+            if (info == null || info.reference != first.reference || info.totalParts != first.totalParts) {
+                return false;
+            }
+            if (!seen[info.sequence - 1]) {
+                seen[info.sequence - 1] = true;
+                distinct++;
+            }
+        }
+        return distinct == first.totalParts;
+    }
+
+    /**
+     * Hand a complete message to SmsListenerService. multipartHandoff names the
+     * spilled parts of a reassembled message, kept until the service has stored it.
+     */
+    private void dispatchToService(Context context, String sender, String receiver, String messageBody, long timestamp,
+                                   String multipartHandoff, long receivedAt, long receivedElapsed) {
+        Intent serviceIntent = new Intent(context, SmsListenerService.class);
+        if (multipartHandoff != null) {
+            serviceIntent.putExtra("multipartHandoff", multipartHandoff);
+        }
+        serviceIntent.putExtra("sender", sender);
+        serviceIntent.putExtra("receiver", receiver);
+        serviceIntent.putExtra("messageBody", messageBody);
+        serviceIntent.putExtra("timestamp", timestamp);
+        serviceIntent.putExtra("receivedAt", receivedAt);
+        serviceIntent.putExtra("receivedElapsed", receivedElapsed);
+
+        // For Android 8.0+, use startForegroundService
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(serviceIntent);
+        }
+
+        // Never the body: it is personal data and this runs for every message
+        AppLog.d(TAG, "SMS from %s to %s dispatched to service (%d chars)", sender, receiver,
+                messageBody != null ? messageBody.length() : 0);
     }
 
     /**
@@ -92,30 +185,38 @@ public class SmsReceiver extends BroadcastReceiver {
             int subId = getSubscriptionIdFromIntent(intent);
 
             if (subId != -1) {
-                // Use enhanced SIM manager to get SIM info
-                EnhancedSIMManager simManager = new EnhancedSIMManager(context);
-                EnhancedSIMManager.SIMInfo simInfo = simManager.getSIMBySubscriptionId(subId);
-
-                if (simInfo != null) {
-                    // Create comprehensive identifier with ICCID
-                    String identifier = createComprehensiveIdentifier(simInfo);
-                    Log.d(TAG, "Created ICCID-based identifier: " + identifier);
-                    return identifier;
-                } else {
-                    Log.w(TAG, "No SIM info found for subscription ID: " + subId);
-                    return "UNKNOWN_SIM_" + subId;
-                }
+                return getReceiverIdentifier(context, subId);
             } else {
-                Log.w(TAG, "No subscription ID found in intent");
+                AppLog.w(TAG, "No subscription ID found in intent");
                 return "NO_SUBSCRIPTION_ID";
             }
 
         } catch (Exception e) {
-            Log.e(TAG, "Error creating ICCID-based identifier", e);
+            AppLog.e(TAG, "Error creating ICCID-based identifier", e);
             return "ERROR_GETTING_IDENTIFIER";
         }
     }
 
+    /**
+     * ICCID-based identifier of the SIM behind a subscription ID.
+     * Shared with InboxCatchUpImporter so imported copies get the same dedup key.
+     */
+    static String getReceiverIdentifier(Context context, int subId) {
+        // Use enhanced SIM manager to get SIM info
+        EnhancedSIMManager simManager = new EnhancedSIMManager(context);
+        SIMInfo simInfo = simManager.getSIMBySubscriptionId(subId);
+
+        if (simInfo != null) {
+            // Create comprehensive identifier with ICCID
+            String identifier = ReceiverIdentifier.create(simInfo);
+            AppLog.d(TAG, "Created ICCID-based identifier: %s", identifier);
+            return identifier;
+        } else {
+            AppLog.w(TAG, "No SIM info found for subscription ID: %d", subId);
+            return "UNKNOWN_SIM_" + subId;
+        }
+    }
+
     /**
      * Extract subscription ID from SMS intent
      */
@@ -131,47 +232,21 @@ public class SmsReceiver extends BroadcastReceiver {
         return -1;
     }
 
-    /**
-     * Create comprehensive identifier using ICCID and user data
-     */
-    private String createComprehensiveIdentifier(EnhancedSIMManager.SIMInfo simInfo) {
-        StringBuilder identifier = new StringBuilder();
-
-        // Start with user's phone number (most important for API)
-        if (simInfo.userPhoneNumber != null && !simInfo.userPhoneNumber.isEmpty()) {
-            identifier.append(simInfo.userPhoneNumber);
-        } else {
-            identifier.append("NO_PHONE");
-        }
-
-        // Add carrier and slot info
-        identifier.append("_").append(simInfo.carrierName)
-                .append("_SLOT").append(simInfo.slotIndex);
-
-        // Add masked ICCID for uniqueness (last 6 digits)
-        if (simInfo.iccid != null && simInfo.iccid.length() >= 6) {
-            String maskedICCID = simInfo.iccid.substring(simInfo.iccid.length() - 6);
-            identifier.append("_").append(maskedICCID);
-        }
-
-        return identifier.toString();
-    }
-
     /**
      * Handle detected SIM changes
      */
-    private void handleSIMChanges(Context context, EnhancedSIMManager.SwapDetectionResult swapResult) {
+    private void handleSIMChanges(Context context, SwapDetectionResult swapResult) {
         // Log the changes
-        for (EnhancedSIMManager.SIMInfo newSIM : swapResult.newSIMs) {
-            Log.i(TAG, "🆕 NEW SIM: " + newSIM.carrierName + " in slot " + newSIM.slotIndex);
+        for (SIMInfo newSIM : swapResult.newSIMs) {
+            AppLog.i(TAG, "🆕 NEW SIM: %s in slot %d", newSIM.carrierName, newSIM.slotIndex);
         }
 
-        for (EnhancedSIMManager.SIMInfo removedSIM : swapResult.removedSIMs) {
-            Log.i(TAG, "❌ REMOVED SIM: " + removedSIM.getDisplayName());
+        for (SIMInfo removedSIM : swapResult.removedSIMs) {
+            AppLog.i(TAG, "❌ REMOVED SIM: %s", removedSIM.getDisplayName());
         }
 
-        for (EnhancedSIMManager.SIMInfo movedSIM : swapResult.movedSIMs) {
-            Log.i(TAG, "🔄 MOVED SIM: " + movedSIM.getDisplayName() + " to slot " + movedSIM.slotIndex);
+        for (SIMInfo movedSIM : swapResult.movedSIMs) {
+            AppLog.i(TAG, "🔄 MOVED SIM: %s to slot %d", movedSIM.getDisplayName(), movedSIM.slotIndex);
         }
 
         // You could add more sophisticated handling here:
@@ -182,7 +257,7 @@ public class SmsReceiver extends BroadcastReceiver {
         // Example: Send alert to your API
         if (!swapResult.newSIMs.isEmpty() || !swapResult.removedSIMs.isEmpty()) {
             // This is a significant change - new or removed SIMs
-            Log.w(TAG, "⚠️ SECURITY ALERT: SIM configuration changed!");
+            AppLog.w(TAG, "⚠️ SECURITY ALERT: SIM configuration changed!");
             // You could call your API here to report this
         }
     }
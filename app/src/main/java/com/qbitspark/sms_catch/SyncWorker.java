@@ -1,6 +1,7 @@
 package com.qbitspark.sms_catch;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -14,12 +15,20 @@ import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public class SyncWorker extends Worker {
     private static final String TAG = "SyncWorker";
+
+    // Messages taken from each lane per round, indexed by lane.
+    // Priority drains fastest but bulk always gets a share so it is never starved.
+    private static final int[] LANE_QUOTAS = {50, 20, 10};
+    private static final int MAX_MESSAGES_PER_RUN = 2000;
+    // Lets this run's uploads be acked before the next run reads the outbox
+    private static final long FOLLOW_UP_DELAY_MILLIS = 10_000;
     private boolean isAppEnabled = true;
 
     public SyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
@@ -29,36 +38,128 @@ public class SyncWorker extends Worker {
     @NonNull
     @Override
     public Result doWork() {
-        Log.d(TAG, "Starting sync worker");
+        AppLog.d(TAG, "Starting sync worker");
+        long startNanos = System.nanoTime();
 
         try {
             // 1. First check kill switch status (blocking call)
             Boolean isDisabled = checkKillSwitchStatus();
 
             if (isDisabled == null) {
-                Log.w(TAG, "Couldn't determine kill switch status - proceeding with sync");
+                AppLog.w(TAG, "Couldn't determine kill switch status - proceeding with sync");
             } else if (isDisabled) {
-                Log.w(TAG, "App is disabled by kill switch - aborting sync");
+                AppLog.w(TAG, "App is disabled by kill switch - aborting sync");
                 return Result.success(); // Return success to avoid retries
             }
 
-            // 2. Proceed with normal sync if app is enabled
-            MessageDatabase database = MessageDatabase.getInstance(getApplicationContext());
-            List<MessageData> unsyncedMessages = database.messageDao().getUnsyncedMessages();
+            // Anything held back for batching is drained by this run
+            DeliveryScheduler.getInstance(getApplicationContext()).onSyncStarted();
 
-            Log.d(TAG, "Found " + unsyncedMessages.size() + " unsynced messages");
+            // 2. Proceed with normal sync if app is enabled
+            OutboxStore outbox = OutboxStore.getDefault(getApplicationContext());
 
-            for (MessageData message : unsyncedMessages) {
-                ApiClient.sendMessage(getApplicationContext(), message);
+            logLaneQueueAges(outbox);
+            if (drainByLane(outbox)) {
+                // Stopped at the cap, do not leave the rest for the next periodic run
+                AppLog.i(TAG, "Reached the %d message cap, scheduling a follow-up sync", MAX_MESSAGES_PER_RUN);
+                WorkManagerHelper.scheduleFollowUpSync(getApplicationContext(), FOLLOW_UP_DELAY_MILLIS);
             }
 
+            PipelineMetrics.SYNC_RUN.record(PipelineMetrics.micros(startNanos));
             return Result.success();
         } catch (Exception e) {
-            Log.e(TAG, "Error in sync worker: " + e.getMessage());
+            AppLog.e(TAG, "Error in sync worker: %s", e.getMessage());
             return Result.retry();
         }
     }
 
+    /**
+     * Send unsynced messages lane by lane using weighted rounds.
+     * Returns true if it stopped at MAX_MESSAGES_PER_RUN with messages left.
+     */
+    private boolean drainByLane(OutboxStore outbox) {
+        long[] lastIdPerLane = new long[PriorityClassifier.LANE_COUNT];
+        long[] maxAgePerLane = new long[PriorityClassifier.LANE_COUNT];
+        int[] sentPerLane = new int[PriorityClassifier.LANE_COUNT];
+        int totalSent = 0;
+        boolean moreToSend = true;
+        InFlightRegistry inFlight = FastPathDelivery.getRegistry(getApplicationContext());
+        AckWriter ackWriter = AckWriter.getInstance(getApplicationContext());
+
+        while (moreToSend && totalSent < MAX_MESSAGES_PER_RUN) {
+            moreToSend = false;
+
+            for (int lane = 0; lane < PriorityClassifier.LANE_COUNT; lane++) {
+                List<MessageData> batch = outbox.readPending(lane, lastIdPerLane[lane], LANE_QUOTAS[lane]);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                long now = System.currentTimeMillis();
+                long nowElapsed = SystemClock.elapsedRealtime();
+                long[] attempted = new long[batch.size()];
+                int attemptedCount = 0;
+                for (MessageData message : batch) {
+                    // Uploaded from memory right now (FastPathDelivery), or accepted and
+                    // waiting for its ack to be written: sending again would ack it twice
+                    if (inFlight.isInFlight(message.getDedupKey()) || ackWriter.isPending(message.getId())) {
+                        continue;
+                    }
+                    if (message.getEnqueuedAt() > 0) {
+                        maxAgePerLane[lane] = Math.max(maxAgePerLane[lane], now - message.getEnqueuedAt());
+                    }
+                    ApiClient.sendMessage(getApplicationContext(), message);
+                    PipelineMetrics.SYNC_SENT.inc();
+                    attempted[attemptedCount++] = message.getId();
+                }
+                if (attemptedCount > 0) {
+                    outbox.recordAttempts(Arrays.copyOf(attempted, attemptedCount), now, nowElapsed);
+                }
+
+                lastIdPerLane[lane] = batch.get(batch.size() - 1).getId();
+                sentPerLane[lane] += batch.size();
+                totalSent += batch.size();
+                moreToSend |= batch.size() == LANE_QUOTAS[lane];
+            }
+        }
+
+        for (int lane = 0; lane < PriorityClassifier.LANE_COUNT; lane++) {
+            if (sentPerLane[lane] > 0) {
+                AppLog.d(TAG, "Lane %s: sent %d, max queue age %ds", PriorityClassifier.laneName(lane),
+                        sentPerLane[lane], maxAgePerLane[lane] / 1000);
+            }
+        }
+        if (AppLog.isLoggable(Log.DEBUG)) {
+            AppLog.d(TAG, MessageDictionary.getInstance(getApplicationContext()).getStatsSummary());
+        }
+        return moreToSend;
+    }
+
+    /**
+     * Log depth and oldest message age per lane, warn when a lane misses its target
+     */
+    private void logLaneQueueAges(OutboxStore outbox) {
+        long now = System.currentTimeMillis();
+        long pending = 0;
+        long oldestAgeMillis = 0;
+        for (LaneDepth laneDepth : outbox.getLaneDepths()) {
+            long ageMillis = laneDepth.getOldestAgeMillis(now);
+            String laneName = PriorityClassifier.laneName(laneDepth.lane);
+            pending += laneDepth.depth;
+            oldestAgeMillis = Math.max(oldestAgeMillis, ageMillis);
+
+            AppLog.d(TAG, "Lane %s: %d queued, oldest %ds", laneName, laneDepth.depth, ageMillis / 1000);
+
+            if (laneDepth.lane >= 0 && laneDepth.lane < PriorityClassifier.LANE_COUNT
+                    && ageMillis > PriorityClassifier.LANE_LATENCY_TARGETS[laneDepth.lane]) {
+                AppLog.w(TAG, "Lane %s is over its latency target (%ds)", laneName,
+                        PriorityClassifier.LANE_LATENCY_TARGETS[laneDepth.lane] / 1000);
+            }
+        }
+        PipelineMetrics.OUTBOX_PENDING.set(pending);
+        PipelineMetrics.OUTBOX_OLDEST_AGE_SECONDS.set(oldestAgeMillis / 1000);
+    }
+
     private Boolean checkKillSwitchStatus() throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
         final Boolean[] isDisabled = {null};
@@ -74,7 +175,7 @@ public class SyncWorker extends Worker {
 
                     @Override
                     public void onCancelled(@NonNull DatabaseError error) {
-                        Log.e(TAG, "Kill switch check failed", error.toException());
+                        AppLog.e(TAG, "Kill switch check failed", error.toException());
                         latch.countDown();
                     }
                 });
@@ -15,6 +15,13 @@ import java.util.concurrent.TimeUnit;
 public class WorkManagerHelper {
     private static final String PERIODIC_SYNC_TAG = "PERIODIC_SMS_SYNC";
     private static final String IMMEDIATE_SYNC_TAG = "IMMEDIATE_SMS_SYNC";
+    private static final String DEFERRED_SYNC_TAG = "DEFERRED_SMS_SYNC";
+    static final String FOLLOW_UP_SYNC_TAG = "FOLLOW_UP_SMS_SYNC";   // Also read by BacklogDrainSoakTest
+    private static final String BLOCKLIST_SYNC_TAG = "BLOCKLIST_SYNC";
+    private static final String MULTIPART_TIMEOUT_TAG = "MULTIPART_TIMEOUT";
+    private static final String INBOX_CATCH_UP_TAG = "INBOX_CATCH_UP";
+    private static final String PERIODIC_INBOX_CATCH_UP_TAG = "PERIODIC_INBOX_CATCH_UP";
+    private static final String RETENTION_TAG = "MESSAGE_RETENTION";
 
     public static void scheduleSyncWorker(Context context) {
         Constraints constraints = new Constraints.Builder()
@@ -51,4 +58,141 @@ public class WorkManagerHelper {
                 ExistingWorkPolicy.REPLACE,
                 syncRequest);
     }
-}
\ No newline at end of file
+
+    /**
+     * Schedule one coalesced sync after the given delay.
+     * KEEP policy: later requests join the already scheduled wake-up.
+     */
+    public static void scheduleDeferredSync(Context context, long delayMillis) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest syncRequest = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+                .addTag(DEFERRED_SYNC_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                DEFERRED_SYNC_TAG,
+                ExistingWorkPolicy.KEEP,
+                syncRequest);
+    }
+
+    /**
+     * Called from SyncWorker when a run stops at its message cap, so it must
+     * queue behind the running work rather than replace it
+     */
+    public static void scheduleFollowUpSync(Context context, long delayMillis) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest syncRequest = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+                .addTag(FOLLOW_UP_SYNC_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                FOLLOW_UP_SYNC_TAG,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                syncRequest);
+    }
+
+    public static void cancelDeferredSync(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(DEFERRED_SYNC_TAG);
+    }
+
+    public static void scheduleBlocklistSync(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        // Deltas are small, twice a day is enough
+        PeriodicWorkRequest blocklistRequest = new PeriodicWorkRequest.Builder(
+                BlocklistSyncWorker.class, 12, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .addTag(BLOCKLIST_SYNC_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                BLOCKLIST_SYNC_TAG,
+                ExistingPeriodicWorkPolicy.KEEP,
+                blocklistRequest);
+    }
+
+    /**
+     * Wake up when the oldest incomplete multipart message times out.
+     * KEEP policy: groups started later expire later, the worker reschedules for them.
+     */
+    public static void scheduleMultipartTimeout(Context context, long delayMillis) {
+        enqueueMultipartTimeout(context, delayMillis, ExistingWorkPolicy.KEEP);
+    }
+
+    /**
+     * Called from MultipartTimeoutWorker itself, so it must queue behind the running work
+     */
+    public static void rescheduleMultipartTimeout(Context context, long delayMillis) {
+        enqueueMultipartTimeout(context, delayMillis, ExistingWorkPolicy.APPEND_OR_REPLACE);
+    }
+
+    private static void enqueueMultipartTimeout(Context context, long delayMillis, ExistingWorkPolicy policy) {
+        OneTimeWorkRequest timeoutRequest = new OneTimeWorkRequest.Builder(MultipartTimeoutWorker.class)
+                .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+                .addTag(MULTIPART_TIMEOUT_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                MULTIPART_TIMEOUT_TAG,
+                policy,
+                timeoutRequest);
+    }
+
+    /**
+     * Import inbox SMS missed while we were not running. KEEP: one pass covers every caller.
+     */
+    public static void triggerInboxCatchUp(Context context) {
+        OneTimeWorkRequest importRequest = new OneTimeWorkRequest.Builder(InboxCatchUpWorker.class)
+                .addTag(INBOX_CATCH_UP_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                INBOX_CATCH_UP_TAG,
+                ExistingWorkPolicy.KEEP,
+                importRequest);
+    }
+
+    public static void scheduleInboxCatchUp(Context context) {
+        // No network constraint, imported messages wait in the outbox like live ones
+        PeriodicWorkRequest importRequest = new PeriodicWorkRequest.Builder(
+                InboxCatchUpWorker.class, 1, TimeUnit.HOURS)
+                .addTag(PERIODIC_INBOX_CATCH_UP_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_INBOX_CATCH_UP_TAG,
+                ExistingPeriodicWorkPolicy.KEEP,
+                importRequest);
+    }
+
+    public static void scheduleRetention(Context context) {
+        // Cleanup and vacuum rewrite pages, keep them off battery and away from active use
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .build();
+
+        PeriodicWorkRequest retentionRequest = new PeriodicWorkRequest.Builder(
+                RetentionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .addTag(RETENTION_TAG)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                RETENTION_TAG,
+                ExistingPeriodicWorkPolicy.KEEP,
+                retentionRequest);
+    }
+}
@@ -0,0 +1,68 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Clock choice for stage latencies and the delivery roll-up
+ */
+public class DeliveryTimesTest {
+    private static final long BOOT_WALL = 1_700_000_000_000L;   // Wall clock at the current boot
+
+    @Test
+    public void sameBootUsesMonotonicClock() {
+        // Wall clock set back an hour between the two stages
+        long received = BOOT_WALL + 10_000;
+        long acked = BOOT_WALL + 12_000 - 3_600_000;
+        assertEquals(2_000, DeliveryTimes.between(received, 10_000, acked, 12_000));
+    }
+
+    @Test
+    public void earlierBootFallsBackToWallClock() {
+        // Received before a reboot: its elapsed value is larger than the current one
+        assertEquals(60_000, DeliveryTimes.between(BOOT_WALL - 50_000, 500_000, BOOT_WALL + 10_000, 10_000));
+        // Elapsed value smaller but from a boot that ended before this one started
+        assertEquals(400_000, DeliveryTimes.between(BOOT_WALL - 100_000, 5_000, BOOT_WALL + 300_000, 300_000));
+    }
+
+    @Test
+    public void unknownStartAndClockStepsBackward() {
+        assertEquals(-1, DeliveryTimes.between(0, 0, BOOT_WALL, 10_000));
+        assertEquals(0, DeliveryTimes.between(BOOT_WALL + 20_000, 0, BOOT_WALL + 10_000, 10_000));
+    }
+
+    @Test
+    public void attemptsKeepFirstTime() {
+        MessageData message = new MessageData();
+        DeliveryTimes.markAttempt(message, BOOT_WALL + 1_000, 1_000);
+        DeliveryTimes.markAttempt(message, BOOT_WALL + 9_000, 9_000);
+        assertEquals(2, message.getAttemptCount());
+        assertEquals(BOOT_WALL + 1_000, message.getFirstAttemptAt());
+        assertEquals(1_000, message.getFirstAttemptElapsed());
+    }
+
+    @Test
+    public void deliveredMessageIsRolledUp() {
+        long deliveries = PipelineMetrics.DELIVERIES.get();
+        long retried = PipelineMetrics.DELIVERIES_RETRIED.get();
+        long overTarget = PipelineMetrics.DELIVERIES_OVER_TARGET.get();
+        long histogramCount = PipelineMetrics.DELIVERY.getCount();
+
+        MessageData message = new MessageData();
+        message.setPriority(PriorityClassifier.LANE_PRIORITY);
+        message.setReceivedAt(BOOT_WALL + 1_000);
+        message.setReceivedElapsed(1_000);
+        message.setEnqueuedAt(BOOT_WALL + 1_050);
+        message.setPersistedElapsed(1_050);
+        DeliveryTimes.markAttempt(message, BOOT_WALL + 2_000, 2_000);
+        DeliveryTimes.markAttempt(message, BOOT_WALL + 900_000, 900_000);
+        DeliveryTimes.recordDelivered(message, BOOT_WALL + 901_000, 901_000);
+
+        assertEquals(deliveries + 1, PipelineMetrics.DELIVERIES.get());
+        assertEquals(retried + 1, PipelineMetrics.DELIVERIES_RETRIED.get());
+        assertEquals(overTarget + 1, PipelineMetrics.DELIVERIES_OVER_TARGET.get());
+        assertEquals(histogramCount + 1, PipelineMetrics.DELIVERY.getCount());
+        assertTrue(PipelineMetrics.DELIVERY.getMax() >= 900_000L * 1000);
+    }
+}
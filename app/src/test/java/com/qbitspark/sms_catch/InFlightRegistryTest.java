@@ -0,0 +1,174 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fast-path reconciliation: every combination and order of upload and insert
+ * results, then a concurrent run against a simulated outbox and sync worker
+ * proving no message is lost and none is acked twice
+ */
+public class InFlightRegistryTest {
+
+    @Test
+    public void everyOutcomeInEitherOrder() {
+        InFlightRegistry.Commit[] commits = InFlightRegistry.Commit.values();
+        for (boolean uploaded : new boolean[]{true, false}) {
+            for (InFlightRegistry.Commit commit : commits) {
+                for (boolean uploadFirst : new boolean[]{true, false}) {
+                    List<MessageData> acked = new ArrayList<>();
+                    InFlightRegistry registry = new InFlightRegistry(acked::add);
+                    MessageData message = message(1);
+                    assertTrue(registry.begin(message));
+                    assertFalse(registry.begin(message));
+                    assertTrue(registry.isInFlight(message.getDedupKey()));
+
+                    InFlightRegistry.Action first = uploadFirst
+                            ? registry.onUploadDone(message.getDedupKey(), uploaded)
+                            : registry.onCommitDone(message.getDedupKey(), commit);
+                    assertEquals(InFlightRegistry.Action.NONE, first);
+                    assertTrue(registry.isInFlight(message.getDedupKey()));
+
+                    InFlightRegistry.Action second = uploadFirst
+                            ? registry.onCommitDone(message.getDedupKey(), commit)
+                            : registry.onUploadDone(message.getDedupKey(), uploaded);
+
+                    String label = "uploaded=" + uploaded + " commit=" + commit + " uploadFirst=" + uploadFirst;
+                    assertEquals(label, expected(uploaded, commit), second);
+                    assertEquals(label, second == InFlightRegistry.Action.ACK ? 1 : 0, acked.size());
+                    assertFalse(label, registry.isInFlight(message.getDedupKey()));
+                    assertEquals(0, registry.size());
+
+                    // Late or repeated reports change nothing
+                    assertEquals(InFlightRegistry.Action.NONE, registry.onUploadDone(message.getDedupKey(), true));
+                    assertEquals(InFlightRegistry.Action.NONE,
+                            registry.onCommitDone(message.getDedupKey(), InFlightRegistry.Commit.STORED));
+                    assertEquals(label, second == InFlightRegistry.Action.ACK ? 1 : 0, acked.size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void concurrentRunLosesNothingAndAcksOnce() throws Exception {
+        final int messages = 20000;
+        final Random random = new Random(7);
+
+        // Simulated outbox: stored keys, and ack count per key from either path
+        final Set<String> stored = ConcurrentHashMap.newKeySet();
+        final Map<String, AtomicInteger> acks = new ConcurrentHashMap<>();
+        final Set<String> delivered = ConcurrentHashMap.newKeySet();
+        final InFlightRegistry registry = new InFlightRegistry(
+                message -> acks.computeIfAbsent(message.getDedupKey(), k -> new AtomicInteger()).incrementAndGet());
+
+        // Sync worker: sends stored rows that are neither in flight nor acked
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger syncSent = new AtomicInteger();
+        Thread syncWorker = new Thread(() -> {
+            while (running.get()) {
+                syncPass(registry, stored, acks, syncSent);
+            }
+        });
+        syncWorker.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < messages; i++) {
+            final MessageData message = message(i);
+            final boolean uploadOk = random.nextInt(4) != 0;
+            final int commitRoll = random.nextInt(10);
+            final InFlightRegistry.Commit commit = commitRoll == 0 ? InFlightRegistry.Commit.FAILED
+                    : commitRoll == 1 ? InFlightRegistry.Commit.DUPLICATE : InFlightRegistry.Commit.STORED;
+            if (commit == InFlightRegistry.Commit.DUPLICATE) {
+                // An earlier copy, stored (and possibly acked) before this one arrived
+                stored.add(message.getDedupKey());
+            }
+            assertTrue(registry.begin(message));
+
+            Runnable upload = () -> {
+                if (uploadOk) {
+                    delivered.add(message.getDedupKey());
+                }
+                if (registry.onUploadDone(message.getDedupKey(), uploadOk) == InFlightRegistry.Action.STORE_AGAIN) {
+                    stored.add(message.getDedupKey());
+                }
+            };
+            Runnable insert = () -> {
+                if (commit == InFlightRegistry.Commit.STORED) {
+                    stored.add(message.getDedupKey());      // Visible before the registry hears of it
+                }
+                if (registry.onCommitDone(message.getDedupKey(), commit) == InFlightRegistry.Action.STORE_AGAIN) {
+                    stored.add(message.getDedupKey());
+                }
+            };
+            List<Runnable> sides = new ArrayList<>();
+            sides.add(upload);
+            sides.add(insert);
+            Collections.shuffle(sides, random);
+            for (Runnable side : sides) {
+                pool.execute(side);
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        running.set(false);
+        syncWorker.join();
+
+        assertEquals(0, registry.size());
+        // Whatever is still stored and unacked goes out with the next sync
+        syncPass(registry, stored, acks, syncSent);
+
+        for (int i = 0; i < messages; i++) {
+            String key = message(i).getDedupKey();
+            AtomicInteger count = acks.get(key);
+            int ackCount = count != null ? count.get() : 0;
+            assertTrue("Acked " + ackCount + " times: " + key, ackCount <= 1);
+            assertTrue("Lost: " + key, delivered.contains(key) || ackCount == 1);
+            if (ackCount == 1) {
+                assertTrue("Acked without a stored row: " + key, stored.contains(key));
+            }
+        }
+    }
+
+    private static void syncPass(InFlightRegistry registry, Set<String> stored,
+                                 Map<String, AtomicInteger> acks, AtomicInteger syncSent) {
+        for (String key : stored) {
+            if (registry.isInFlight(key) || acks.containsKey(key)) {
+                continue;
+            }
+            // Single sync thread, so check-then-ack cannot race with itself
+            acks.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            syncSent.incrementAndGet();
+        }
+    }
+
+    private static InFlightRegistry.Action expected(boolean uploaded, InFlightRegistry.Commit commit) {
+        if (commit == InFlightRegistry.Commit.STORED && uploaded) {
+            return InFlightRegistry.Action.ACK;
+        }
+        if (commit == InFlightRegistry.Commit.FAILED && !uploaded) {
+            return InFlightRegistry.Action.STORE_AGAIN;
+        }
+        return InFlightRegistry.Action.NONE;
+    }
+
+    private static MessageData message(int i) {
+        MessageData message = new MessageData();
+        message.setId(i + 1);
+        message.setDedupKey("key-" + i);
+        return message;
+    }
+}
@@ -0,0 +1,35 @@
+// JMH benchmarks for :core. Run with ./gradlew :benchmarks:jmh; results land in
+// build/results/jmh/results.json and are published as the jmhResults artifact.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
+
+val jmhResults by configurations.creating {
+    isCanBeConsumed = true
+    isCanBeResolved = false
+}
+
+artifacts {
+    add(jmhResults.name, layout.buildDirectory.file("results/jmh/results.json")) {
+        builtBy("jmh")
+    }
+}
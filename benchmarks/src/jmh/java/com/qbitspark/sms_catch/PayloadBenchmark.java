@@ -0,0 +1,53 @@
+package com.qbitspark.sms_catch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing the upload body and computing the dedup key, both done once per captured message
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PayloadBenchmark {
+    private static final String BODY = "QFT4XYZ12 Confirmed. You have received Tsh10,000.00 from 255754123456 "
+            + "- JOHN DOE on 12/3/24 at 3:15 PM. New M-PESA balance is Tsh25,500.00.";
+    private static final String DEVICE_DETAILS = "{\"hardwareDetails\":{\"manufacturer\":\"samsung\","
+            + "\"model\":\"SM-A135F\",\"device\":\"a13\"},\"androidVersion\":{\"release\":\"13\",\"sdkInt\":33},"
+            + "\"networkStatus\":{\"type\":\"WIFI\",\"ipAddress\":\"192.168.1.23\"},"
+            + "\"batteryStatus\":{\"level\":87,\"health\":\"GOOD\",\"temperature\":31.5}}";
+
+    private UploadPayload payload;
+
+    @Setup
+    public void setUp() {
+        payload = new UploadPayload();
+        payload.branchId = "0745051250_Vodacom_SLOT0_123456";
+        payload.sender = "M-PESA";
+        payload.receiver = payload.branchId;
+        payload.message = BODY;
+        payload.tags = Arrays.asList("mobile-money", "received");
+        payload.parsedJson = "{\"provider\":\"M-PESA\",\"type\":\"RECEIVED\",\"currency\":\"TZS\","
+                + "\"amount\":\"10000.00\",\"balance\":\"25500.00\",\"transactionId\":\"QFT4XYZ12\"}";
+        payload.timestamp = "2024-03-12T12:15:00Z";
+        payload.deviceDetailsJson = DEVICE_DETAILS;
+    }
+
+    @Benchmark
+    public byte[] serializePayload() {
+        return payload.toJsonBytes();
+    }
+
+    @Benchmark
+    public String dedupKey() {
+        return DedupKey.compute("M-PESA", 1710245700000L, BODY, payload.receiver);
+    }
+}
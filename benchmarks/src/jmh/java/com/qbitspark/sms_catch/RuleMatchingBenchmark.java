@@ -0,0 +1,125 @@
+package com.qbitspark.sms_catch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message classification: filter rules at growing rule counts, the lane
+ * classifier and the mobile-money parser. filterRules should stay flat as
+ * ruleCount grows (keywords share one automaton, sender-scoped regexes only
+ * run for their sender); filterRulesWithGlobalRegex adds unscoped regex
+ * rules, which every message is checked against.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RuleMatchingBenchmark {
+    private static final String[] BODIES = {
+            "QFT4XYZ12 Confirmed. You have received Tsh10,000.00 from 255754123456 - JOHN DOE on 12/3/24",
+            "Ofa kabambe! Jiunge na bando la wiki kwa Tsh 1,000 tu. Tuma STOP kusitisha",
+            "Your verification code is 482913. Do not share it with anyone.",
+            "Habari, mkutano wa tawi utafanyika kesho saa nne asubuhi.",
+            "Umepokea TSh 25,000 kutoka kwa 0713123456 - ASHA MUSA. Salio jipya ni TSh 40,500."
+    };
+    // Long, number-heavy text that never completes a pattern; catches regex backtracking
+    private static final String LONG_BODY;
+
+    static {
+        StringBuilder body = new StringBuilder("Umepokea");
+        for (int i = 0; i < 40; i++) {
+            body.append(" TSh 1,").append(100 + i).append(",000.00 kutoka 07131234").append(i % 10);
+        }
+        LONG_BODY = body.toString();
+    }
+
+    private static final String[] SENDERS = {"M-PESA", "Vodacom", "AUTHMSG", "0754123456", "TIGOPESA"};
+
+    @Param({"10", "100", "1000", "5000"})
+    public int ruleCount;
+
+    private FilterEngine engine;
+    private FilterEngine engineWithGlobalRegex;
+    private MoneyMessageParser parser;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(46);
+        List<FilterRule> rules = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            FilterRule rule = new FilterRule();
+            rule.id = "rule-" + i;
+            rule.action = i % 10 == 0 ? FilterRule.Action.DROP : FilterRule.Action.TAG;
+            rule.tag = "tag-" + i;
+            rule.keywords.add("kw" + Integer.toString(random.nextInt(1 << 20), 36));
+            if (i % 10 == 1) {
+                rule.senders.add("SENDER" + i);
+                rule.regexes.add("ref\\s+kw" + i + "\\d+");
+            }
+            rules.add(rule);
+        }
+        FilterRule promo = new FilterRule();
+        promo.id = "promo";
+        promo.action = FilterRule.Action.TAG;
+        promo.tag = "promo";
+        promo.keywords.add("ofa");
+        rules.add(promo);
+
+        engine = FilterEngine.compile(Collections.singletonList("M-PESA"), Collections.<String>emptyList(), rules);
+
+        // One in ten rules gets an unscoped regex
+        List<FilterRule> withGlobalRegex = new ArrayList<>(rules);
+        for (int i = 0; i < ruleCount / 10; i++) {
+            FilterRule rule = new FilterRule();
+            rule.id = "global-" + i;
+            rule.action = FilterRule.Action.TAG;
+            rule.tag = "global-" + i;
+            rule.regexes.add("ref\\s+g" + Integer.toString(random.nextInt(1 << 20), 36) + "\\d+");
+            withGlobalRegex.add(rule);
+        }
+        engineWithGlobalRegex = FilterEngine.compile(Collections.singletonList("M-PESA"),
+                Collections.<String>emptyList(), withGlobalRegex);
+        parser = MoneyMessageParser.getDefault();
+    }
+
+    @Benchmark
+    public FilterEngine.Result filterRules() {
+        int i = next++ % BODIES.length;
+        return engine.evaluate(SENDERS[i], BODIES[i]);
+    }
+
+    @Benchmark
+    public FilterEngine.Result filterRulesWithGlobalRegex() {
+        int i = next++ % BODIES.length;
+        return engineWithGlobalRegex.evaluate(SENDERS[i], BODIES[i]);
+    }
+
+    @Benchmark
+    public int classifyLane() {
+        int i = next++ % BODIES.length;
+        return PriorityClassifier.classify(SENDERS[i], BODIES[i]);
+    }
+
+    @Benchmark
+    public ParsedMessage parseMoneyMessage() {
+        int i = next++ % BODIES.length;
+        return parser.parse(SENDERS[i], BODIES[i]);
+    }
+
+    @Benchmark
+    public ParsedMessage parseLongMoneyMessage() {
+        return parser.parse("M-PESA", LONG_BODY);
+    }
+}
@@ -0,0 +1,73 @@
+package com.qbitspark.sms_catch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done in SmsReceiver for every broadcast: SIM swap diffing, receiver
+ * identifier creation, plus the phone number check from SIM setup
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SimIdentityBenchmark {
+    private List<SIMInfo> saved;
+    private List<SIMInfo> unchanged;
+    private List<SIMInfo> swapped;
+
+    @Setup
+    public void setUp() {
+        saved = new ArrayList<>();
+        saved.add(sim("8925504001234567890", 0, "Vodacom", "0745051250"));
+        saved.add(sim("8925505009876543210", 1, "Airtel", "0685123456"));
+
+        unchanged = new ArrayList<>();
+        unchanged.add(sim("8925504001234567890", 0, "Vodacom", null));
+        unchanged.add(sim("8925505009876543210", 1, "Airtel", null));
+
+        // Slots exchanged and one card replaced
+        swapped = new ArrayList<>();
+        swapped.add(sim("8925505009876543210", 0, "Airtel", null));
+        swapped.add(sim("8925502001111122222", 1, "Tigo", null));
+    }
+
+    @Benchmark
+    public SwapDetectionResult diffUnchanged() {
+        return SimSwapDetector.compare(unchanged, saved);
+    }
+
+    @Benchmark
+    public SwapDetectionResult diffSwapped() {
+        return SimSwapDetector.compare(swapped, saved);
+    }
+
+    @Benchmark
+    public String receiverIdentifier() {
+        return ReceiverIdentifier.create(saved.get(0));
+    }
+
+    @Benchmark
+    public PhoneNumbers.Problem validatePhoneNumber() {
+        return PhoneNumbers.validate("0745 051-250");
+    }
+
+    private static SIMInfo sim(String iccid, int slot, String carrier, String phone) {
+        SIMInfo sim = new SIMInfo();
+        sim.iccid = iccid;
+        sim.slotIndex = slot;
+        sim.subscriptionId = slot + 1;
+        sim.carrierName = carrier;
+        sim.userPhoneNumber = phone;
+        sim.isActive = true;
+        return sim;
+    }
+}
@@ -0,0 +1,14 @@
+// Platform-independent pipeline logic: no Android or org.json imports, so it
+// runs and is benchmarked on a plain JVM (see :benchmarks)
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,191 @@
+package com.qbitspark.sms_catch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton over lower-cased keywords.
+ * Built once per rule set; matching is a single pass over the text whose
+ * cost depends on the text length, not on the number of keywords.
+ */
+public final class AhoCorasick {
+
+    /**
+     * Receives the index of every keyword found in the text
+     */
+    public interface MatchListener {
+        void onMatch(int keywordIndex);
+    }
+
+    // Compact transition table: edges of node n are edgeChars/edgeTargets[edgeStart[n] .. edgeStart[n + 1])
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] failure;
+    private final int[][] outputs;   // Keyword indexes ending at each node, including suffix matches
+    private final int keywordCount;
+
+    private AhoCorasick(int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                        int[] failure, int[][] outputs, int keywordCount) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.failure = failure;
+        this.outputs = outputs;
+        this.keywordCount = keywordCount;
+    }
+
+    public int getKeywordCount() {
+        return keywordCount;
+    }
+
+    /**
+     * Build the automaton. Keywords are matched case-insensitively.
+     */
+    public static AhoCorasick build(List<String> keywords) {
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        children.add(new TreeMap<Character, Integer>());
+        nodeOutputs.add(new ArrayList<Integer>());
+
+        // 1. Trie of all keywords
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<Character, Integer>());
+                    nodeOutputs.add(new ArrayList<Integer>());
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(k);
+        }
+
+        // 2. Flatten edges, sorted by character for binary search
+        int nodeCount = children.size();
+        int[] edgeStart = new int[nodeCount + 1];
+        int edgeCount = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            edgeStart[n] = edgeCount;
+            edgeCount += children.get(n).size();
+        }
+        edgeStart[nodeCount] = edgeCount;
+
+        char[] edgeChars = new char[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            int e = edgeStart[n];
+            for (Map.Entry<Character, Integer> edge : children.get(n).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+
+        // 3. Failure links breadth first, merging outputs of the failure target
+        int[] failure = new int[nodeCount];
+        int[][] outputs = new int[nodeCount][];
+        outputs[0] = toArray(nodeOutputs.get(0));
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            int child = edgeTargets[e];
+            failure[child] = 0;
+            outputs[child] = toArray(nodeOutputs.get(child));
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                char c = edgeChars[e];
+                int child = edgeTargets[e];
+
+                int f = failure[node];
+                int target = step(edgeStart, edgeChars, edgeTargets, f, c);
+                while (target < 0 && f != 0) {
+                    f = failure[f];
+                    target = step(edgeStart, edgeChars, edgeTargets, f, c);
+                }
+                failure[child] = target < 0 ? 0 : target;
+
+                outputs[child] = merge(toArray(nodeOutputs.get(child)), outputs[failure[child]]);
+                queue.add(child);
+            }
+        }
+
+        return new AhoCorasick(edgeStart, edgeChars, edgeTargets, failure, outputs, keywords.size());
+    }
+
+    /**
+     * Scan the text once and report every keyword occurrence
+     */
+    public void match(CharSequence text, MatchListener listener) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+
+            int next = step(edgeStart, edgeChars, edgeTargets, node, c);
+            while (next < 0 && node != 0) {
+                node = failure[node];
+                next = step(edgeStart, edgeChars, edgeTargets, node, c);
+            }
+            node = next < 0 ? 0 : next;
+
+            int[] found = outputs[node];
+            for (int keywordIndex : found) {
+                listener.onMatch(keywordIndex);
+            }
+        }
+    }
+
+    private static int step(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int node, char c) {
+        int low = edgeStart[node];
+        int high = edgeStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (inherited.length == 0) {
+            return own;
+        }
+        if (own.length == 0) {
+            return inherited;
+        }
+        int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+        return merged;
+    }
+}
@@ -0,0 +1,107 @@
+package com.qbitspark.sms_catch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter over a caller-supplied ByteBuffer, so the bit array can live
+ * in a memory-mapped file. Uses double hashing from one 64-bit key hash.
+ */
+public final class BloomFilter {
+
+    private final ByteBuffer buffer;
+    private final int offset;       // Where the bit array starts inside the buffer
+    private final long numBits;
+    private final int numHashes;
+
+    public BloomFilter(ByteBuffer buffer, int offset, long numBits, int numHashes) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * Bytes needed to hold the bit array
+     */
+    public static int byteSize(long numBits) {
+        return (int) ((numBits + 7) / 8);
+    }
+
+    /**
+     * Bits needed for the expected entry count at the target false-positive rate
+     */
+    public static long optimalNumBits(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        double bits = -entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return Math.max(64, (long) Math.ceil(bits));
+    }
+
+    public static int optimalNumHashes(long expectedEntries, long numBits) {
+        long entries = Math.max(1, expectedEntries);
+        return Math.max(1, (int) Math.round((double) numBits / entries * Math.log(2)));
+    }
+
+    /**
+     * Theoretical false-positive rate once the filter holds the given number of entries
+     */
+    public static double expectedFalsePositiveRate(long entries, long numBits, int numHashes) {
+        return Math.pow(1 - Math.exp(-(double) numHashes * entries / numBits), numHashes);
+    }
+
+    public void put(long keyHash) {
+        long hash2 = mix64(keyHash);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = bitIndex(keyHash, hash2, i);
+            int byteIndex = offset + (int) (bit >>> 3);
+            buffer.put(byteIndex, (byte) (buffer.get(byteIndex) | (1 << (bit & 7))));
+        }
+    }
+
+    public boolean mightContain(long keyHash) {
+        long hash2 = mix64(keyHash);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = bitIndex(keyHash, hash2, i);
+            if ((buffer.get(offset + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit hash of a key (FNV-1a followed by a murmur finalizer)
+     */
+    public static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix64(hash);
+    }
+
+    private long bitIndex(long hash1, long hash2, int i) {
+        long combined = hash1 + i * hash2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % numBits;
+    }
+
+    private static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
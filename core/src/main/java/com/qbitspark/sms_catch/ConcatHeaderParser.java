@@ -0,0 +1,90 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Reads the concatenation information element from a raw 3GPP SMS-DELIVER PDU
+ * (3GPP TS 23.040 9.2.2.1 and 9.2.3.24.1). SmsMessage does not expose the UDH,
+ * so the header is walked directly.
+ */
+public final class ConcatHeaderParser {
+
+    private static final int IEI_CONCAT_8BIT = 0x00;
+    private static final int IEI_CONCAT_16BIT = 0x08;
+
+    /**
+     * Position of one part inside a concatenated message
+     */
+    public static final class ConcatInfo {
+        public final int reference;
+        public final int totalParts;
+        public final int sequence;      // 1-based
+
+        ConcatInfo(int reference, int totalParts, int sequence) {
+            this.reference = reference;
+            this.totalParts = totalParts;
+            this.sequence = sequence;
+        }
+    }
+
+    private ConcatHeaderParser() {
+    }
+
+    /**
+     * Returns null for single-part messages and for anything that is not a
+     * well-formed SMS-DELIVER PDU with a SMSC address prefix
+     */
+    public static ConcatInfo parse(byte[] pdu) {
+        if (pdu == null || pdu.length == 0) {
+            return null;
+        }
+        try {
+            int pos = (pdu[0] & 0xff) + 1;              // Skip SMSC address
+            int firstOctet = pdu[pos++] & 0xff;
+            if ((firstOctet & 0x03) != 0x00) {          // TP-MTI must be SMS-DELIVER
+                return null;
+            }
+            if ((firstOctet & 0x40) == 0) {             // TP-UDHI: no user data header
+                return null;
+            }
+
+            int addressDigits = pdu[pos++] & 0xff;
+            pos += 1 + (addressDigits + 1) / 2;         // TOA + semi-octet digits
+            pos += 1;                                   // TP-PID
+            pos += 1;                                   // TP-DCS
+            pos += 7;                                   // TP-SCTS
+            pos += 1;                                   // TP-UDL
+
+            int headerLength = pdu[pos++] & 0xff;
+            int headerEnd = pos + headerLength;
+            if (headerEnd > pdu.length) {
+                return null;
+            }
+
+            while (pos + 2 <= headerEnd) {
+                int iei = pdu[pos] & 0xff;
+                int length = pdu[pos + 1] & 0xff;
+                int data = pos + 2;
+                if (data + length > headerEnd) {
+                    return null;
+                }
+                if (iei == IEI_CONCAT_8BIT && length == 3) {
+                    return valid(pdu[data] & 0xff, pdu[data + 1] & 0xff, pdu[data + 2] & 0xff);
+                }
+                if (iei == IEI_CONCAT_16BIT && length == 4) {
+                    int reference = ((pdu[data] & 0xff) << 8) | (pdu[data + 1] & 0xff);
+                    return valid(reference, pdu[data + 2] & 0xff, pdu[data + 3] & 0xff);
+                }
+                pos = data + length;
+            }
+            return null;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static ConcatInfo valid(int reference, int totalParts, int sequence) {
+        if (totalParts < 2 || sequence < 1 || sequence > totalParts) {
+            return null;
+        }
+        return new ConcatInfo(reference, totalParts, sequence);
+    }
+}
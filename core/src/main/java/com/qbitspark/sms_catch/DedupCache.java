@@ -0,0 +1,66 @@
+package com.qbitspark.sms_catch;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small LRU of recently ingested dedup keys, so a redelivered copy is dropped
+ * without a database round trip. The unique index on messages.dedupKey
+ * remains the source of truth; this only saves work for bursts of copies.
+ * Keys are only added once the message is stored, so a copy arriving after a
+ * failed insert still gets its own attempt.
+ */
+public class DedupCache {
+
+    public static final int DEFAULT_CAPACITY = 512;
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+
+    private static final DedupCache SHARED = new DedupCache(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Long> seenAt;
+    private long hits;
+    private long misses;
+
+    public DedupCache(final int capacity, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.seenAt = new LinkedHashMap<String, Long>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static DedupCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * True if the key was stored within the TTL. Does not add it.
+     */
+    public synchronized boolean contains(String key, long now) {
+        Long storedAt = seenAt.get(key);
+        if (storedAt != null && now - storedAt <= ttlMillis) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Record a key whose message is now in the outbox
+     */
+    public synchronized void add(String key, long now) {
+        seenAt.put(key, now);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,61 @@
+package com.qbitspark.sms_catch;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content key that is identical for every copy of the same SMS:
+ * sender, SMS centre timestamp, receiver and a hash of the body.
+ */
+public final class DedupKey {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int KEY_BYTES = 16;   // 128 bits is plenty for a per-device outbox
+
+    private DedupKey() {
+    }
+
+    public static String compute(String sender, long timestamp, String messageBody, String receiver) {
+        MessageDigest digest = sha256();
+        digest.update(bodyHash(messageBody));
+        digest.update(field(sender == null ? "" : PriorityClassifier.normalizeSender(sender)));
+        digest.update(field(Long.toString(timestamp)));
+        digest.update(field(receiver == null ? "" : receiver));
+        return toHex(digest.digest(), KEY_BYTES);
+    }
+
+    private static byte[] bodyHash(String messageBody) {
+        return sha256().digest((messageBody == null ? "" : messageBody).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Length-prefixed so ("AB", "1") and ("A", "B1") cannot collide
+    private static byte[] field(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] framed = new byte[bytes.length + 4];
+        framed[0] = (byte) (bytes.length >>> 24);
+        framed[1] = (byte) (bytes.length >>> 16);
+        framed[2] = (byte) (bytes.length >>> 8);
+        framed[3] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, framed, 4, bytes.length);
+        return framed;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android and JVM runtime ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes, int length) {
+        char[] out = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            out[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,272 @@
+package com.qbitspark.sms_catch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled, immutable set of ingestion filter rules.
+ * All keywords of all rules share one Aho-Corasick automaton, so a message is
+ * scanned once no matter how many keyword rules exist. Regex and sender-only
+ * rules are indexed by sender so only rules for that sender are evaluated.
+ */
+public final class FilterEngine {
+
+    public static final FilterEngine EMPTY = compile(
+            Collections.<String>emptyList(), Collections.<String>emptyList(), Collections.<FilterRule>emptyList());
+
+    /**
+     * Outcome of filtering one message
+     */
+    public static class Result {
+        public final boolean drop;
+        public final List<String> tags;
+        public final int lane;          // -1 when no rule routed the message
+        public final String ruleId;     // Rule that dropped the message, null otherwise
+
+        Result(boolean drop, List<String> tags, int lane, String ruleId) {
+            this.drop = drop;
+            this.tags = tags;
+            this.lane = lane;
+            this.ruleId = ruleId;
+        }
+    }
+
+    private static final Result FORWARD = new Result(false, Collections.<String>emptyList(), -1, null);
+
+    private final Set<String> allowSenders;
+    private final Set<String> denySenders;
+    private final FilterRule[] rules;
+    private final List<Set<String>> ruleSenders;    // Normalized, empty = any sender
+    private final Pattern[][] rulePatterns;
+    private final AhoCorasick automaton;
+    private final int[] keywordRule;                // Automaton keyword index -> rule index
+    private final Map<String, int[]> senderRules;   // Sender-scoped regex and sender-only rules
+    private final int[] globalRegexRules;
+    private final int[] unconditionalRules;
+
+    private FilterEngine(Set<String> allowSenders, Set<String> denySenders, List<FilterRule> ruleList) {
+        this.allowSenders = allowSenders;
+        this.denySenders = denySenders;
+        this.rules = ruleList.toArray(new FilterRule[0]);
+        this.ruleSenders = new ArrayList<>(rules.length);
+        this.rulePatterns = new Pattern[rules.length][];
+
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordOwners = new ArrayList<>();
+        Map<String, List<Integer>> bySender = new HashMap<>();
+        List<Integer> globalRegex = new ArrayList<>();
+        List<Integer> unconditional = new ArrayList<>();
+
+        for (int r = 0; r < rules.length; r++) {
+            FilterRule rule = rules[r];
+
+            Set<String> senders = normalizeAll(rule.senders);
+            ruleSenders.add(senders);
+
+            rulePatterns[r] = new Pattern[rule.regexes.size()];
+            for (int p = 0; p < rulePatterns[r].length; p++) {
+                rulePatterns[r][p] = Pattern.compile(rule.regexes.get(p), Pattern.CASE_INSENSITIVE);
+            }
+
+            for (String keyword : rule.keywords) {
+                keywords.add(keyword);
+                keywordOwners.add(r);
+            }
+
+            boolean needsSenderLookup = !rule.regexes.isEmpty() || !rule.hasContentConditions();
+            if (!needsSenderLookup) {
+                continue;
+            }
+            if (senders.isEmpty()) {
+                (rule.hasContentConditions() ? globalRegex : unconditional).add(r);
+            } else {
+                for (String sender : senders) {
+                    List<Integer> list = bySender.get(sender);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        bySender.put(sender, list);
+                    }
+                    list.add(r);
+                }
+            }
+        }
+
+        // Several rules may share a keyword; the automaton reports each entry separately
+        this.automaton = AhoCorasick.build(keywords);
+        this.keywordRule = toArray(keywordOwners);
+
+        this.senderRules = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : bySender.entrySet()) {
+            senderRules.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        this.globalRegexRules = toArray(globalRegex);
+        this.unconditionalRules = toArray(unconditional);
+    }
+
+    /**
+     * Compile allow/deny lists and rules into an engine.
+     * Throws PatternSyntaxException if a regex is invalid.
+     */
+    public static FilterEngine compile(Collection<String> allowSenders, Collection<String> denySenders,
+                                       List<FilterRule> rules) {
+        return new FilterEngine(normalizeAll(allowSenders), normalizeAll(denySenders), rules);
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    /**
+     * Evaluate one message. Safe to call from several threads.
+     */
+    public Result evaluate(String sender, String messageBody) {
+        String senderKey = sender != null ? PriorityClassifier.normalizeSender(sender) : "";
+        boolean allowListed = allowSenders.contains(senderKey);
+
+        if (!allowListed && denySenders.contains(senderKey)) {
+            return new Result(true, Collections.<String>emptyList(), -1, "denylist");
+        }
+
+        if (rules.length == 0) {
+            return FORWARD;
+        }
+
+        final String body = messageBody != null ? messageBody : "";
+        final RuleSet matched = new RuleSet();
+
+        // Keyword rules: one pass over the body
+        if (automaton.getKeywordCount() > 0) {
+            final String key = senderKey;
+            automaton.match(body, new AhoCorasick.MatchListener() {
+                @Override
+                public void onMatch(int keywordIndex) {
+                    int r = keywordRule[keywordIndex];
+                    if (!matched.contains(r) && senderMatches(r, key)) {
+                        matched.add(r);
+                    }
+                }
+            });
+        }
+
+        // Rules scoped to this sender
+        int[] scoped = senderRules.get(senderKey);
+        if (scoped != null) {
+            for (int r : scoped) {
+                if (!matched.contains(r) && (!rules[r].hasContentConditions() || regexMatches(r, body))) {
+                    matched.add(r);
+                }
+            }
+        }
+
+        for (int r : globalRegexRules) {
+            if (!matched.contains(r) && regexMatches(r, body)) {
+                matched.add(r);
+            }
+        }
+
+        for (int r : unconditionalRules) {
+            if (!matched.contains(r)) {
+                matched.add(r);
+            }
+        }
+
+        if (matched.size == 0) {
+            return FORWARD;
+        }
+        return apply(matched, allowListed);
+    }
+
+    private Result apply(RuleSet matched, boolean allowListed) {
+        // Apply in rule order so the first ROUTE rule wins
+        int[] indexes = Arrays.copyOf(matched.values, matched.size);
+        Arrays.sort(indexes);
+
+        List<String> tags = new ArrayList<>();
+        int lane = -1;
+        for (int r : indexes) {
+            FilterRule rule = rules[r];
+            switch (rule.action) {
+                case DROP:
+                    if (!allowListed) {
+                        return new Result(true, Collections.<String>emptyList(), -1, rule.id);
+                    }
+                    break;
+                case TAG:
+                    if (rule.tag != null && !tags.contains(rule.tag)) {
+                        tags.add(rule.tag);
+                    }
+                    break;
+                case ROUTE:
+                    if (lane < 0) {
+                        lane = rule.lane;
+                    }
+                    break;
+            }
+        }
+        return new Result(false, tags, lane, null);
+    }
+
+    private boolean senderMatches(int r, String senderKey) {
+        Set<String> senders = ruleSenders.get(r);
+        return senders.isEmpty() || senders.contains(senderKey);
+    }
+
+    private boolean regexMatches(int r, String body) {
+        for (Pattern pattern : rulePatterns[r]) {
+            if (pattern.matcher(body).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> normalizeAll(Collection<String> senders) {
+        Set<String> normalized = new HashSet<>();
+        for (String sender : senders) {
+            if (sender != null) {
+                normalized.add(PriorityClassifier.normalizeSender(sender));
+            }
+        }
+        return normalized;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Small growable set of rule indexes; a message usually matches few rules
+     */
+    private static final class RuleSet {
+        int[] values = new int[4];
+        int size;
+
+        boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.qbitspark.sms_catch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One ingestion filter rule.
+ * A rule matches when the sender condition holds AND (it has no content
+ * conditions OR any keyword OR any regex matches the message body).
+ */
+public class FilterRule {
+
+    public enum Action {
+        DROP,   // Do not persist or upload
+        TAG,    // Attach a tag to the upload payload
+        ROUTE   // Move the message to another outbox lane
+    }
+
+    public String id;
+    public Action action = Action.TAG;
+    public List<String> senders = new ArrayList<>();    // Empty = any sender
+    public List<String> keywords = new ArrayList<>();   // Case-insensitive substrings
+    public List<String> regexes = new ArrayList<>();    // Java regular expressions on the body
+    public String tag;                                  // For TAG
+    public int lane = -1;                               // For ROUTE, see PriorityClassifier
+
+    public boolean hasContentConditions() {
+        return !keywords.isEmpty() || !regexes.isEmpty();
+    }
+}
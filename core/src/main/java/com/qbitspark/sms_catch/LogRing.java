@@ -0,0 +1,213 @@
+package com.qbitspark.sms_catch;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size in-memory log of the most recent entries. Adding is one atomic
+ * increment and a compare-and-set on its slot, with no lock, so any thread can
+ * log without waiting on a reader or another writer. Entries keep their format string and
+ * arguments; the text is only built when the ring is dumped.
+ *
+ * Arguments are formatted at dump time, so pass values that do not change
+ * afterwards (strings, boxed numbers, enums).
+ */
+public class LogRing {
+    // Same values as android.util.Log
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /**
+     * Marks an unused argument slot, so a plain message is never run through the formatter
+     */
+    public static final Object NO_ARG = new Object();
+
+    private static final String LEVEL_LETTERS = "??VDIWE";
+
+    /**
+     * One log call as it was made
+     */
+    public static final class Entry {
+        public final long sequence;
+        public final long time;
+        public final int level;
+        public final String thread;
+        public final String tag;
+        public final String format;
+        public final Object arg0;
+        public final Object arg1;
+        public final Object arg2;
+        public final Throwable throwable;
+
+        Entry(long sequence, long time, int level, String thread, String tag, String format,
+              Object arg0, Object arg1, Object arg2, Throwable throwable) {
+            this.sequence = sequence;
+            this.time = time;
+            this.level = level;
+            this.thread = thread;
+            this.tag = tag;
+            this.format = format;
+            this.arg0 = arg0;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.throwable = throwable;
+        }
+
+        public String getMessage() {
+            return format(format, arg0, arg1, arg2);
+        }
+
+        public char getLevelLetter() {
+            return level >= VERBOSE && level <= ERROR ? LEVEL_LETTERS.charAt(level) : '?';
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public LogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public void add(int level, String tag, String format, Object arg0, Object arg1, Object arg2,
+                    Throwable throwable) {
+        long sequence = next.getAndIncrement();
+        Entry entry = new Entry(sequence, System.currentTimeMillis(), level,
+                Thread.currentThread().getName(), tag, format, arg0, arg1, arg2, throwable);
+        int index = (int) (sequence & mask);
+        Entry current;
+        do {
+            current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                return;     // Lapped by a newer entry while this one was being built
+            }
+        } while (!slots.compareAndSet(index, current, entry));
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Entries ever added, including those since overwritten
+     */
+    public long getTotalCount() {
+        return next.get();
+    }
+
+    /**
+     * Entries still in the ring, oldest first. A slot is only ever replaced by
+     * a newer entry, so a writer lapping the ring never hides the newest ones.
+     */
+    public List<Entry> snapshot() {
+        long end = next.get();
+        long start = Math.max(0, end - slots.length());
+        List<Entry> entries = new ArrayList<>((int) (end - start));
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.sequence >= start) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.sequence, b.sequence));
+        return entries;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    /**
+     * One line per entry, logcat style
+     */
+    public void dump(PrintWriter writer) {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        List<Entry> entries = snapshot();
+        writer.println(String.format(Locale.US, "Log ring: %d of %d entries (%d logged)",
+                entries.size(), getCapacity(), getTotalCount()));
+        for (Entry entry : entries) {
+            writer.println(timeFormat.format(new Date(entry.time)) + " " + entry.getLevelLetter() + " "
+                    + entry.tag + " [" + entry.thread + "]: " + entry.getMessage());
+            if (entry.throwable != null) {
+                entry.throwable.printStackTrace(writer);
+            }
+        }
+    }
+
+    /**
+     * The newest entries at or above minLevel as a JSON array, oldest first,
+     * for attaching to a diagnostic report
+     */
+    public String toJson(int minLevel, int maxEntries) {
+        List<Entry> entries = snapshot();
+        List<Entry> selected = new ArrayList<>();
+        for (int i = entries.size() - 1; i >= 0 && selected.size() < maxEntries; i--) {
+            if (entries.get(i).level >= minLevel) {
+                selected.add(entries.get(i));
+            }
+        }
+        Collections.reverse(selected);
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < selected.size(); i++) {
+            Entry entry = selected.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"time\":").append(entry.time)
+                    .append(",\"level\":\"").append(entry.getLevelLetter()).append("\",\"tag\":");
+            UploadPayload.quote(json, String.valueOf(entry.tag));
+            json.append(",\"thread\":");
+            UploadPayload.quote(json, entry.thread);
+            json.append(",\"message\":");
+            UploadPayload.quote(json, String.valueOf(entry.getMessage()));
+            if (entry.throwable != null) {
+                json.append(",\"error\":");
+                UploadPayload.quote(json, entry.throwable.toString());
+            }
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * String.format with up to three arguments; NO_ARG slots are left out and a
+     * message with no arguments is returned as is. A format that does not fit
+     * its arguments falls back to the format followed by the arguments.
+     */
+    public static String format(String format, Object arg0, Object arg1, Object arg2) {
+        if (arg0 == NO_ARG) {
+            return format;
+        }
+        Object[] args = arg1 == NO_ARG ? new Object[]{arg0}
+                : arg2 == NO_ARG ? new Object[]{arg0, arg1}
+                : new Object[]{arg0, arg1, arg2};
+        try {
+            return String.format(Locale.US, format, args);
+        } catch (RuntimeException e) {
+            StringBuilder text = new StringBuilder(String.valueOf(format));
+            for (Object arg : args) {
+                text.append(' ').append(arg);
+            }
+            return text.toString();
+        }
+    }
+}
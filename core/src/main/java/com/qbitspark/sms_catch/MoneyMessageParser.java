@@ -0,0 +1,211 @@
+package com.qbitspark.sms_catch;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of precompiled mobile-money templates, keyed by sender ID.
+ * Messages from unknown senders cost one hash lookup; known senders try only
+ * their own templates, each guarded by a cheap literal check before the regex.
+ *
+ * Templates use numbered groups because named groups need API 26.
+ */
+public final class MoneyMessageParser {
+
+    // Shared pattern pieces
+    private static final String AMOUNT = "(?:Tsh|TSh|TZS)\\s?([\\d,]+(?:\\.\\d{1,2})?)";
+    private static final String PHONE = "(\\+?\\d{9,12})";
+    private static final String NAME = "([A-Za-z][A-Za-z .'-]*?)";
+
+    /**
+     * One message layout of one provider
+     */
+    public static final class Template {
+        final String id;
+        final String provider;
+        final ParsedMessage.Type type;
+        final String[] senders;
+        final String literal;       // Must appear in the body before the regex is tried
+        final Pattern pattern;
+        final int txnGroup;
+        final int amountGroup;
+        final int numberGroup;
+        final int nameGroup;
+        final int balanceGroup;
+        final int feeGroup;
+
+        /**
+         * Group arguments are regex group numbers, 0 when the layout has no such field
+         */
+        public Template(String id, String provider, ParsedMessage.Type type, String[] senders, String literal,
+                        String regex, int txnGroup, int amountGroup, int numberGroup, int nameGroup,
+                        int balanceGroup, int feeGroup) {
+            this.id = id;
+            this.provider = provider;
+            this.type = type;
+            this.senders = senders;
+            this.literal = literal;
+            this.pattern = Pattern.compile(regex);
+            this.txnGroup = txnGroup;
+            this.amountGroup = amountGroup;
+            this.numberGroup = numberGroup;
+            this.nameGroup = nameGroup;
+            this.balanceGroup = balanceGroup;
+            this.feeGroup = feeGroup;
+        }
+    }
+
+    private static final MoneyMessageParser DEFAULT = new MoneyMessageParser(defaultTemplates());
+
+    private final Map<String, Template[]> templatesBySender = new HashMap<>();
+
+    public MoneyMessageParser(List<Template> templates) {
+        Map<String, List<Template>> grouped = new HashMap<>();
+        for (Template template : templates) {
+            for (String sender : template.senders) {
+                String key = PriorityClassifier.normalizeSender(sender);
+                List<Template> list = grouped.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    grouped.put(key, list);
+                }
+                list.add(template);
+            }
+        }
+        for (Map.Entry<String, List<Template>> entry : grouped.entrySet()) {
+            templatesBySender.put(entry.getKey(), entry.getValue().toArray(new Template[0]));
+        }
+    }
+
+    public static MoneyMessageParser getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Extract fields, or return null if no template of this sender matches
+     */
+    public ParsedMessage parse(String sender, String messageBody) {
+        if (sender == null || messageBody == null) {
+            return null;
+        }
+
+        Template[] templates = templatesBySender.get(PriorityClassifier.normalizeSender(sender));
+        if (templates == null) {
+            return null;
+        }
+
+        for (Template template : templates) {
+            if (!messageBody.contains(template.literal)) {
+                continue;
+            }
+            Matcher matcher = template.pattern.matcher(messageBody);
+            if (matcher.find()) {
+                return toParsedMessage(template, matcher);
+            }
+        }
+        return null;
+    }
+
+    private static ParsedMessage toParsedMessage(Template template, Matcher matcher) {
+        ParsedMessage parsed = new ParsedMessage();
+        parsed.provider = template.provider;
+        parsed.type = template.type;
+        parsed.templateId = template.id;
+        parsed.transactionId = group(matcher, template.txnGroup);
+        parsed.amount = normalizeAmount(group(matcher, template.amountGroup));
+        parsed.counterpartyNumber = group(matcher, template.numberGroup);
+        parsed.counterpartyName = normalizeName(group(matcher, template.nameGroup));
+        parsed.balance = normalizeAmount(group(matcher, template.balanceGroup));
+        parsed.fee = normalizeAmount(group(matcher, template.feeGroup));
+        return parsed;
+    }
+
+    private static String group(Matcher matcher, int group) {
+        return group > 0 ? matcher.group(group) : null;
+    }
+
+    static String normalizeAmount(String amount) {
+        if (amount == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(amount.replace(",", "")).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalizeName(String name) {
+        return name == null ? null : name.trim().replaceAll("\\s+", " ");
+    }
+
+    private static List<Template> defaultTemplates() {
+        String[] mpesa = {"M-PESA", "MPESA"};
+        String[] tigo = {"TIGOPESA", "MIXX BY YAS"};
+        String[] airtel = {"AIRTELMONEY"};
+        String[] halo = {"HALOPESA"};
+
+        List<Template> templates = new ArrayList<>();
+
+        // M-Pesa (Vodacom)
+        templates.add(new Template("mpesa_received_en", "M-PESA", ParsedMessage.Type.RECEIVED, mpesa,
+                "You have received",
+                "^(\\w{8,12}) Confirmed\\.? You have received " + AMOUNT + " from " + PHONE + " - " + NAME
+                        + " on .*?New M-Pesa balance is " + AMOUNT,
+                1, 2, 3, 4, 5, 0));
+        templates.add(new Template("mpesa_sent_en", "M-PESA", ParsedMessage.Type.SENT, mpesa,
+                "sent to",
+                "^(\\w{8,12}) Confirmed\\.? " + AMOUNT + " sent to " + PHONE + " - " + NAME
+                        + " on .*?New M-Pesa balance is " + AMOUNT + "\\.?(?: Transaction cost,? " + AMOUNT + ")?",
+                1, 2, 3, 4, 5, 6));
+        templates.add(new Template("mpesa_paid_en", "M-PESA", ParsedMessage.Type.PAYMENT, mpesa,
+                "paid to",
+                "^(\\w{8,12}) Confirmed\\.? " + AMOUNT + " paid to " + NAME
+                        + " on .*?New M-Pesa balance is " + AMOUNT,
+                1, 2, 0, 3, 4, 0));
+        templates.add(new Template("mpesa_received_sw", "M-PESA", ParsedMessage.Type.RECEIVED, mpesa,
+                "Umepokea",
+                "^(\\w{8,12}) Imethibitishwa\\.? Umepokea " + AMOUNT + " kutoka " + PHONE + " - " + NAME
+                        + " tarehe .*?Salio jipya la M-Pesa ni " + AMOUNT,
+                1, 2, 3, 4, 5, 0));
+
+        // Tigo Pesa / Mixx by Yas
+        templates.add(new Template("tigo_received", "TIGO PESA", ParsedMessage.Type.RECEIVED, tigo,
+                "Umepokea",
+                "Umepokea " + AMOUNT + " kutoka kwa " + PHONE + " - " + NAME
+                        + "\\. Salio jipya ni " + AMOUNT + "\\.? Muamala:? ?(\\d{8,14})",
+                5, 1, 2, 3, 4, 0));
+        templates.add(new Template("tigo_sent", "TIGO PESA", ParsedMessage.Type.SENT, tigo,
+                "Umetuma",
+                "Umetuma " + AMOUNT + " kwa " + PHONE + " - " + NAME
+                        + "\\. Ada " + AMOUNT + "\\. Salio jipya ni " + AMOUNT + "\\.? Muamala:? ?(\\d{8,14})",
+                6, 1, 2, 3, 5, 4));
+
+        // Airtel Money
+        templates.add(new Template("airtel_received", "AIRTEL MONEY", ParsedMessage.Type.RECEIVED, airtel,
+                "Umepokea",
+                "Umepokea " + AMOUNT + " kutoka " + PHONE + ", " + NAME
+                        + "\\. Salio lako ni " + AMOUNT + "\\.? Kumbukumbu:? ?([A-Z0-9.]{8,30}?)\\.?$",
+                5, 1, 2, 3, 4, 0));
+        templates.add(new Template("airtel_sent", "AIRTEL MONEY", ParsedMessage.Type.SENT, airtel,
+                "Umetuma",
+                "Umetuma " + AMOUNT + " kwenda " + PHONE + ", " + NAME
+                        + "\\. Salio lako ni " + AMOUNT + "\\.? Kumbukumbu:? ?([A-Z0-9.]{8,30}?)\\.?$",
+                5, 1, 2, 3, 4, 0));
+
+        // HaloPesa
+        templates.add(new Template("halo_received", "HALOPESA", ParsedMessage.Type.RECEIVED, halo,
+                "Umepokea",
+                "Umepokea " + AMOUNT + " kutoka " + PHONE + " " + NAME
+                        + "\\. Salio jipya " + AMOUNT + "\\.? Kumbukumbu:? ?(\\d{8,16})",
+                5, 1, 2, 3, 4, 0));
+
+        return templates;
+    }
+}
@@ -0,0 +1,27 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Structured fields extracted from a mobile-money confirmation SMS.
+ * Amounts are plain decimal strings without currency or thousands separators.
+ */
+public class ParsedMessage {
+
+    public enum Type {
+        RECEIVED,
+        SENT,
+        PAYMENT,
+        WITHDRAWAL,
+        DEPOSIT
+    }
+
+    public String provider;             // e.g. "M-PESA"
+    public Type type;
+    public String currency = "TZS";
+    public String amount;
+    public String fee;
+    public String balance;
+    public String transactionId;
+    public String counterpartyNumber;
+    public String counterpartyName;
+    public String templateId;           // Template that produced this result
+}
@@ -0,0 +1,68 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Validation of the local phone number the user enters for each SIM:
+ * 10 digits starting with 0, spaces and dashes ignored
+ */
+public final class PhoneNumbers {
+
+    public enum Problem {
+        NONE,
+        EMPTY,
+        NOT_DIGITS,
+        NO_LEADING_ZERO,
+        WRONG_LENGTH,
+        PLACEHOLDER     // 0000000000, 0123456789 or the same digit repeated
+    }
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * Remove any spaces or dashes that user might have entered
+     */
+    public static String normalize(String phoneNumber) {
+        return phoneNumber == null ? null : phoneNumber.replaceAll("[\\s-]", "");
+    }
+
+    public static Problem validate(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.isEmpty()) {
+            return Problem.EMPTY;
+        }
+        phoneNumber = normalize(phoneNumber);
+
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return Problem.NOT_DIGITS;
+            }
+        }
+        if (phoneNumber.isEmpty()) {
+            return Problem.NOT_DIGITS;
+        }
+        if (phoneNumber.charAt(0) != '0') {
+            return Problem.NO_LEADING_ZERO;
+        }
+        if (phoneNumber.length() != 10) {
+            return Problem.WRONG_LENGTH;
+        }
+        if (phoneNumber.equals("0123456789") || isRepeatedDigit(phoneNumber)) {
+            return Problem.PLACEHOLDER;
+        }
+        return Problem.NONE;
+    }
+
+    public static boolean isValid(String phoneNumber) {
+        return validate(phoneNumber) == Problem.NONE;
+    }
+
+    // All same digits after the leading 0, which covers 0000000000
+    private static boolean isRepeatedDigit(String phoneNumber) {
+        for (int i = 2; i < phoneNumber.length(); i++) {
+            if (phoneNumber.charAt(i) != phoneNumber.charAt(1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
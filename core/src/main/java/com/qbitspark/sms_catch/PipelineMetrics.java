@@ -0,0 +1,189 @@
+package com.qbitspark.sms_catch;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide counters, gauges and latency histograms for the path from SMS
+ * broadcast to server ack. Metrics are created once (the constants below) and
+ * recording never allocates. Dumped by SmsListenerService.dump:
+ *
+ *   adb shell dumpsys activity service com.qbitspark.sms_catch/.SmsListenerService [--json]
+ *
+ * Stage latencies are recorded in microseconds.
+ */
+public final class PipelineMetrics {
+
+    /**
+     * Monotonic count
+     */
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void inc() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Point-in-time value, either set by its owner or read from a supplier at dump time
+     */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+        private volatile LongSupplier supplier;
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void setSupplier(LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        public long get() {
+            LongSupplier current = supplier;
+            return current != null ? current.getAsLong() : value.get();
+        }
+    }
+
+    private static final Map<String, Counter> counters = new LinkedHashMap<>();
+    private static final Map<String, Gauge> gauges = new LinkedHashMap<>();
+    private static final Map<String, LogLinearHistogram> histograms = new LinkedHashMap<>();
+
+    // Stage latencies, in pipeline order
+    public static final LogLinearHistogram RECEIVER = histogram("stage.receiver");
+    public static final LogLinearHistogram SIM_RESOLUTION = histogram("stage.sim_resolution");
+    public static final LogLinearHistogram SERIALIZE = histogram("stage.serialize");
+    public static final LogLinearHistogram PERSIST = histogram("stage.persist");
+    public static final LogLinearHistogram NETWORK = histogram("stage.network");
+    public static final LogLinearHistogram ACK = histogram("stage.ack");
+    public static final LogLinearHistogram SYNC_RUN = histogram("sync.run");
+
+    // Per message, from its stage times (see DeliveryTimes): capture to server
+    // accept, and time spent queued before the first upload attempt
+    public static final LogLinearHistogram DELIVERY = histogram("delivery.end_to_end");
+    public static final LogLinearHistogram QUEUE_WAIT = histogram("delivery.queue_wait");
+
+    // Main looper dispatches over the stall threshold (see MainThreadWatchdog)
+    public static final LogLinearHistogram MAIN_THREAD_STALL = histogram("main.stall");
+
+    public static final Counter SMS_RECEIVED = counter("sms.received");
+    public static final Counter MESSAGES_PERSISTED = counter("messages.persisted");
+    public static final Counter MESSAGES_DUPLICATE = counter("messages.duplicate");
+    public static final Counter MESSAGES_DROPPED = counter("messages.dropped");
+    public static final Counter FAST_PATH_STARTED = counter("fastpath.started");
+    public static final Counter UPLOADS_OK = counter("uploads.ok");
+    public static final Counter UPLOADS_FAILED = counter("uploads.failed");
+    public static final Counter ACKS_WRITTEN = counter("acks.written");
+    public static final Counter SYNC_SENT = counter("sync.sent");
+    public static final Counter DELIVERIES = counter("delivery.count");
+    public static final Counter DELIVERIES_RETRIED = counter("delivery.retried");
+    public static final Counter DELIVERIES_OVER_TARGET = counter("delivery.over_target");
+    public static final Counter MAIN_THREAD_STALLS = counter("main.stalls");
+    public static final Counter MAIN_THREAD_NEAR_ANRS = counter("main.near_anr");
+
+    public static final Gauge OUTBOX_PENDING = gauge("outbox.pending");
+    public static final Gauge OUTBOX_OLDEST_AGE_SECONDS = gauge("outbox.oldest_age_s");
+    public static final Gauge ACKS_QUEUED = gauge("acks.queued");
+    public static final Gauge FAST_PATH_IN_FLIGHT = gauge("fastpath.in_flight");
+
+    private PipelineMetrics() {
+    }
+
+    public static synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    public static synchronized Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            gauge = new Gauge();
+            gauges.put(name, gauge);
+        }
+        return gauge;
+    }
+
+    public static synchronized LogLinearHistogram histogram(String name) {
+        LogLinearHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LogLinearHistogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Microseconds since a System.nanoTime() start, for the stage histograms
+     */
+    public static long micros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    public static synchronized void dumpText(PrintWriter writer) {
+        writer.println("Counters:");
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            writer.println(String.format(Locale.US, "  %-24s %d", e.getKey(), e.getValue().get()));
+        }
+        writer.println("Gauges:");
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            writer.println(String.format(Locale.US, "  %-24s %d", e.getKey(), e.getValue().get()));
+        }
+        writer.println("Histograms (ms):");
+        for (Map.Entry<String, LogLinearHistogram> e : histograms.entrySet()) {
+            LogLinearHistogram h = e.getValue();
+            writer.println(String.format(Locale.US,
+                    "  %-24s count=%d mean=%.2f p50=%.2f p95=%.2f p99=%.2f max=%.2f",
+                    e.getKey(), h.getCount(), h.getMean() / 1000.0, h.getPercentile(0.50) / 1000.0,
+                    h.getPercentile(0.95) / 1000.0, h.getPercentile(0.99) / 1000.0, h.getMax() / 1000.0));
+        }
+    }
+
+    // Metric names are fixed identifiers, nothing needs escaping
+    public static synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            json.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().get());
+            separator = ",";
+        }
+        json.append("},\"gauges\":{");
+        separator = "";
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            json.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().get());
+            separator = ",";
+        }
+        json.append("},\"histograms\":{");
+        separator = "";
+        for (Map.Entry<String, LogLinearHistogram> e : histograms.entrySet()) {
+            LogLinearHistogram h = e.getValue();
+            json.append(separator).append('"').append(e.getKey()).append("\":{")
+                    .append("\"unit\":\"us\"")
+                    .append(",\"count\":").append(h.getCount())
+                    .append(",\"mean\":").append(String.format(Locale.US, "%.1f", h.getMean()))
+                    .append(",\"p50\":").append(h.getPercentile(0.50))
+                    .append(",\"p95\":").append(h.getPercentile(0.95))
+                    .append(",\"p99\":").append(h.getPercentile(0.99))
+                    .append(",\"max\":").append(h.getMax())
+                    .append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.qbitspark.sms_catch;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Assigns each incoming message to an outbox lane from its sender and keywords.
+ * Lower lane number drains first.
+ */
+public class PriorityClassifier {
+
+    public static final int LANE_PRIORITY = 0;  // OTP and mobile-money confirmations
+    public static final int LANE_NORMAL = 1;    // Everything else
+    public static final int LANE_BULK = 2;      // Promotions and carrier marketing
+    public static final int LANE_COUNT = 3;
+
+    // Target time from enqueue to upload, indexed by lane
+    public static final long[] LANE_LATENCY_TARGETS = {
+            60 * 1000L,          // Priority: one minute
+            15 * 60 * 1000L,     // Normal: one periodic sync
+            60 * 60 * 1000L      // Bulk: within the hour
+    };
+
+    // Sender IDs normalized to upper case letters and digits only
+    private static final Set<String> PRIORITY_SENDERS = new HashSet<>(Arrays.asList(
+            "MPESA", "TIGOPESA", "MIXXBYYAS", "AIRTELMONEY", "HALOPESA", "TPESA", "EZYPESA",
+            "NMBBANK", "CRDBBANK", "NBCBANK", "SELCOMPAY"
+    ));
+
+    private static final String[] PRIORITY_KEYWORDS = {
+            "otp", "verification code", "confirmed", "umepokea", "imethibitishwa",
+            "muamala", "transaction id", "salio jipya", "new balance"
+    };
+
+    private static final String[] BULK_KEYWORDS = {
+            "promo", "offer", "ofa", "bonus", "shinda", "win ", "jiunge", "subscribe",
+            "punguzo", "discount", "bando", "reply stop", "tuma stop"
+    };
+
+    /**
+     * Returns the outbox lane for a message
+     */
+    public static int classify(String sender, String messageBody) {
+        if (sender != null && PRIORITY_SENDERS.contains(normalizeSender(sender))) {
+            return LANE_PRIORITY;
+        }
+
+        if (messageBody == null) {
+            return LANE_NORMAL;
+        }
+
+        String lower = messageBody.toLowerCase(Locale.ROOT);
+        if (containsAny(lower, PRIORITY_KEYWORDS)) {
+            return LANE_PRIORITY;
+        }
+        if (containsAny(lower, BULK_KEYWORDS)) {
+            return LANE_BULK;
+        }
+        return LANE_NORMAL;
+    }
+
+    public static String laneName(int lane) {
+        switch (lane) {
+            case LANE_PRIORITY:
+                return "priority";
+            case LANE_BULK:
+                return "bulk";
+            default:
+                return "normal";
+        }
+    }
+
+    static String normalizeSender(String sender) {
+        StringBuilder normalized = new StringBuilder(sender.length());
+        for (int i = 0; i < sender.length(); i++) {
+            char c = sender.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toUpperCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean containsAny(String text, String[] keywords) {
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
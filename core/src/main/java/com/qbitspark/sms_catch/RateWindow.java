@@ -0,0 +1,47 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Per-minute rate of a monotonic counter over a sliding window, from samples
+ * of its value taken by the caller (e.g. on each dashboard refresh)
+ */
+public class RateWindow {
+    private final long windowMillis;
+    private final long[] times;
+    private final long[] counts;
+    private int oldest;
+    private int size;
+
+    public RateWindow(long windowMillis, int maxSamples) {
+        this.windowMillis = windowMillis;
+        this.times = new long[maxSamples];
+        this.counts = new long[maxSamples];
+    }
+
+    public synchronized void add(long nowMillis, long count) {
+        // Drop samples that fell out of the window, and the oldest if full
+        while (size > 0 && (times[oldest] < nowMillis - windowMillis || size == times.length)) {
+            oldest = (oldest + 1) % times.length;
+            size--;
+        }
+        int index = (oldest + size) % times.length;
+        times[index] = nowMillis;
+        counts[index] = count;
+        size++;
+    }
+
+    /**
+     * Counter increase per minute between the oldest and newest sample in the
+     * window, 0 until there are two samples
+     */
+    public synchronized double perMinute() {
+        if (size < 2) {
+            return 0;
+        }
+        int newest = (oldest + size - 1) % times.length;
+        long elapsed = times[newest] - times[oldest];
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (counts[newest] - counts[oldest]) * 60_000.0 / elapsed;
+    }
+}
@@ -0,0 +1,34 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Receiver identifier sent with every message: the user's number for the
+ * SIM, carrier, slot and the last 6 digits of the ICCID
+ */
+public final class ReceiverIdentifier {
+
+    private ReceiverIdentifier() {
+    }
+
+    public static String create(SIMInfo simInfo) {
+        StringBuilder identifier = new StringBuilder();
+
+        // Start with user's phone number (most important for API)
+        if (simInfo.userPhoneNumber != null && !simInfo.userPhoneNumber.isEmpty()) {
+            identifier.append(simInfo.userPhoneNumber);
+        } else {
+            identifier.append("NO_PHONE");
+        }
+
+        // Add carrier and slot info
+        identifier.append("_").append(simInfo.carrierName)
+                .append("_SLOT").append(simInfo.slotIndex);
+
+        // Add masked ICCID for uniqueness (last 6 digits)
+        if (simInfo.iccid != null && simInfo.iccid.length() >= 6) {
+            String maskedICCID = simInfo.iccid.substring(simInfo.iccid.length() - 6);
+            identifier.append("_").append(maskedICCID);
+        }
+
+        return identifier.toString();
+    }
+}
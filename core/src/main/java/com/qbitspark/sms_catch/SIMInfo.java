@@ -0,0 +1,23 @@
+package com.qbitspark.sms_catch;
+
+/**
+ * Comprehensive SIM information class with ICCID tracking
+ */
+public class SIMInfo {
+    public String iccid;              // Primary identifier - follows SIM card
+    public String userPhoneNumber;    // User-entered phone number
+    public String carrierName;        // Network operator name
+    public int subscriptionId;        // Current subscription ID (can change)
+    public int slotIndex;            // Current slot (0 or 1) - can change
+    public String detectedNumber;     // Auto-detected number (may be null)
+    public long lastSeen;            // When this SIM was last detected
+    public boolean isActive;         // Currently present in device
+
+    public String getDisplayName() {
+        return carrierName + " (" + (userPhoneNumber != null ? userPhoneNumber : "No Number") + ")";
+    }
+
+    public String getIdentifierKey() {
+        return "SIM_" + iccid;
+    }
+}
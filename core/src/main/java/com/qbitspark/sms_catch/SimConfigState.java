@@ -0,0 +1,37 @@
+package com.qbitspark.sms_catch;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the SIM configuration screen shows, worked out once from one read of
+ * the present and saved SIMs: every present SIM with its saved phone number,
+ * and the first one still without a number. Read-only: building it saves
+ * nothing, so swap detection elsewhere still sees every change.
+ */
+public class SimConfigState {
+    public final List<SIMInfo> activeSIMs;
+    public final SIMInfo nextUnconfigured;
+    public final boolean allConfigured;
+    public final long loadedAt;
+
+    private SimConfigState(List<SIMInfo> activeSIMs, SIMInfo nextUnconfigured, long loadedAt) {
+        this.activeSIMs = Collections.unmodifiableList(activeSIMs);
+        this.nextUnconfigured = nextUnconfigured;
+        // At least one SIM must be present
+        this.allConfigured = nextUnconfigured == null && !activeSIMs.isEmpty();
+        this.loadedAt = loadedAt;
+    }
+
+    public static SimConfigState from(List<SIMInfo> currentSIMs, List<SIMInfo> savedSIMs, long loadedAt) {
+        SwapDetectionResult result = SimSwapDetector.compare(currentSIMs, savedSIMs);
+        SIMInfo nextUnconfigured = null;
+        for (SIMInfo sim : result.activeSIMs) {
+            if (sim.userPhoneNumber == null || sim.userPhoneNumber.isEmpty()) {
+                nextUnconfigured = sim;
+                break;
+            }
+        }
+        return new SimConfigState(result.activeSIMs, nextUnconfigured, loadedAt);
+    }
+}
@@ -0,0 +1,52 @@
+package com.qbitspark.sms_catch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the SIMs present now with the ones saved last time, by ICCID.
+ * A SIM that is still present keeps the phone number the user entered for it.
+ */
+public final class SimSwapDetector {
+
+    private SimSwapDetector() {
+    }
+
+    public static SwapDetectionResult compare(List<SIMInfo> currentSIMs, List<SIMInfo> savedSIMs) {
+        SwapDetectionResult result = new SwapDetectionResult();
+
+        Map<String, SIMInfo> savedByIccid = new HashMap<>();
+        for (SIMInfo savedSIM : savedSIMs) {
+            savedByIccid.putIfAbsent(savedSIM.iccid, savedSIM);
+        }
+
+        // Check each current SIM
+        Map<String, SIMInfo> currentByIccid = new HashMap<>();
+        for (SIMInfo currentSIM : currentSIMs) {
+            currentByIccid.putIfAbsent(currentSIM.iccid, currentSIM);
+            SIMInfo savedSIM = savedByIccid.get(currentSIM.iccid);
+
+            if (savedSIM == null) {
+                // New SIM card
+                result.newSIMs.add(currentSIM);
+            } else {
+                // Existing SIM - preserve user data, note if it moved slots
+                currentSIM.userPhoneNumber = savedSIM.userPhoneNumber;
+                if (savedSIM.slotIndex != currentSIM.slotIndex) {
+                    result.movedSIMs.add(currentSIM);
+                }
+            }
+
+            result.activeSIMs.add(currentSIM);
+        }
+
+        // Check for removed SIMs
+        for (SIMInfo savedSIM : savedSIMs) {
+            if (!currentByIccid.containsKey(savedSIM.iccid)) {
+                result.removedSIMs.add(savedSIM);
+            }
+        }
+        return result;
+    }
+}
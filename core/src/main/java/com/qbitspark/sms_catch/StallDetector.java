@@ -0,0 +1,253 @@
+package com.qbitspark.sms_catch;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Times message dispatch on one thread (the main looper) and aggregates the
+ * dispatches that ran over a threshold into per-cause reports. The looped
+ * thread calls dispatchStarted/dispatchFinished around every message; a
+ * watchdog thread calls sampleIfStalled while a dispatch runs long, so the
+ * stack shows where it was stuck rather than where it ended up.
+ *
+ * A stall is attributed to the first app frame on the sampled stack, or to the
+ * dispatched handler and callback when no stack was taken or no app frame was
+ * on it.
+ */
+public class StallDetector {
+    static final int MAX_REPORTS = 32;
+    static final String OTHER_KEY = "(other)";
+    private static final int MAX_STACK_FRAMES = 12;
+
+    private static final Pattern HASH_CODES = Pattern.compile("\\{[0-9a-f]+\\}|@[0-9a-f]+");
+    private static final String DISPATCH_PREFIX = ">>>>> Dispatching to ";
+
+    /**
+     * All stalls with the same cause
+     */
+    public static final class StallReport {
+        public final String key;
+        public String target;
+        public String topFrame;         // Of the worst stall, with stack
+        public List<String> stack;
+        public String lastTopFrame;     // Of the latest stall, null if it was not sampled
+        public int count;
+        public long totalMillis;
+        public long maxMillis;
+        public long lastMillis;
+        public long lastAt;
+
+        StallReport(String key) {
+            this.key = key;
+        }
+    }
+
+    // One dispatch; stack is set at most once, by the watchdog
+    private static final class Dispatch {
+        final long startNanos;
+        final String target;
+        volatile StackTraceElement[] stack;
+
+        Dispatch(long startNanos, String target) {
+            this.startNanos = startNanos;
+            this.target = target;
+        }
+    }
+
+    private final long thresholdNanos;
+    private final long nearAnrNanos;
+    private final String appPackage;
+    private final Map<String, StallReport> reports = new LinkedHashMap<>();
+    private volatile Dispatch current;
+    private long stallCount;
+    private long nearAnrCount;
+
+    /**
+     * @param appPackage frames from classes in this package are blamed first
+     */
+    public StallDetector(long thresholdMillis, long nearAnrMillis, String appPackage) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.nearAnrNanos = nearAnrMillis * 1_000_000;
+        this.appPackage = appPackage + ".";
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1_000_000;
+    }
+
+    /**
+     * Looped thread, before a message is dispatched
+     */
+    public void dispatchStarted(String target, long nowNanos) {
+        current = new Dispatch(nowNanos, target);
+    }
+
+    /**
+     * Looped thread, after a message is dispatched. The updated report if the
+     * dispatch was a stall, otherwise null.
+     */
+    public StallReport dispatchFinished(long nowNanos, long wallTime) {
+        Dispatch dispatch = current;
+        current = null;
+        if (dispatch == null) {
+            return null;
+        }
+        long nanos = nowNanos - dispatch.startNanos;
+        if (nanos < thresholdNanos) {
+            return null;
+        }
+        return record(dispatch, nanos / 1_000_000, nanos >= nearAnrNanos, wallTime);
+    }
+
+    public boolean isDispatching() {
+        return current != null;
+    }
+
+    /**
+     * Millis until the running dispatch becomes a stall, 0 if it already is,
+     * -1 if the looped thread is idle
+     */
+    public long millisUntilStall(long nowNanos) {
+        Dispatch dispatch = current;
+        if (dispatch == null) {
+            return -1;
+        }
+        return Math.max(0, (dispatch.startNanos + thresholdNanos - nowNanos) / 1_000_000);
+    }
+
+    /**
+     * Watchdog thread: take one stack sample of a dispatch that is over the
+     * threshold. True if a sample was taken.
+     */
+    public boolean sampleIfStalled(long nowNanos, Supplier<StackTraceElement[]> stackSupplier) {
+        Dispatch dispatch = current;
+        if (dispatch == null || dispatch.stack != null || nowNanos - dispatch.startNanos < thresholdNanos) {
+            return false;
+        }
+        StackTraceElement[] stack = stackSupplier.get();
+        // Only keep it if the same dispatch is still running, or it shows the wrong code
+        if (current == dispatch) {
+            dispatch.stack = stack;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized StallReport record(Dispatch dispatch, long millis, boolean nearAnr, long wallTime) {
+        stallCount++;
+        if (nearAnr) {
+            nearAnrCount++;
+        }
+        String target = describeTarget(dispatch.target);
+        StackTraceElement[] stack = dispatch.stack;
+        String appFrame = stack != null ? firstAppFrame(stack) : null;
+        String key = appFrame != null ? appFrame : target;
+
+        StallReport report = reports.get(key);
+        if (report == null) {
+            if (reports.size() >= MAX_REPORTS) {
+                key = OTHER_KEY;
+                report = reports.get(key);
+            }
+            if (report == null) {
+                report = new StallReport(key);
+                reports.put(key, report);
+            }
+        }
+        report.count++;
+        report.totalMillis += millis;
+        report.maxMillis = Math.max(report.maxMillis, millis);
+        report.lastMillis = millis;
+        report.lastAt = wallTime;
+        report.target = target;
+        report.lastTopFrame = stack != null && stack.length > 0 ? stack[0].toString() : null;
+        // Keep the stack of the worst stall seen for this cause
+        if (stack != null && stack.length > 0 && (report.stack == null || millis >= report.maxMillis)) {
+            report.topFrame = stack[0].toString();
+            report.stack = describeStack(stack);
+        }
+        return report;
+    }
+
+    public synchronized long getStallCount() {
+        return stallCount;
+    }
+
+    public synchronized long getNearAnrCount() {
+        return nearAnrCount;
+    }
+
+    /**
+     * Reports by total stalled time, worst first
+     */
+    public synchronized List<StallReport> getReports() {
+        List<StallReport> sorted = new ArrayList<>(reports.values());
+        Collections.sort(sorted, (a, b) -> Long.compare(b.totalMillis, a.totalMillis));
+        return sorted;
+    }
+
+    public synchronized void reset() {
+        reports.clear();
+        stallCount = 0;
+        nearAnrCount = 0;
+    }
+
+    public void dump(PrintWriter writer) {
+        List<StallReport> sorted = getReports();
+        writer.println(String.format(Locale.US, "Main thread stalls over %dms: %d (%d near ANR)",
+                getThresholdMillis(), getStallCount(), getNearAnrCount()));
+        for (StallReport report : sorted) {
+            writer.println(String.format(Locale.US, "  %s: count=%d total=%dms max=%dms last=%dms",
+                    report.key, report.count, report.totalMillis, report.maxMillis, report.lastMillis));
+            writer.println("    dispatch: " + report.target);
+            if (report.stack != null) {
+                for (String frame : report.stack) {
+                    writer.println("    at " + frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * "Class.method(File:line)" of the first frame in the app package, null if none
+     */
+    String firstAppFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith(appPackage)) {
+                String className = frame.getClassName().substring(appPackage.length());
+                return className + "." + frame.getMethodName()
+                        + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looper's ">>>>> Dispatching to Handler (...) {hash} callback: what" without the
+     * prefix and the per-instance hash codes, so repeats of one cause share a key
+     */
+    static String describeTarget(String dispatchLine) {
+        if (dispatchLine == null) {
+            return "unknown";
+        }
+        String target = dispatchLine.startsWith(DISPATCH_PREFIX)
+                ? dispatchLine.substring(DISPATCH_PREFIX.length()) : dispatchLine;
+        return HASH_CODES.matcher(target).replaceAll("").replace("  ", " ").trim();
+    }
+
+    private static List<String> describeStack(StackTraceElement[] stack) {
+        int frames = Math.min(stack.length, MAX_STACK_FRAMES);
+        List<String> described = new ArrayList<>(frames);
+        for (int i = 0; i < frames; i++) {
+            described.add(stack[i].toString());
+        }
+        return described;
+    }
+}
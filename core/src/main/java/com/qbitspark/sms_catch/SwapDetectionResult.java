@@ -0,0 +1,32 @@
+package com.qbitspark.sms_catch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SIM swap detection result
+ */
+public class SwapDetectionResult {
+    public List<SIMInfo> newSIMs = new ArrayList<>();
+    public List<SIMInfo> removedSIMs = new ArrayList<>();
+    public List<SIMInfo> movedSIMs = new ArrayList<>();
+    public List<SIMInfo> activeSIMs = new ArrayList<>();
+
+    public boolean hasChanges() {
+        return !newSIMs.isEmpty() || !removedSIMs.isEmpty() || !movedSIMs.isEmpty();
+    }
+
+    public String getChangesSummary() {
+        StringBuilder summary = new StringBuilder();
+        if (!newSIMs.isEmpty()) {
+            summary.append("📱 New SIMs detected: ").append(newSIMs.size()).append("\n");
+        }
+        if (!removedSIMs.isEmpty()) {
+            summary.append("❌ SIMs removed: ").append(removedSIMs.size()).append("\n");
+        }
+        if (!movedSIMs.isEmpty()) {
+            summary.append("🔄 SIMs moved slots: ").append(movedSIMs.size()).append("\n");
+        }
+        return summary.toString();
+    }
+}
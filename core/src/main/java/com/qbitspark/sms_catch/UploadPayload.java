@@ -0,0 +1,114 @@
+package com.qbitspark.sms_catch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The JSON body posted for each message, see README for the fields. Written
+ * by hand in the order and escaping of Android's org.json, so bodies match
+ * what JSONObject.toString() produced. Null fields are left out, as
+ * JSONObject.put(name, null) does.
+ */
+public class UploadPayload {
+    public String branchId;
+    public String sender;
+    public String receiver;
+    public String message;
+    public List<String> tags;           // Omitted if null or empty
+    public String parsedJson;           // Extracted mobile-money fields, a JSON object
+    public String timestamp;            // ISO 8601, UTC
+    public String deviceDetailsJson;    // A JSON object
+
+    public byte[] toJsonBytes() {
+        return toJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append('{');
+        appendString(json, "branchId", branchId);
+        appendString(json, "sender", sender);
+        appendString(json, "receiver", receiver);
+        appendString(json, "message", message);
+        if (tags != null && !tags.isEmpty()) {
+            appendName(json, "tags");
+            json.append('[');
+            for (int i = 0; i < tags.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                quote(json, tags.get(i));
+            }
+            json.append(']');
+        }
+        appendRaw(json, "parsed", parsedJson);
+        appendString(json, "timestamp", timestamp);
+        appendRaw(json, "deviceDetails", deviceDetailsJson);
+        return json.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder json, String name, String value) {
+        if (value != null) {
+            appendName(json, name);
+            quote(json, value);
+        }
+    }
+
+    private static void appendRaw(StringBuilder json, String name, String rawJson) {
+        if (rawJson != null) {
+            appendName(json, name);
+            json.append(rawJson);
+        }
+    }
+
+    private static void appendName(StringBuilder json, String name) {
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        quote(json, name);
+        json.append(':');
+    }
+
+    // Same escapes as org.json.JSONStringer on Android, '/' included
+    static void quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    json.append('\\').append(c);
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                case '\b':
+                    json.append("\\b");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\f':
+                    json.append("\\f");
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        json.append("\\u");
+                        String hex = Integer.toHexString(c);
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            json.append('0');
+                        }
+                        json.append(hex);
+                    } else {
+                        json.append(c);
+                    }
+                    break;
+            }
+        }
+        json.append('"');
+    }
+}
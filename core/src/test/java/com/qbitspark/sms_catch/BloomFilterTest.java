@@ -0,0 +1,53 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bloom filter sizing, membership and measured false-positive rate
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void noFalseNegativesAndFalsePositiveRateNearTarget() {
+        int entries = 50000;
+        long numBits = BloomFilter.optimalNumBits(entries, 0.01);
+        int numHashes = BloomFilter.optimalNumHashes(entries, numBits);
+        BloomFilter bloom = new BloomFilter(ByteBuffer.allocate(BloomFilter.byteSize(numBits)), 0, numBits, numHashes);
+
+        for (int i = 0; i < entries; i++) {
+            bloom.put(BloomFilter.hash64("SPAM" + i));
+        }
+        for (int i = 0; i < entries; i++) {
+            assertTrue(bloom.mightContain(BloomFilter.hash64("SPAM" + i)));
+        }
+
+        int probes = 200000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (bloom.mightContain(BloomFilter.hash64("2557" + (10000000 + i)))) {
+                falsePositives++;
+            }
+        }
+        double observed = (double) falsePositives / probes;
+        double expected = BloomFilter.expectedFalsePositiveRate(entries, numBits, numHashes);
+
+        assertEquals(0.01, expected, 0.002);
+        assertTrue("Observed FPR " + observed, observed < 0.015);
+    }
+
+    @Test
+    public void worksAtAnOffsetInsideALargerBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(32 + BloomFilter.byteSize(1024));
+        BloomFilter bloom = new BloomFilter(buffer, 32, 1024, 3);
+        bloom.put(BloomFilter.hash64("PROMOX"));
+
+        assertTrue(bloom.mightContain(BloomFilter.hash64("PROMOX")));
+        for (int i = 0; i < 32; i++) {
+            assertEquals(0, buffer.get(i));
+        }
+    }
+}
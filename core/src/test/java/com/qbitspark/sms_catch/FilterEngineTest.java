@@ -0,0 +1,90 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Filter engine behaviour; match cost against rule count is measured in
+ * RuleMatchingBenchmark
+ */
+public class FilterEngineTest {
+
+    private static final String[] SAMPLE_BODIES = {
+            "QFT4XYZ12 Confirmed. You have received Tsh10,000.00 from 255754123456 - JOHN DOE on 12/3/24",
+            "Ofa kabambe! Jiunge na bando la wiki kwa Tsh 1,000 tu. Tuma STOP kusitisha",
+            "Your verification code is 482913. Do not share it with anyone.",
+            "Habari, mkutano wa tawi utafanyika kesho saa nne asubuhi.",
+            "Umepokea TSh 25,000 kutoka kwa 0713123456 - ASHA MUSA. Salio jipya ni TSh 40,500."
+    };
+
+    @Test
+    public void ahoCorasick_findsOverlappingKeywords() {
+        AhoCorasick automaton = AhoCorasick.build(Arrays.asList("he", "she", "his", "hers"));
+        final List<Integer> found = new ArrayList<>();
+        automaton.match("USHERS", new AhoCorasick.MatchListener() {
+            @Override
+            public void onMatch(int keywordIndex) {
+                found.add(keywordIndex);
+            }
+        });
+        Collections.sort(found);
+        assertEquals(Arrays.asList(0, 1, 3), found);
+    }
+
+    @Test
+    public void denyListDropsAndAllowListOverridesDropRules() {
+        FilterRule promo = rule("promo", FilterRule.Action.DROP);
+        promo.keywords.add("ofa");
+
+        FilterEngine engine = FilterEngine.compile(
+                Collections.singletonList("M-PESA"), Collections.singletonList("SPAM-CO"),
+                Collections.singletonList(promo));
+
+        assertTrue(engine.evaluate("SPAM-CO", "hello").drop);
+        assertTrue(engine.evaluate("Vodacom", SAMPLE_BODIES[1]).drop);
+        assertFalse(engine.evaluate("M-PESA", SAMPLE_BODIES[1]).drop);
+        assertFalse(engine.evaluate("Vodacom", SAMPLE_BODIES[3]).drop);
+    }
+
+    @Test
+    public void tagAndRouteRulesCombine() {
+        FilterRule money = rule("money", FilterRule.Action.TAG);
+        money.tag = "mobile-money";
+        money.senders.add("M-PESA");
+
+        FilterRule otp = rule("otp", FilterRule.Action.ROUTE);
+        otp.lane = PriorityClassifier.LANE_PRIORITY;
+        otp.regexes.add("\\b\\d{6}\\b");
+
+        FilterRule bank = rule("bank", FilterRule.Action.TAG);
+        bank.tag = "bank";
+        bank.senders.add("CRDB BANK");
+        bank.keywords.add("salio");
+
+        FilterEngine engine = FilterEngine.compile(Collections.<String>emptyList(),
+                Collections.<String>emptyList(), Arrays.asList(money, otp, bank));
+
+        FilterEngine.Result result = engine.evaluate("m-pesa", SAMPLE_BODIES[0]);
+        assertEquals(Collections.singletonList("mobile-money"), result.tags);
+
+        result = engine.evaluate("Google", SAMPLE_BODIES[2]);
+        assertEquals(PriorityClassifier.LANE_PRIORITY, result.lane);
+
+        // Keyword rule scoped to another sender must not fire
+        assertTrue(engine.evaluate("Vodacom", SAMPLE_BODIES[4]).tags.isEmpty());
+        assertEquals(Collections.singletonList("bank"), engine.evaluate("CRDB-BANK", SAMPLE_BODIES[4]).tags);
+    }
+
+    private static FilterRule rule(String id, FilterRule.Action action) {
+        FilterRule rule = new FilterRule();
+        rule.id = id;
+        rule.action = action;
+        return rule;
+    }
+}
@@ -0,0 +1,67 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucket layout and percentile accuracy of the metrics histogram
+ */
+public class LogLinearHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndCoverTheirValues() {
+        assertEquals(0, LogLinearHistogram.bucketLowerBound(0));
+        for (int i = 1; i < LogLinearHistogram.BUCKET_COUNT; i++) {
+            assertEquals("bucket " + i, LogLinearHistogram.bucketUpperBound(i - 1) + 1,
+                    LogLinearHistogram.bucketLowerBound(i));
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (24 + random.nextInt(40));
+            int index = LogLinearHistogram.bucketIndex(value);
+            assertTrue(value >= LogLinearHistogram.bucketLowerBound(index));
+            assertTrue(value <= LogLinearHistogram.bucketUpperBound(index));
+        }
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        Random random = new Random(11);
+        long[] values = new long[50000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish latencies around a millisecond, in microseconds
+            values[i] = (long) Math.exp(7 + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.5, 0.9, 0.95, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long reported = histogram.getPercentile(q);
+            assertTrue("p" + q + " " + reported + " < " + exact, reported >= exact);
+            assertTrue("p" + q + " " + reported + " vs " + exact, reported <= exact + exact / 8 + 1);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values[values.length - 1], histogram.getPercentile(1.0));
+    }
+
+    @Test
+    public void emptyAndResetReportZero() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        assertEquals(0, histogram.getPercentile(0.99));
+        histogram.record(1234);
+        histogram.record(-5);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+}
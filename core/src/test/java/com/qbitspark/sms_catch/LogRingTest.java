@@ -0,0 +1,107 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ring order and wraparound, lazy formatting, and concurrent writers
+ */
+public class LogRingTest {
+
+    @Test
+    public void keepsNewestEntriesInOrder() {
+        LogRing ring = new LogRing(6);
+        assertEquals(8, ring.getCapacity());
+        for (int i = 0; i < 20; i++) {
+            ring.add(LogRing.INFO, "Test", "entry %d", i, LogRing.NO_ARG, LogRing.NO_ARG, null);
+        }
+        List<LogRing.Entry> entries = ring.snapshot();
+        assertEquals(8, entries.size());
+        assertEquals(20, ring.getTotalCount());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals("entry " + (12 + i), entries.get(i).getMessage());
+        }
+
+        ring.clear();
+        assertTrue(ring.snapshot().isEmpty());
+    }
+
+    @Test
+    public void formatsOnlyWhenRead() {
+        assertEquals("100% plain", LogRing.format("100% plain", LogRing.NO_ARG, LogRing.NO_ARG, LogRing.NO_ARG));
+        assertEquals("a 1 b", LogRing.format("%s %d %s", "a", 1, "b"));
+        assertEquals("two 2", LogRing.format("%s %d", "two", 2, LogRing.NO_ARG));
+        // A format that does not match its arguments is still readable
+        assertEquals("count %d x", LogRing.format("count %d", "x", LogRing.NO_ARG, LogRing.NO_ARG));
+
+        final int[] formatted = {0};
+        Object counting = new Object() {
+            @Override
+            public String toString() {
+                formatted[0]++;
+                return "arg";
+            }
+        };
+        LogRing ring = new LogRing(4);
+        ring.add(LogRing.DEBUG, "Test", "value %s", counting, LogRing.NO_ARG, LogRing.NO_ARG, null);
+        assertEquals(0, formatted[0]);
+        assertEquals("value arg", ring.snapshot().get(0).getMessage());
+        assertEquals(1, formatted[0]);
+    }
+
+    @Test
+    public void jsonFiltersByLevelAndEscapes() {
+        LogRing ring = new LogRing(8);
+        ring.add(LogRing.DEBUG, "Sync", "noise", LogRing.NO_ARG, LogRing.NO_ARG, LogRing.NO_ARG, null);
+        ring.add(LogRing.WARN, "Sync", "lane \"%s\" late", "otp", LogRing.NO_ARG, LogRing.NO_ARG, null);
+        ring.add(LogRing.ERROR, "Api", "failed", LogRing.NO_ARG, LogRing.NO_ARG, LogRing.NO_ARG,
+                new IllegalStateException("boom"));
+
+        String json = ring.toJson(LogRing.WARN, 10);
+        assertFalse(json.contains("noise"));
+        assertTrue(json.contains("\"level\":\"W\",\"tag\":\"Sync\""));
+        assertTrue(json.contains("\"message\":\"lane \\\"otp\\\" late\""));
+        assertTrue(json.contains("\"error\":\"java.lang.IllegalStateException: boom\""));
+        assertTrue(ring.toJson(LogRing.WARN, 1).contains("\"tag\":\"Api\""));
+        assertFalse(ring.toJson(LogRing.WARN, 1).contains("\"tag\":\"Sync\""));
+    }
+
+    @Test
+    public void concurrentWritersLoseOnlyOverwrittenEntries() throws Exception {
+        final LogRing ring = new LogRing(1024);
+        final int threads = 8;
+        final int perThread = 50000;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int writer = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ring.add(LogRing.DEBUG, "W" + writer, "%d", i, LogRing.NO_ARG, LogRing.NO_ARG, null);
+                }
+            });
+            writers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+
+        assertEquals((long) threads * perThread, ring.getTotalCount());
+        List<LogRing.Entry> entries = ring.snapshot();
+        Set<Long> sequences = new HashSet<>();
+        long previous = -1;
+        for (LogRing.Entry entry : entries) {
+            assertTrue(entry.sequence > previous);
+            assertTrue(entry.sequence >= ring.getTotalCount() - ring.getCapacity());
+            previous = entry.sequence;
+            sequences.add(entry.sequence);
+        }
+        assertEquals(ring.getCapacity(), sequences.size());
+    }
+}
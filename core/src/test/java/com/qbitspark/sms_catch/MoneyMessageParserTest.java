@@ -0,0 +1,80 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Field accuracy against a labelled corpus; extraction speed is measured in
+ * RuleMatchingBenchmark
+ */
+public class MoneyMessageParserTest {
+
+    private static final String CORPUS = "/mobile_money_corpus.tsv";
+
+    @Test
+    public void corpusFieldAccuracy() throws IOException {
+        List<String[]> corpus = loadCorpus();
+        MoneyMessageParser parser = MoneyMessageParser.getDefault();
+
+        int fieldsChecked = 0;
+        int fieldsCorrect = 0;
+        List<String> falseExtractions = new ArrayList<>();
+        List<String> mismatches = new ArrayList<>();
+
+        for (String[] row : corpus) {
+            ParsedMessage parsed = parser.parse(row[0], row[1]);
+
+            if (row[2].equals("-")) {
+                if (parsed != null) {
+                    falseExtractions.add(row[1]);
+                }
+                continue;
+            }
+
+            String[] actual = parsed == null ? new String[8] : new String[]{
+                    parsed.provider, parsed.type.name(), parsed.amount, parsed.transactionId,
+                    parsed.balance, parsed.counterpartyNumber, parsed.counterpartyName, parsed.fee};
+            for (int field = 0; field < actual.length; field++) {
+                String expected = row[field + 2].equals("-") ? null : row[field + 2];
+                fieldsChecked++;
+                if (expected == null ? actual[field] == null : expected.equals(actual[field])) {
+                    fieldsCorrect++;
+                } else {
+                    mismatches.add("field " + field + " expected '" + expected + "' got '"
+                            + actual[field] + "' in: " + row[1]);
+                }
+            }
+        }
+
+        double accuracy = (double) fieldsCorrect / fieldsChecked;
+        assertTrue("Unexpected extractions: " + falseExtractions, falseExtractions.isEmpty());
+        assertTrue(String.format(Locale.US, "Field accuracy %.3f over %d messages, mismatches: %s",
+                accuracy, corpus.size(), mismatches), accuracy >= 0.98);
+    }
+
+    private List<String[]> loadCorpus() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        InputStream in = getClass().getResourceAsStream(CORPUS);
+        assertNotNull("Missing " + CORPUS, in);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                rows.add(line.split("\t", -1));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,35 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateWindowTest {
+
+    @Test
+    public void rateOverTheWindow() {
+        RateWindow rate = new RateWindow(60_000, 8);
+        assertEquals(0, rate.perMinute(), 0);
+        rate.add(0, 100);
+        assertEquals(0, rate.perMinute(), 0);
+        rate.add(30_000, 130);
+        assertEquals(60, rate.perMinute(), 1e-9);
+
+        // The first sample leaves the window; only the last minute counts
+        rate.add(70_000, 150);
+        assertEquals(30, rate.perMinute(), 1e-9);
+        rate.add(200_000, 150);
+        assertEquals(0, rate.perMinute(), 0);
+    }
+
+    @Test
+    public void fullWindowDropsOldestSample() {
+        RateWindow rate = new RateWindow(60_000, 3);
+        rate.add(0, 0);
+        rate.add(1_000, 1000);
+        rate.add(2_000, 1010);
+        rate.add(3_000, 1020);
+        // Samples at 1s, 2s, 3s remain
+        assertEquals(20 * 60 / 2.0, rate.perMinute(), 1e-9);
+    }
+}
@@ -0,0 +1,101 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * SIM diffing, configuration state, receiver identifiers and phone number validation
+ */
+public class SimSwapDetectorTest {
+
+    @Test
+    public void detectsNewMovedAndRemovedSims() {
+        List<SIMInfo> saved = Arrays.asList(
+                sim("8925504001234567890", 0, "0745051250"),
+                sim("8925505009876543210", 1, "0685123456"));
+        List<SIMInfo> current = Arrays.asList(
+                sim("8925505009876543210", 0, null),
+                sim("8925502001111122222", 1, null));
+
+        SwapDetectionResult result = SimSwapDetector.compare(current, saved);
+
+        assertTrue(result.hasChanges());
+        assertEquals(1, result.newSIMs.size());
+        assertEquals("8925502001111122222", result.newSIMs.get(0).iccid);
+        assertEquals(1, result.movedSIMs.size());
+        assertEquals("0685123456", result.movedSIMs.get(0).userPhoneNumber);
+        assertEquals(1, result.removedSIMs.size());
+        assertEquals("8925504001234567890", result.removedSIMs.get(0).iccid);
+        assertEquals(2, result.activeSIMs.size());
+    }
+
+    @Test
+    public void unchangedSimsKeepTheirNumbers() {
+        List<SIMInfo> saved = new ArrayList<>();
+        saved.add(sim("8925504001234567890", 0, "0745051250"));
+        List<SIMInfo> current = new ArrayList<>();
+        current.add(sim("8925504001234567890", 0, null));
+
+        SwapDetectionResult result = SimSwapDetector.compare(current, saved);
+
+        assertFalse(result.hasChanges());
+        assertEquals("0745051250", current.get(0).userPhoneNumber);
+    }
+
+    @Test
+    public void configStateFindsTheFirstSimWithoutANumber() {
+        List<SIMInfo> saved = Arrays.asList(sim("8925504001234567890", 0, "0745051250"));
+        SimConfigState state = SimConfigState.from(Arrays.asList(
+                sim("8925504001234567890", 0, null),
+                sim("8925505009876543210", 1, null)), saved, 7);
+        assertFalse(state.allConfigured);
+        assertEquals("8925505009876543210", state.nextUnconfigured.iccid);
+        assertEquals("0745051250", state.activeSIMs.get(0).userPhoneNumber);
+        assertEquals(7, state.loadedAt);
+
+        state = SimConfigState.from(Arrays.asList(sim("8925504001234567890", 1, null)), saved, 8);
+        assertTrue(state.allConfigured);
+        assertNull(state.nextUnconfigured);
+
+        // No SIM at all is never configured
+        state = SimConfigState.from(new ArrayList<SIMInfo>(), saved, 9);
+        assertFalse(state.allConfigured);
+        assertNull(state.nextUnconfigured);
+    }
+
+    @Test
+    public void receiverIdentifier() {
+        SIMInfo sim = sim("8925504001234567890", 0, "0745051250");
+        sim.carrierName = "Vodacom";
+        assertEquals("0745051250_Vodacom_SLOT0_567890", ReceiverIdentifier.create(sim));
+        sim.userPhoneNumber = null;
+        sim.iccid = "123";
+        assertEquals("NO_PHONE_Vodacom_SLOT0", ReceiverIdentifier.create(sim));
+    }
+
+    @Test
+    public void phoneNumberValidation() {
+        assertEquals(PhoneNumbers.Problem.NONE, PhoneNumbers.validate("0745051250"));
+        assertEquals(PhoneNumbers.Problem.NONE, PhoneNumbers.validate("0745 051-250"));
+        assertEquals(PhoneNumbers.Problem.EMPTY, PhoneNumbers.validate(""));
+        assertEquals(PhoneNumbers.Problem.NOT_DIGITS, PhoneNumbers.validate("07450x1250"));
+        assertEquals(PhoneNumbers.Problem.NO_LEADING_ZERO, PhoneNumbers.validate("7450512501"));
+        assertEquals(PhoneNumbers.Problem.WRONG_LENGTH, PhoneNumbers.validate("074505125"));
+        assertEquals(PhoneNumbers.Problem.PLACEHOLDER, PhoneNumbers.validate("0000000000"));
+        assertEquals(PhoneNumbers.Problem.PLACEHOLDER, PhoneNumbers.validate("0777777777"));
+        assertEquals(PhoneNumbers.Problem.PLACEHOLDER, PhoneNumbers.validate("0123456789"));
+    }
+
+    private static SIMInfo sim(String iccid, int slot, String phone) {
+        SIMInfo sim = new SIMInfo();
+        sim.iccid = iccid;
+        sim.slotIndex = slot;
+        sim.userPhoneNumber = phone;
+        return sim;
+    }
+}
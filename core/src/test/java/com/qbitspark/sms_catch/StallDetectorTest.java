@@ -0,0 +1,129 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stall timing, sampling and attribution with a fake clock and fake stacks
+ */
+public class StallDetectorTest {
+    private static final long MS = 1_000_000;
+    private static final String APP = "com.example.app";
+    private static final String FRAME_HANDLER =
+            ">>>>> Dispatching to Handler (android.view.Choreographer$FrameHandler) {2f2d0e9} "
+                    + "android.view.Choreographer$FrameDisplayEventReceiver@8a1b3c: 0";
+
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] stack = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            int dot = frames[i].lastIndexOf('.');
+            stack[i] = new StackTraceElement(frames[i].substring(0, dot), frames[i].substring(dot + 1),
+                    frames[i].substring(frames[i].lastIndexOf('.', dot - 1) + 1, dot) + ".java", 10 + i);
+        }
+        return stack;
+    }
+
+    @Test
+    public void fastDispatchesAreNotReported() {
+        StallDetector detector = new StallDetector(250, 2500, APP);
+        assertEquals(-1, detector.millisUntilStall(0));
+        detector.dispatchStarted(FRAME_HANDLER, 1000 * MS);
+        assertTrue(detector.isDispatching());
+        assertEquals(150, detector.millisUntilStall(1100 * MS));
+        assertFalse(detector.sampleIfStalled(1100 * MS, () -> {
+            throw new AssertionError("Sampled before the threshold");
+        }));
+        assertNull(detector.dispatchFinished(1249 * MS, 0));
+        assertFalse(detector.isDispatching());
+        assertEquals(0, detector.getStallCount());
+    }
+
+    @Test
+    public void stallIsBlamedOnTheFirstAppFrame() {
+        StallDetector detector = new StallDetector(250, 2500, APP);
+        StackTraceElement[] sample = stack("android.os.BinderProxy.transactNative",
+                "android.telephony.SubscriptionManager.getActiveSubscriptionInfoList",
+                APP + ".SimManager.getCurrentSims", APP + ".MainActivity.onStart",
+                "android.app.Activity.performStart");
+
+        for (int i = 0; i < 3; i++) {
+            long start = i * 10_000 * MS;
+            detector.dispatchStarted(FRAME_HANDLER, start);
+            assertEquals(0, detector.millisUntilStall(start + 300 * MS));
+            assertTrue(detector.sampleIfStalled(start + 300 * MS, () -> sample));
+            // One sample per dispatch
+            assertFalse(detector.sampleIfStalled(start + 600 * MS, () -> sample));
+            StallDetector.StallReport report = detector.dispatchFinished(start + (400 + i * 100) * MS, 42);
+            assertNotNull(report);
+        }
+
+        List<StallDetector.StallReport> reports = detector.getReports();
+        assertEquals(1, reports.size());
+        StallDetector.StallReport report = reports.get(0);
+        assertEquals("SimManager.getCurrentSims(SimManager.java:12)", report.key);
+        assertEquals(3, report.count);
+        assertEquals(400 + 500 + 600, report.totalMillis);
+        assertEquals(600, report.maxMillis);
+        assertEquals(42, report.lastAt);
+        assertTrue(report.topFrame.startsWith("android.os.BinderProxy.transactNative"));
+        assertEquals(5, report.stack.size());
+        assertEquals("Handler (android.view.Choreographer$FrameHandler) "
+                + "android.view.Choreographer$FrameDisplayEventReceiver: 0", report.target);
+    }
+
+    @Test
+    public void unsampledStallFallsBackToTheDispatchTarget() {
+        StallDetector detector = new StallDetector(250, 2500, APP);
+        detector.dispatchStarted(FRAME_HANDLER, 0);
+        StallDetector.StallReport report = detector.dispatchFinished(3000 * MS, 0);
+        assertEquals(report.target, report.key);
+        assertNull(report.stack);
+        assertNull(report.lastTopFrame);
+        assertEquals(1, detector.getNearAnrCount());
+
+        // A stack with no app frame is still kept, keyed by the target
+        detector.dispatchStarted(FRAME_HANDLER, 0);
+        detector.sampleIfStalled(300 * MS, () -> stack("android.os.MessageQueue.nativePollOnce"));
+        report = detector.dispatchFinished(400 * MS, 0);
+        assertEquals(2, report.count);
+        assertTrue(report.topFrame.startsWith("android.os.MessageQueue.nativePollOnce"));
+        assertEquals(report.topFrame, report.lastTopFrame);
+
+        // The worst stall keeps its frame, the latest one reports its own
+        detector.dispatchStarted(FRAME_HANDLER, 0);
+        report = detector.dispatchFinished(300 * MS, 0);
+        assertEquals(3, report.count);
+        assertTrue(report.topFrame.startsWith("android.os.MessageQueue.nativePollOnce"));
+        assertNull(report.lastTopFrame);
+    }
+
+    @Test
+    public void sampleOfALaterDispatchIsDiscarded() {
+        StallDetector detector = new StallDetector(250, 2500, APP);
+        detector.dispatchStarted("first", 0);
+        // The first dispatch ends and the next starts while the stack is taken
+        assertFalse(detector.sampleIfStalled(300 * MS, () -> {
+            detector.dispatchFinished(300 * MS, 0);
+            detector.dispatchStarted("second", 300 * MS);
+            return stack(APP + ".Other.work");
+        }));
+        assertEquals("first", detector.getReports().get(0).key);
+        assertNull(detector.getReports().get(0).stack);
+    }
+
+    @Test
+    public void reportsAreCapped() {
+        StallDetector detector = new StallDetector(250, 2500, APP);
+        for (int i = 0; i < StallDetector.MAX_REPORTS + 10; i++) {
+            detector.dispatchStarted("Handler (h" + i + ")", 0);
+            detector.dispatchFinished(300 * MS, 0);
+        }
+        List<StallDetector.StallReport> reports = detector.getReports();
+        assertEquals(StallDetector.MAX_REPORTS + 1, reports.size());
+        assertEquals(StallDetector.OTHER_KEY, reports.get(0).key);
+        assertEquals(10, reports.get(0).count);
+    }
+}
@@ -0,0 +1,48 @@
+package com.qbitspark.sms_catch;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * The hand-written body must read exactly like org.json's output on Android
+ */
+public class UploadPayloadTest {
+
+    @Test
+    public void fieldsInOrderAndNullsLeftOut() {
+        UploadPayload payload = new UploadPayload();
+        payload.branchId = "0745051250_Vodacom_SLOT0_123456";
+        payload.sender = "M-PESA";
+        payload.message = "Umepokea Tsh 10,000";
+        payload.tags = Arrays.asList("mobile-money", "received");
+        payload.parsedJson = "{\"amount\":\"10000\"}";
+        payload.timestamp = "2024-03-12T12:15:00Z";
+        payload.deviceDetailsJson = "{\"model\":\"A13\"}";
+
+        assertEquals("{\"branchId\":\"0745051250_Vodacom_SLOT0_123456\",\"sender\":\"M-PESA\","
+                        + "\"message\":\"Umepokea Tsh 10,000\",\"tags\":[\"mobile-money\",\"received\"],"
+                        + "\"parsed\":{\"amount\":\"10000\"},\"timestamp\":\"2024-03-12T12:15:00Z\","
+                        + "\"deviceDetails\":{\"model\":\"A13\"}}",
+                payload.toJson());
+    }
+
+    @Test
+    public void escapesLikeJsonStringer() {
+        UploadPayload payload = new UploadPayload();
+        payload.message = "a\"b\\c/d\te\nf\u0001 Habari 😀";
+        assertEquals("{\"message\":\"a\\\"b\\\\c\\/d\\te\\nf\\u0001 Habari 😀\"}", payload.toJson());
+        assertArrayEquals(payload.toJson().getBytes(StandardCharsets.UTF_8), payload.toJsonBytes());
+    }
+
+    @Test
+    public void emptyTagsOmitted() {
+        UploadPayload payload = new UploadPayload();
+        payload.sender = "NMB";
+        payload.tags = Arrays.<String>asList();
+        assertEquals("{\"sender\":\"NMB\"}", payload.toJson());
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "SMS-Catch"
 include(":app")
+include(":core")
+include(":benchmarks")
  
\ No newline at end of file